@@ -0,0 +1,31 @@
+package com.sivaji.weather.webservices;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON to the file named by the jmh.result
+ * system property, so builds can be compared. Accepts the usual JMH command line options,
+ * for example a regular expression selecting the benchmarks to run.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions( args );
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent( commandLine );
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include( "com\\.sivaji\\.weather\\.webservices\\..*Benchmark" );
+        }
+        Options options = builder
+                .resultFormat( ResultFormatType.JSON )
+                .result( System.getProperty( "jmh.result", "target/jmh-result.json" ) )
+                .build();
+
+        new Runner( options ).run();
+    }
+}
@@ -0,0 +1,55 @@
+package com.sivaji.weather.webservices.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Reading the OpenWeatherMap payload into {@link Weather} and writing the wind response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherJsonBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES );
+
+    private byte[] payload;
+    private Weather weather;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream( "/weather.json" )) {
+            payload = StreamUtils.copyToByteArray( in );
+        }
+        weather = objectMapper.readValue( payload, Weather.class );
+    }
+
+    @Benchmark
+    public Weather deserialize() throws IOException {
+        return objectMapper.readValue( payload, Weather.class );
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes( weather );
+    }
+}
@@ -0,0 +1,101 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cost of logging a cache hit on the request thread, on several threads writing to a file: the
+ * two synchronous log lines a hit used to write, recording into the access log, and recording
+ * with hits sampled at 1%. The access log writes and drop counts are printed on tear down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AccessLogBenchmark {
+
+    private static final String ZIP_CODE = "94043";
+
+    private final Logger requestLogger = LoggerFactory.getLogger( WeatherService.class );
+    private File logFile;
+    private FileAppender<ILoggingEvent> appender;
+    private AccessLog accessLog;
+    private AccessLog sampledAccessLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.getLogger( Logger.ROOT_LOGGER_NAME ).setLevel( Level.WARN );
+
+        logFile = File.createTempFile( "access", ".log" );
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext( loggerContext );
+        encoder.setPattern( "%d %5p [%t] %logger : %m%n" );
+        encoder.start();
+        appender = new FileAppender<ILoggingEvent>();
+        appender.setContext( loggerContext );
+        appender.setFile( logFile.getPath() );
+        appender.setEncoder( encoder );
+        appender.start();
+        for (String name : new String[] { WeatherService.class.getName(), AccessLog.LOGGER_NAME }) {
+            ch.qos.logback.classic.Logger logger = loggerContext.getLogger( name );
+            logger.setLevel( Level.INFO );
+            logger.setAdditive( false );
+            logger.addAppender( appender );
+        }
+
+        accessLog = new AccessLog( 8192, 1, 1, 100 );
+        sampledAccessLog = new AccessLog( 8192, 0.01, 1, 100 );
+    }
+
+    @TearDown
+    public void tearDown() {
+        accessLog.shutdown();
+        sampledAccessLog.shutdown();
+        System.out.printf( "%naccess log: %d written, %d dropped; sampled: %d written, %d sampled out, %d dropped%n",
+                accessLog.getWritten(), accessLog.getDropped(), sampledAccessLog.getWritten(),
+                sampledAccessLog.getSampledOut(), sampledAccessLog.getDropped() );
+        appender.stop();
+        logFile.delete();
+    }
+
+    @Benchmark
+    public void synchronousLogging() {
+        requestLogger.info( "Requesting current wind for {}", ZIP_CODE );
+        requestLogger.info( "Getting data from the Cache {}", true );
+    }
+
+    @Benchmark
+    public void accessLog() {
+        accessLog.record( ZIP_CODE, AccessLog.Outcome.HIT, System.nanoTime(), 0 );
+    }
+
+    @Benchmark
+    public void sampledAccessLog() {
+        sampledAccessLog.record( ZIP_CODE, AccessLog.Outcome.HIT, System.nanoTime(), 0 );
+    }
+}
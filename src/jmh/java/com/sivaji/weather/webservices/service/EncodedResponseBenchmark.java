@@ -0,0 +1,78 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+/**
+ * Throughput of cache hits up to the response bytes, on several threads: serializing the cached
+ * wind on every hit, and writing the JSON kept with encoded responses enabled. Run with
+ * {@code -prof gc} to compare the garbage per hit as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class EncodedResponseBenchmark {
+
+    private static final String ZIP_CODE = "94043";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WeatherService weatherService;
+    private WeatherService encodingWeatherService;
+
+    @Setup
+    public void setUp() {
+        // Keep request logging out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger( Logger.ROOT_LOGGER_NAME )).setLevel( Level.WARN );
+
+        weatherService = newWeatherService( false );
+        encodingWeatherService = newWeatherService( true );
+        weatherService.getWindByZipCode( ZIP_CODE );
+    }
+
+    private WeatherService newWeatherService(boolean encodedResponses) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "benchmark" );
+        serviceProperties.getCache().setEncodedResponses( encodedResponses );
+        return new WeatherService( new RestTemplateBuilder().requestFactory( new StubClientHttpRequestFactory() ),
+                serviceProperties, null, objectMapper );
+    }
+
+    @TearDown
+    public void tearDown() {
+        weatherService.shutdown();
+        encodingWeatherService.shutdown();
+    }
+
+    @Benchmark
+    public byte[] serializedHit() throws IOException {
+        return objectMapper.writeValueAsBytes( weatherService.getWindEntryByZipCodeAsync( ZIP_CODE ).join().getValue() );
+    }
+
+    @Benchmark
+    public byte[] encodedHit() {
+        return encodingWeatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join().getValue().getJson();
+    }
+}
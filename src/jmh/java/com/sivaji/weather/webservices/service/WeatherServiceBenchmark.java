@@ -0,0 +1,73 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import com.sivaji.weather.webservices.exception.InvalidZipCodeException;
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+/**
+ * Latency of a cached lookup through {@link WeatherService#getWindByZipCode(String)}, including
+ * the zip code validation, and of rejecting an invalid zip code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherServiceBenchmark {
+
+    private WeatherService weatherService;
+
+    @Setup
+    public void setUp() {
+        // Keep request logging out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger( Logger.ROOT_LOGGER_NAME )).setLevel( Level.WARN );
+
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "benchmark" );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( new StubClientHttpRequestFactory() ),
+                serviceProperties );
+        weatherService.getWindByZipCode( "94043" );
+    }
+
+    @TearDown
+    public void tearDown() {
+        weatherService.shutdown();
+    }
+
+    @Benchmark
+    public Weather cachedZipCode() {
+        return weatherService.getWindByZipCode( "94043" );
+    }
+
+    @Benchmark
+    public Weather cachedZipPlusFour() {
+        return weatherService.getWindByZipCode( "94043-1351" );
+    }
+
+    @Benchmark
+    public Object invalidZipCode() {
+        try {
+            return weatherService.getWindByZipCode( "9404x" );
+        } catch (InvalidZipCodeException e) {
+            return e;
+        }
+    }
+}
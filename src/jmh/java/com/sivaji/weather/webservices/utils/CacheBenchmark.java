@@ -0,0 +1,155 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the cache operations on the request path, single threaded and with one
+ * thread per core contending for the same cache. The mixed load compares the cache with its
+ * previous layout of maps updated under one monitor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int KEYS = 42000;
+
+    /**
+     * Unbounded, or bounded below the key count so writes evict.
+     */
+    @Param({"0", "10000"})
+    public long maximumSize;
+
+    private Cache<Integer> cache;
+    private SynchronizedMapCache synchronizedMaps;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        cache = maximumSize > 0 ? new Cache<Integer>( "benchmark", maximumSize, new Weigher<Integer>() {
+            @Override
+            public int weigh(String key, Integer value) {
+                return 1;
+            }
+        } ) : new Cache<Integer>( "benchmark" );
+
+        synchronizedMaps = new SynchronizedMapCache();
+
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = String.format( "%05d", i );
+            cache.add( keys[i], i );
+            synchronizedMaps.add( keys[i], i );
+        }
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt( KEYS )];
+    }
+
+    @Benchmark
+    public Integer get() {
+        return cache.get( nextKey() );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Integer getContended() {
+        return cache.get( nextKey() );
+    }
+
+    @Benchmark
+    public boolean isKeyInCache() {
+        return cache.isKeyInCache( nextKey() );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isKeyInCacheContended() {
+        return cache.isKeyInCache( nextKey() );
+    }
+
+    @Benchmark
+    public void add() {
+        cache.add( nextKey(), 1 );
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void addContended() {
+        cache.add( nextKey(), 1 );
+    }
+
+    /**
+     * 90% reads and 10% writes.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Integer mixedContended() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt( KEYS )];
+        if (random.nextInt( 10 ) == 0) {
+            cache.add( key, 1 );
+            return null;
+        }
+        return cache.get( key );
+    }
+
+    /**
+     * The mixed load on the previous layout, which is unbounded whatever maximumSize.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Integer mixedContendedSynchronizedMaps() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = keys[random.nextInt( KEYS )];
+        if (random.nextInt( 10 ) == 0) {
+            synchronizedMaps.add( key, 1 );
+            return null;
+        }
+        return synchronizedMaps.get( key );
+    }
+
+    /**
+     * The previous cache layout: three maps updated under the cache monitor.
+     */
+    private static class SynchronizedMapCache {
+        private final Map<String, Integer> valueMap = new HashMap<String, Integer>();
+        private final Map<String, Long> insertTimeMap = new HashMap<String, Long>();
+        private final Map<String, Integer> cacheMinutesMap = new HashMap<String, Integer>();
+
+        synchronized void add(String key, Integer value) {
+            valueMap.put( key, value );
+            insertTimeMap.put( key, System.currentTimeMillis() );
+            cacheMinutesMap.put( key, Cache.DEFAULT_MINUTES );
+        }
+
+        synchronized Integer get(String key) {
+            Long timeEntered = insertTimeMap.get( key );
+            if (timeEntered == null
+                    || System.currentTimeMillis() > timeEntered + cacheMinutesMap.get( key ) * 60 * 1000) {
+                return null;
+            }
+            return valueMap.get( key );
+        }
+    }
+}
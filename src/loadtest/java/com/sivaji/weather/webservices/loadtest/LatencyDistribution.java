@@ -0,0 +1,75 @@
+package com.sivaji.weather.webservices.loadtest;
+
+import java.util.Random;
+
+/**
+ * Response delays of the stub upstream, parsed from a spec such as {@code fixed:50},
+ * {@code uniform:20:200} or {@code lognormal:80:0.6} (median and shape), in milliseconds.
+ * Log-normal delays have the long tail real upstream calls show.
+ */
+public abstract class LatencyDistribution {
+
+    public abstract long nextMillis(Random random);
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split( ":" );
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed( Long.parseLong( parts[1] ) );
+                case "uniform":
+                    return uniform( Long.parseLong( parts[1] ), Long.parseLong( parts[2] ) );
+                case "lognormal":
+                    return logNormal( Double.parseDouble( parts[1] ), Double.parseDouble( parts[2] ) );
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException( "Invalid latency distribution '" + spec
+                + "', expected fixed:<ms>, uniform:<min ms>:<max ms> or lognormal:<median ms>:<sigma>" );
+    }
+
+    public static LatencyDistribution fixed(final long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long nextMillis(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed " + millis + " ms";
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+        return new LatencyDistribution() {
+            @Override
+            public long nextMillis(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform " + minMillis + "-" + maxMillis + " ms";
+            }
+        };
+    }
+
+    public static LatencyDistribution logNormal(final double medianMillis, final double sigma) {
+        return new LatencyDistribution() {
+            @Override
+            public long nextMillis(Random random) {
+                return Math.round( medianMillis * Math.exp( sigma * random.nextGaussian() ) );
+            }
+
+            @Override
+            public String toString() {
+                return "log-normal, median " + medianMillis + " ms, sigma " + sigma;
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.sivaji.weather.webservices.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sivaji.weather.webservices.utils.LatencyRecorder;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Drives {@code GET /api/v1/wind/{zipCode}} from a fixed number of threads, each sending its next
+ * request as soon as the previous one completed, with zip codes drawn from a {@link ZipfSampler}.
+ * Latencies of the measurement phase are recorded per response, whatever its status.
+ */
+public class LoadGenerator {
+
+    private final String targetUrl;
+    private final int threads;
+    private final ZipfSampler zipCodes;
+
+    public LoadGenerator(String targetUrl, int threads, ZipfSampler zipCodes) {
+        this.targetUrl = targetUrl.endsWith( "/" ) ? targetUrl.substring( 0, targetUrl.length() - 1 ) : targetUrl;
+        this.threads = threads;
+        this.zipCodes = zipCodes;
+    }
+
+    /**
+     * Send requests for the warm-up period, then measure for the given duration.
+     */
+    public LoadReport run(long warmupSeconds, long durationSeconds) throws Exception {
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnTotal( threads )
+                .setMaxConnPerRoute( threads )
+                .build()) {
+            drive( httpClient, warmupSeconds, null );
+            LoadReport report = new LoadReport( threads, zipCodes.size() );
+            drive( httpClient, durationSeconds, report );
+            return report;
+        }
+    }
+
+    private void drive(CloseableHttpClient httpClient, long seconds, LoadReport report) throws Exception {
+        if (seconds <= 0) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads, new CustomizableThreadFactory( "load-" ) );
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos( seconds );
+        try {
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                final Random random = new Random( i );
+                workers.add( executor.submit( () -> {
+                    while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                        request( httpClient, zipCodes.next( random ), report );
+                    }
+                } ) );
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (report != null) {
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void request(CloseableHttpClient httpClient, String zipCode, LoadReport report) {
+        long start = System.nanoTime();
+        int status;
+        try (CloseableHttpResponse response = httpClient.execute( new HttpGet( targetUrl + "/api/v1/wind/" + zipCode ) )) {
+            EntityUtils.consume( response.getEntity() );
+            status = response.getStatusLine().getStatusCode();
+        } catch (IOException e) {
+            status = 0;
+        }
+        if (report != null) {
+            report.record( status, System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * Throughput, latency percentiles and response statuses of a run, status 0 counting
+     * requests that failed without a response.
+     */
+    public static class LoadReport {
+
+        private final int threads;
+        private final int zipCodes;
+        private final LatencyRecorder latency = new LatencyRecorder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<Integer, LongAdder>();
+        private volatile long elapsedNanos;
+
+        LoadReport(int threads, int zipCodes) {
+            this.threads = threads;
+            this.zipCodes = zipCodes;
+        }
+
+        void record(int status, long durationNanos) {
+            latency.record( durationNanos );
+            statuses.computeIfAbsent( status, s -> new LongAdder() ).increment();
+        }
+
+        public long getRequests() {
+            return latency.getCount();
+        }
+
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : getRequests() / (elapsedNanos / 1e9);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return latency.getPercentileMillis( percentile );
+        }
+
+        public double getMaxMillis() {
+            return latency.getMaxMillis();
+        }
+
+        public Map<Integer, Long> getStatuses() {
+            Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+            statuses.forEach( (status, count) -> counts.put( status, count.sum() ) );
+            return counts;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getZipCodes() {
+            return zipCodes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format( "%d requests in %.1f s from %d threads over %d zip codes: %.0f req/s, "
+                            + "p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms, statuses %s",
+                    getRequests(), elapsedNanos / 1e9, threads, zipCodes, getThroughput(),
+                    getPercentileMillis( 50 ), getPercentileMillis( 99 ), getPercentileMillis( 99.9 ),
+                    getMaxMillis(), getStatuses() );
+        }
+    }
+}
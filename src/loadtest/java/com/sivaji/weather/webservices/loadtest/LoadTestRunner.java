@@ -0,0 +1,109 @@
+package com.sivaji.weather.webservices.loadtest;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sivaji.weather.webservices.WeatherapiApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the stub upstream and the service pointed at it, drives the wind endpoint and prints
+ * the report, also written as JSON to the file named by {@code loadtest.result}. With
+ * {@code loadtest.target} set, an already running service is driven instead and no stub is
+ * started. Exits with status 1 when {@code loadtest.max-p99-ms} is set and exceeded.
+ * <p>
+ * Settings are system properties, see the loadtest profile of the pom for their defaults.
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger( "loadtest.threads", 32 );
+        int zipCodes = Integer.getInteger( "loadtest.zip-codes", 5000 );
+        double zipfExponent = Double.parseDouble( System.getProperty( "loadtest.zipf-exponent", "1.0" ) );
+        long warmupSeconds = Long.getLong( "loadtest.warmup-seconds", 10 );
+        long durationSeconds = Long.getLong( "loadtest.duration-seconds", 30 );
+        String target = System.getProperty( "loadtest.target", "" ).trim();
+        LatencyDistribution latency = LatencyDistribution.parse(
+                System.getProperty( "loadtest.upstream.latency", "lognormal:80:0.6" ) );
+
+        StubUpstreamServer upstream = null;
+        ConfigurableApplicationContext service = null;
+        try {
+            if (target.isEmpty()) {
+                upstream = new StubUpstreamServer( 0, Integer.getInteger( "loadtest.upstream.threads", 200 ), latency,
+                        Double.parseDouble( System.getProperty( "loadtest.upstream.error-rate", "0.01" ) ),
+                        Double.parseDouble( System.getProperty( "loadtest.upstream.not-found-rate", "0.0" ) ) );
+                upstream.start();
+                // The devtools restarter would start the service a second time
+                System.setProperty( "spring.devtools.restart.enabled", "false" );
+                service = SpringApplication.run( WeatherapiApplication.class,
+                        "--server.port=0",
+                        "--app.weather.api.url=" + upstream.getBaseUrl(),
+                        "--app.weather.api.key=loadtest",
+                        // Per request logging would dominate the measurement
+                        "--logging.level.com.sivaji.weather=WARN" );
+                target = "http://127.0.0.1:" + service.getEnvironment().getProperty( "local.server.port" );
+            }
+
+            System.out.println( "Load testing " + target
+                    + (upstream == null ? "" : " against a stub upstream with " + latency + " latency") );
+            LoadGenerator.LoadReport report = new LoadGenerator( target, threads,
+                    new ZipfSampler( zipCodes, zipfExponent, 42 ) ).run( warmupSeconds, durationSeconds );
+            System.out.println( report );
+            if (upstream != null) {
+                System.out.println( "Upstream calls: " + upstream.getCalls() + ", failed: " + upstream.getErrors() );
+            }
+
+            writeResult( report, upstream );
+            if (!withinLimit( report )) {
+                System.exit( 1 );
+            }
+        } finally {
+            if (service != null) {
+                service.close();
+            }
+            if (upstream != null) {
+                upstream.stop();
+            }
+        }
+    }
+
+    private static void writeResult(LoadGenerator.LoadReport report, StubUpstreamServer upstream) throws Exception {
+        String result = System.getProperty( "loadtest.result", "" ).trim();
+        if (result.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put( "threads", report.getThreads() );
+        json.put( "zipCodes", report.getZipCodes() );
+        json.put( "requests", report.getRequests() );
+        json.put( "throughput", report.getThroughput() );
+        json.put( "p50", report.getPercentileMillis( 50 ) );
+        json.put( "p99", report.getPercentileMillis( 99 ) );
+        json.put( "p999", report.getPercentileMillis( 99.9 ) );
+        json.put( "max", report.getMaxMillis() );
+        json.put( "statuses", report.getStatuses() );
+        if (upstream != null) {
+            json.put( "upstreamCalls", upstream.getCalls() );
+        }
+        File file = new File( result );
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable( SerializationFeature.INDENT_OUTPUT ).writeValue( file, json );
+    }
+
+    private static boolean withinLimit(LoadGenerator.LoadReport report) {
+        String maxP99 = System.getProperty( "loadtest.max-p99-ms", "" ).trim();
+        if (maxP99.isEmpty() || report.getPercentileMillis( 99 ) <= Double.parseDouble( maxP99 )) {
+            return true;
+        }
+        System.out.println( "p99 latency " + report.getPercentileMillis( 99 ) + " ms exceeds the limit of " + maxP99 + " ms" );
+        return false;
+    }
+}
@@ -0,0 +1,146 @@
+package com.sivaji.weather.webservices.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Stands in for OpenWeatherMap: answers {@code /weather?zip=...} with the {@code weather.json}
+ * payload, after a delay drawn from a latency distribution. Wind speed, direction and name vary
+ * per zip code, deterministically, and a share of the calls fails with 503 or 404. Observations
+ * are published every ten minutes, like OpenWeatherMap's.
+ * <p>
+ * Point the service at it with {@code app.weather.api.url=http://localhost:<port>/data/2.5}.
+ */
+public class StubUpstreamServer {
+
+    private static final long OBSERVATION_INTERVAL_SECONDS = 600;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectNode payload;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double notFoundRate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public StubUpstreamServer(int port, int threads, LatencyDistribution latency, double errorRate,
+                              double notFoundRate) throws IOException {
+        try (InputStream in = StubUpstreamServer.class.getResourceAsStream( "/weather.json" )) {
+            this.payload = (ObjectNode) objectMapper.readTree( StreamUtils.copyToByteArray( in ) );
+        }
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.notFoundRate = notFoundRate;
+        this.server = HttpServer.create( new InetSocketAddress( "127.0.0.1", port ), 1024 );
+        this.executor = Executors.newFixedThreadPool( threads, new CustomizableThreadFactory( "stub-upstream-" ) );
+        this.server.setExecutor( executor );
+        this.server.createContext( "/", this::handle );
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop( 0 );
+        executor.shutdownNow();
+    }
+
+    /**
+     * The base URL to configure as {@code app.weather.api.url}.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data/2.5";
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.increment();
+        try {
+            Random random = ThreadLocalRandom.current();
+            long delay = latency.nextMillis( random );
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep( delay );
+            }
+
+            double draw = random.nextDouble();
+            if (draw < errorRate) {
+                errors.increment();
+                send( exchange, 503, "{\"cod\":503,\"message\":\"Service unavailable\"}" );
+                return;
+            }
+            if (draw < errorRate + notFoundRate) {
+                send( exchange, 404, "{\"cod\":\"404\",\"message\":\"city not found\"}" );
+                return;
+            }
+
+            send( exchange, 200, objectMapper.writeValueAsString( payloadFor( zipCode( exchange ) ) ) );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private ObjectNode payloadFor(String zipCode) {
+        int hash = zipCode.hashCode() & Integer.MAX_VALUE;
+        ObjectNode weather = payload.deepCopy();
+        ObjectNode wind = (ObjectNode) weather.get( "wind" );
+        wind.put( "speed", (hash % 200) / 10d );
+        wind.put( "deg", hash % 360 );
+        weather.put( "name", "Town " + zipCode );
+        long now = TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis() );
+        weather.put( "dt", now - now % OBSERVATION_INTERVAL_SECONDS );
+        return weather;
+    }
+
+    private static String zipCode(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split( "&" )) {
+                if (parameter.startsWith( "zip=" )) {
+                    String zip = URLDecoder.decode( parameter.substring( 4 ), "UTF-8" );
+                    int comma = zip.indexOf( ',' );
+                    return comma < 0 ? zip : zip.substring( 0, comma );
+                }
+            }
+        }
+        // Calls by location
+        return query == null ? "" : query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+        exchange.getResponseHeaders().set( "Content-Type", "application/json; charset=utf-8" );
+        exchange.sendResponseHeaders( status, bytes.length );
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write( bytes );
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sivaji.weather.webservices.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws zip codes with Zipfian popularity: the zip code of rank k is requested with probability
+ * proportional to 1 / k^exponent. Ranks are assigned to the zip codes at random, so popularity
+ * does not follow the numbering.
+ */
+public class ZipfSampler {
+
+    private final List<String> zipCodes;
+    private final double[] cumulative;
+
+    public ZipfSampler(int count, double exponent, long seed) {
+        List<String> shuffled = new ArrayList<String>( count );
+        for (int i = 0; i < count; i++) {
+            shuffled.add( String.format( "%05d", 10000 + i * 89999L / Math.max( 1, count - 1 ) ) );
+        }
+        Collections.shuffle( shuffled, new Random( seed ) );
+        this.zipCodes = shuffled;
+
+        this.cumulative = new double[count];
+        double sum = 0;
+        for (int rank = 0; rank < count; rank++) {
+            sum += 1 / Math.pow( rank + 1, exponent );
+            cumulative[rank] = sum;
+        }
+    }
+
+    public String next(Random random) {
+        double draw = random.nextDouble() * cumulative[cumulative.length - 1];
+        int rank = Arrays.binarySearch( cumulative, draw );
+        return zipCodes.get( rank < 0 ? Math.min( -rank - 1, cumulative.length - 1 ) : rank );
+    }
+
+    public int size() {
+        return zipCodes.size();
+    }
+}
@@ -0,0 +1,61 @@
+package com.sivaji.weather.webservices.client;
+
+import com.sivaji.weather.webservices.model.CacheInvalidation;
+import com.sivaji.weather.webservices.model.PeerWindEntry;
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.service.ClusterSync;
+import com.sivaji.weather.webservices.service.WeatherService;
+import com.sivaji.weather.webservices.utils.CacheEntry;
+import com.sivaji.weather.webservices.utils.CacheManager;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+
+/**
+ * Endpoints the other instances of a cluster call: cache removals to apply, and lookups of a
+ * cached wind entry. Both need the cluster token. Lookups only read the local cache, they never
+ * call OpenWeatherMap.
+ */
+@RestController
+@RequestMapping("/internal/cache")
+public class ClusterController {
+
+    private final ClusterSync clusterSync;
+    private final WeatherService weatherService;
+
+    public ClusterController(ClusterSync clusterSync, WeatherService weatherService) {
+        this.clusterSync = clusterSync;
+        this.weatherService = weatherService;
+    }
+
+    @RequestMapping(value = "/invalidations", method = RequestMethod.POST)
+    public ResponseEntity<Void> invalidate(@RequestBody CacheInvalidation invalidation,
+                                           @RequestHeader(value = ClusterSync.TOKEN_HEADER, required = false) String token) {
+        if (!clusterSync.isAuthorized(token)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        CacheManager.getInstance().apply(invalidation);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @RequestMapping(value = "/wind/{zipCode:.+}", method = RequestMethod.GET)
+    public ResponseEntity<PeerWindEntry> getWind(@PathVariable String zipCode,
+                                                 @RequestHeader(value = ClusterSync.TOKEN_HEADER, required = false) String token) {
+        if (!clusterSync.isAuthorized(token)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        CacheEntry<Weather> entry = weatherService.getCachedEntry(zipCode);
+        if (entry == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(PeerWindEntry.of(entry.getValue(), entry.getInsertTime(), entry.getTtlMillis()),
+                HttpStatus.OK);
+    }
+}
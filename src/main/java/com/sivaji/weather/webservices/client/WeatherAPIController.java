@@ -1,20 +1,39 @@
 package com.sivaji.weather.webservices.client;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sivaji.weather.webservices.exception.InvalidZipCodeException;
 import com.sivaji.weather.webservices.exception.WeatherServiceException;
+import com.sivaji.weather.webservices.model.BatchWindResult;
 import com.sivaji.weather.webservices.model.CustomResponse;
+import com.sivaji.weather.webservices.model.EncodedWeather;
 import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.model.WindHistory;
 import com.sivaji.weather.webservices.service.WeatherService;
+import com.sivaji.weather.webservices.utils.CacheEntry;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
 
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 
 @Validated
@@ -22,19 +41,94 @@ import java.util.Optional;
 @RequestMapping("/api/v1")
 public class WeatherAPIController {
 
+    private static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
+    private static final Duration DEFAULT_HISTORY_RANGE = Duration.ofHours(24);
+
     private final WeatherService weatherService;
+    private final ObjectMapper objectMapper;
+    private final long batchTimeoutMs;
 
-    public WeatherAPIController(WeatherService weatherService) {
+    public WeatherAPIController(WeatherService weatherService, ObjectMapper objectMapper,
+                                WeatherServiceProperties serviceProperties) {
         this.weatherService = weatherService;
+        this.objectMapper = objectMapper;
+        this.batchTimeoutMs = serviceProperties.getBatch().getTimeoutMs();
     }
 
+    /**
+     * Cache hits complete on the request thread, misses release it while the upstream call runs.
+     * <p>
+     * The ETag and Last-Modified validators come from the cache entry's insert time and the max-age
+     * from its remaining time to live. Spring answers a matching If-None-Match or If-Modified-Since
+     * with 304 Not Modified, without writing the body. With encoded responses enabled, hits write
+     * the JSON kept for the cache entry instead of serializing the wind.
+     */
     @RequestMapping(value = "/wind/{zipCode}", method = RequestMethod.GET)
-    public Weather getWindByZipCode(@PathVariable String zipCode) throws WeatherServiceException {
-        if(this.weatherService.getWindByZipCode(zipCode) == null) {
-            throw new WeatherServiceException("No Response");
+    public CompletableFuture<ResponseEntity<?>> getWindByZipCode(@PathVariable String zipCode) throws WeatherServiceException {
+        if (this.weatherService.isEncodingResponses()) {
+            return this.weatherService.getEncodedWindByZipCodeAsync(zipCode).thenApply(WeatherAPIController::toEncodedResponse);
         }
+        return this.weatherService.getWindEntryByZipCodeAsync(zipCode).thenApply(WeatherAPIController::toResponse);
+    }
+
+    private static ResponseEntity<?> toResponse(CacheEntry<Weather> entry) {
+        return cacheHeaders(entry)
+                .eTag(EncodedWeather.etagOf(entry.getInsertTime()))
+                .body(entry.getValue());
+    }
+
+    private static ResponseEntity<?> toEncodedResponse(CacheEntry<EncodedWeather> entry) {
+        return cacheHeaders(entry)
+                .eTag(entry.getValue().getEtag())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(entry.getValue().getJson());
+    }
+
+    private static ResponseEntity.BodyBuilder cacheHeaders(CacheEntry<?> entry) {
+        long remainingSeconds = TimeUnit.MILLISECONDS.toSeconds(entry.getExpireTime() - System.currentTimeMillis());
+        CacheControl cacheControl = remainingSeconds > 0
+                ? CacheControl.maxAge(remainingSeconds, TimeUnit.SECONDS).cachePublic()
+                : CacheControl.maxAge(0, TimeUnit.SECONDS).mustRevalidate();
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .lastModified(entry.getInsertTime());
+    }
+
+    /**
+     * The wind observed for a zip code between two ISO-8601 instants, both inclusive, read from the
+     * history files. The range ends now and spans the last 24 hours unless given.
+     */
+    @RequestMapping(value = "/wind/{zipCode}/history", method = RequestMethod.GET)
+    public WindHistory getWindHistory(@PathVariable String zipCode,
+                                      @RequestParam(required = false) Instant from,
+                                      @RequestParam(required = false) Instant to) throws WeatherServiceException {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(DEFAULT_HISTORY_RANGE);
+        return new WindHistory(zipCode, start, end, this.weatherService.getWindHistory(zipCode, start, end));
+    }
+
+    /**
+     * Streams one JSON line per distinct zip code as soon as its wind is known (NDJSON).
+     * Failed zip codes get a line with an error instead of failing the whole batch.
+     */
+    @RequestMapping(value = "/wind/batch", method = RequestMethod.POST)
+    public ResponseEntity<ResponseBodyEmitter> getWindByZipCodes(@RequestBody List<String> zipCodes) {
+        List<String> normalized = this.weatherService.normalizeZipCodes(zipCodes);
 
-        return this.weatherService.getWindByZipCode(zipCode);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        this.weatherService.getWindByZipCodes(normalized, result -> send(emitter, result))
+                .whenComplete((done, failure) -> emitter.complete());
+
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(emitter);
+    }
+
+    private void send(ResponseBodyEmitter emitter, BatchWindResult result) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(result) + "\n", APPLICATION_NDJSON);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @RequestMapping(value = "/wind/clearcache", method = RequestMethod.GET)
@@ -1,5 +1,6 @@
 package com.sivaji.weather.webservices.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -9,6 +10,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import java.util.Date;
+import java.util.concurrent.CompletionException;
 
 @ControllerAdvice
 @RestController
@@ -27,4 +29,41 @@ public class CustomizedResponseEntityExceptionHandler extends ResponseEntityExce
                 request.getDescription( false ) );
         return new ResponseEntity<>( errorDetails, HttpStatus.NOT_FOUND );
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public final ResponseEntity<ErrorDetails> handleInvalidRequestException(InvalidRequestException ex, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails( new Date(), ex.getMessage(),
+                request.getDescription( false ) );
+        return new ResponseEntity<>( errorDetails, HttpStatus.BAD_REQUEST );
+    }
+
+    @ExceptionHandler(ZipCodeNotFoundException.class)
+    public final ResponseEntity<ErrorDetails> handleUnknownZipCodeException(ZipCodeNotFoundException ex, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails( new Date(), ex.getMessage(),
+                request.getDescription( false ) );
+        return new ResponseEntity<>( errorDetails, HttpStatus.NOT_FOUND );
+    }
+
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public final ResponseEntity<ErrorDetails> handleUpstreamUnavailableException(UpstreamUnavailableException ex, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails( new Date(), ex.getMessage(),
+                request.getDescription( false ) );
+        HttpHeaders headers = new HttpHeaders();
+        headers.set( HttpHeaders.RETRY_AFTER, "1" );
+        return new ResponseEntity<>( errorDetails, headers, HttpStatus.SERVICE_UNAVAILABLE );
+    }
+
+    /**
+     * Asynchronous handlers fail with the exception wrapped by the CompletableFuture.
+     */
+    @ExceptionHandler(CompletionException.class)
+    public final ResponseEntity<ErrorDetails> handleCompletionException(CompletionException ex, WebRequest request) {
+        if (ex.getCause() instanceof UpstreamUnavailableException) {
+            return handleUpstreamUnavailableException( (UpstreamUnavailableException) ex.getCause(), request );
+        }
+        if (ex.getCause() instanceof ZipCodeNotFoundException) {
+            return handleUnknownZipCodeException( (ZipCodeNotFoundException) ex.getCause(), request );
+        }
+        return handleAllExceptions( ex, request );
+    }
+}
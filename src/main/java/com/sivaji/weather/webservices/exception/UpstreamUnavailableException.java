@@ -0,0 +1,11 @@
+package com.sivaji.weather.webservices.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class UpstreamUnavailableException extends WeatherServiceException {
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.sivaji.weather.webservices.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ZipCodeNotFoundException extends RuntimeException {
+    public ZipCodeNotFoundException(String message) {
+        super(message);
+    }
+}
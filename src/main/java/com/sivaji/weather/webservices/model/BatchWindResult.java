@@ -0,0 +1,41 @@
+package com.sivaji.weather.webservices.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a batch wind lookup: the wind for a zip code, or the error it failed with.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchWindResult {
+
+    private final String zipCode;
+    private final Weather weather;
+    private final String error;
+
+    private BatchWindResult(String zipCode, Weather weather, String error) {
+        this.zipCode = zipCode;
+        this.weather = weather;
+        this.error = error;
+    }
+
+    public static BatchWindResult success(String zipCode, Weather weather) {
+        return new BatchWindResult( zipCode, weather, null );
+    }
+
+    public static BatchWindResult failure(String zipCode, String error) {
+        return new BatchWindResult( zipCode, null, error );
+    }
+
+    public String getZipCode() {
+        return zipCode;
+    }
+
+    public Weather getWeather() {
+        return weather;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+}
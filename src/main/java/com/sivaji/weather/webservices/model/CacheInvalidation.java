@@ -0,0 +1,40 @@
+package com.sivaji.weather.webservices.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache removals sent to the other instances of a cluster: caches cleared entirely, and keys
+ * removed per cache.
+ */
+public class CacheInvalidation {
+
+    private List<String> removeAll = new ArrayList<String>();
+    private Map<String, List<String>> remove = new LinkedHashMap<String, List<String>>();
+
+    public List<String> getRemoveAll() {
+        return removeAll;
+    }
+
+    public void setRemoveAll(List<String> removeAll) {
+        this.removeAll = removeAll;
+    }
+
+    public Map<String, List<String>> getRemove() {
+        return remove;
+    }
+
+    public void setRemove(Map<String, List<String>> remove) {
+        this.remove = remove;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return removeAll.isEmpty() && remove.isEmpty();
+    }
+
+}
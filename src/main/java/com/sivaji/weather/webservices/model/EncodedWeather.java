@@ -0,0 +1,40 @@
+package com.sivaji.weather.webservices.model;
+
+/**
+ * The JSON of a wind response with its ETag, encoded once for the cache entry inserted at
+ * insertTime and written as is on every hit.
+ */
+public final class EncodedWeather {
+
+    private final byte[] json;
+    private final String etag;
+    private final long insertTime;
+
+    public EncodedWeather(byte[] json, long insertTime) {
+        this.json = json;
+        this.etag = etagOf(insertTime);
+        this.insertTime = insertTime;
+    }
+
+    /**
+     * Every write creates a new cache entry, so its insert time identifies the wind of a zip code.
+     */
+    public static String etagOf(long insertTime) {
+        return "\"" + Long.toHexString(insertTime) + "\"";
+    }
+
+    /**
+     * The encoded response, shared by all hits: not to be modified.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getInsertTime() {
+        return insertTime;
+    }
+}
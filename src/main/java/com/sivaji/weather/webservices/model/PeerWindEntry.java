@@ -0,0 +1,73 @@
+package com.sivaji.weather.webservices.model;
+
+/**
+ * A wind cache entry as served to the other instances of a cluster, with its insert time and
+ * time to live so the receiving instance expires it at the same time.
+ */
+public class PeerWindEntry {
+
+    private String name;
+    private double windSpeed;
+    private double windDirection;
+    private long insertTime;
+    private long ttlMillis;
+
+    public static PeerWindEntry of(Weather weather, long insertTime, long ttlMillis) {
+        PeerWindEntry entry = new PeerWindEntry();
+        entry.setName( weather.getName() );
+        entry.setWindSpeed( weather.getWindSpeed() );
+        entry.setWindDirection( weather.getWindDirection() );
+        entry.setInsertTime( insertTime );
+        entry.setTtlMillis( ttlMillis );
+        return entry;
+    }
+
+    public Weather toWeather() {
+        Weather weather = new Weather();
+        weather.setName( name );
+        weather.setWindSpeed( windSpeed );
+        weather.setWindDirection( windDirection );
+        return weather;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+
+    public void setWindSpeed(double windSpeed) {
+        this.windSpeed = windSpeed;
+    }
+
+    public double getWindDirection() {
+        return windDirection;
+    }
+
+    public void setWindDirection(double windDirection) {
+        this.windDirection = windDirection;
+    }
+
+    public long getInsertTime() {
+        return insertTime;
+    }
+
+    public void setInsertTime(long insertTime) {
+        this.insertTime = insertTime;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+}
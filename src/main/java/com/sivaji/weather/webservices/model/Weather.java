@@ -1,8 +1,15 @@
 package com.sivaji.weather.webservices.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+@JsonDeserialize(using = WeatherDeserializer.class)
 public class Weather extends WeatherResponse {
     private String name;
 
+    /* When OpenWeatherMap observed the wind, in seconds since the epoch, 0 when unknown */
+    private long observationTime;
+
     public String getName() {
         return this.name;
     }
@@ -11,4 +18,13 @@ public class Weather extends WeatherResponse {
         this.name = name;
     }
 
+    @JsonIgnore
+    public long getObservationTime() {
+        return this.observationTime;
+    }
+
+    public void setObservationTime(long observationTime) {
+        this.observationTime = observationTime;
+    }
+
 }
@@ -0,0 +1,62 @@
+package com.sivaji.weather.webservices.model;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+
+/**
+ * Reads an OpenWeatherMap response straight from the token stream, keeping only the name, the
+ * wind speed and direction and the observation time. Every other subtree is skipped without
+ * being materialized and numbers are read as doubles directly.
+ */
+public class WeatherDeserializer extends StdDeserializer<Weather> {
+
+    public WeatherDeserializer() {
+        super( Weather.class );
+    }
+
+    @Override
+    public Weather deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+        if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            return (Weather) context.handleUnexpectedToken( Weather.class, parser );
+        }
+
+        Weather weather = new Weather();
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("name".equals( field )) {
+                weather.setName( value == JsonToken.VALUE_NULL ? null : parser.getText() );
+            } else if ("dt".equals( field ) && value == JsonToken.VALUE_NUMBER_INT) {
+                weather.setObservationTime( parser.getLongValue() );
+            } else if ("wind".equals( field ) && value == JsonToken.START_OBJECT) {
+                readWind( parser, weather );
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return weather;
+    }
+
+    private static void readWind(JsonParser parser, Weather weather) throws IOException {
+        for (JsonToken token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("speed".equals( field )) {
+                weather.setWindSpeed( parser.getValueAsDouble() );
+            } else if ("deg".equals( field )) {
+                weather.setWindDirection( parser.getValueAsDouble() );
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
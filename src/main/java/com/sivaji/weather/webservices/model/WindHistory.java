@@ -0,0 +1,39 @@
+package com.sivaji.weather.webservices.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The wind observations of a zip code within a time range, oldest first.
+ */
+public class WindHistory {
+
+    private final String zipCode;
+    private final Instant from;
+    private final Instant to;
+    private final List<WindObservation> observations;
+
+    public WindHistory(String zipCode, Instant from, Instant to, List<WindObservation> observations) {
+        this.zipCode = zipCode;
+        this.from = from;
+        this.to = to;
+        this.observations = observations;
+    }
+
+    public String getZipCode() {
+        return zipCode;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public List<WindObservation> getObservations() {
+        return observations;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.sivaji.weather.webservices.model;
+
+import java.time.Instant;
+
+/**
+ * The wind OpenWeatherMap observed at a point in time, one point of a wind history.
+ */
+public class WindObservation {
+
+    private final Instant time;
+    private final double windSpeed;
+    private final double windDirection;
+
+    public WindObservation(Instant time, double windSpeed, double windDirection) {
+        this.time = time;
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+
+    public double getWindDirection() {
+        return windDirection;
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.sivaji.weather.webservices.service;
+
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+
+/**
+ * Structured access log of the wind requests, kept off the request path. Requests record their
+ * fields into a bounded lock free ring buffer of preallocated slots, a background writer drains
+ * it and formats one line per request to the {@value #LOGGER_NAME} logger.
+ * <p>
+ * Hits are sampled at their own rate, every other outcome at the sample rate. When the writer
+ * falls behind and the buffer is full, records are dropped and counted rather than waited for.
+ */
+public class AccessLog {
+
+    public static final String LOGGER_NAME = "com.sivaji.weather.webservices.access";
+
+    private static final Logger logger = LoggerFactory.getLogger( LOGGER_NAME );
+
+    public enum Outcome {
+        HIT, MISS, STALE, NOT_FOUND, ERROR
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final double hitSampleRate;
+    private final double sampleRate;
+
+    /* Slot i is free for the producer at position p when its sequence is p, readable at p + 1 */
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final String[] zipCodes;
+    private final byte[] outcomes;
+    private final long[] totalMicros;
+    private final long[] upstreamMicros;
+    private final AtomicLong tail = new AtomicLong();
+    /* Only read and written by the draining thread */
+    private long head;
+
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final ScheduledExecutorService writer;
+
+    /**
+     * An access log with at least capacity slots, rounded up to a power of two, drained every
+     * flushIntervalMillis; not drained in the background when the interval is 0.
+     */
+    public AccessLog(int capacity, double hitSampleRate, double sampleRate, long flushIntervalMillis) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException( "The capacity must be between 1 and 2^30." );
+        }
+        int slots = capacity == 1 ? 1 : Integer.highestOneBit( capacity - 1 ) << 1;
+        this.mask = slots - 1;
+        this.sequences = new AtomicLongArray( slots );
+        for (int i = 0; i < slots; i++) {
+            sequences.set( i, i );
+        }
+        this.timestamps = new long[slots];
+        this.zipCodes = new String[slots];
+        this.outcomes = new byte[slots];
+        this.totalMicros = new long[slots];
+        this.upstreamMicros = new long[slots];
+        this.hitSampleRate = hitSampleRate;
+        this.sampleRate = sampleRate;
+
+        if (flushIntervalMillis > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "weather-access-log-" );
+            threadFactory.setDaemon( true );
+            this.writer = Executors.newSingleThreadScheduledExecutor( threadFactory );
+            this.writer.scheduleWithFixedDelay( this::drain, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS );
+        } else {
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Record a request that started at startNanos, per System.nanoTime(), and spent upstreamNanos
+     * waiting for OpenWeatherMap. Never blocks.
+     */
+    public void record(String zipCode, Outcome outcome, long startNanos, long upstreamNanos) {
+        double rate = outcome == Outcome.HIT ? hitSampleRate : sampleRate;
+        if (rate < 1 && (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate)) {
+            sampledOut.increment();
+            return;
+        }
+
+        long position = tail.get();
+        int index;
+        for (;;) {
+            index = (int) (position & mask);
+            long available = sequences.get( index ) - position;
+            if (available == 0) {
+                if (tail.compareAndSet( position, position + 1 )) {
+                    break;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // The writer has not drained this slot yet: the buffer is full
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        timestamps[index] = System.currentTimeMillis();
+        zipCodes[index] = zipCode;
+        outcomes[index] = (byte) outcome.ordinal();
+        totalMicros[index] = TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - startNanos );
+        upstreamMicros[index] = TimeUnit.NANOSECONDS.toMicros( upstreamNanos );
+        // Publishes the fields written above to the writer
+        sequences.set( index, position + 1 );
+    }
+
+    /**
+     * Write the recorded requests to the log, returns how many were written. Called by the
+     * background writer, only one thread may drain at a time.
+     */
+    public synchronized int drain() {
+        int count = 0;
+        for (;;) {
+            int index = (int) (head & mask);
+            if (sequences.get( index ) != head + 1) {
+                break;
+            }
+
+            if (logger.isInfoEnabled()) {
+                logger.info( "ts={} zip={} outcome={} total_ms={} upstream_ms={}",
+                        Instant.ofEpochMilli( timestamps[index] ), zipCodes[index], OUTCOMES[outcomes[index]],
+                        millis( totalMicros[index] ), millis( upstreamMicros[index] ) );
+            }
+            zipCodes[index] = null;
+            sequences.set( index, head + mask + 1 );
+            head++;
+            count++;
+        }
+        written.add( count );
+        return count;
+    }
+
+    private static String millis(long micros) {
+        return micros / 1000 + "." + String.format( "%03d", micros % 1000 );
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * Stop the background writer and write what is left.
+     */
+    public void shutdown() {
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+        drain();
+    }
+}
@@ -0,0 +1,157 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import com.sivaji.weather.webservices.utils.RateLimiter;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Pre-populates the wind cache from the configured high-traffic zip codes once the application
+ * started. Fetches go through {@link WeatherService#prefetch(String)}, so zip codes already restored
+ * from a snapshot are not fetched again and the upstream quota is left to user requests first,
+ * and run in parallel at a limited rate.
+ */
+@Component
+public class CacheWarmup implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger( CacheWarmup.class );
+
+    private final WeatherService weatherService;
+    private final WeatherServiceProperties.Warmup warmupProperties;
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int total;
+    private volatile ExecutorService executor;
+    private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+    public CacheWarmup(WeatherService weatherService, WeatherServiceProperties serviceProperties) {
+        this.weatherService = weatherService;
+        this.warmupProperties = serviceProperties.getWarmup();
+        if (!warmupProperties.isEnabled()) {
+            done.complete( null );
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        start();
+    }
+
+    /**
+     * Start fetching the configured zip codes in the background, at most once.
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (done.isDone() || executor != null) {
+            return done;
+        }
+
+        List<String> zipCodes = zipCodes();
+        total = zipCodes.size();
+        logger.info( "Warming up the wind cache with {} zip codes", total );
+
+        final long start = System.currentTimeMillis();
+        final RateLimiter rateLimiter = new RateLimiter( warmupProperties.getPermitsPerSecond() );
+        executor = Executors.newFixedThreadPool( Math.max( 1, warmupProperties.getParallelism() ),
+                new CustomizableThreadFactory( "weather-warmup-" ) );
+
+        List<CompletableFuture<Void>> fetches = new ArrayList<CompletableFuture<Void>>();
+        for (String zipCode : zipCodes) {
+            fetches.add( CompletableFuture.runAsync( () -> fetch( zipCode, rateLimiter ), executor ) );
+        }
+
+        CompletableFuture.allOf( fetches.toArray( new CompletableFuture[0] ) ).whenComplete( (result, failure) -> {
+            logger.info( "Wind cache warm-up finished in {} ms: {} fetched, {} failed",
+                    System.currentTimeMillis() - start, succeeded.get(), failed.get() );
+            executor.shutdown();
+            done.complete( null );
+        } );
+        return done;
+    }
+
+    private void fetch(String zipCode, RateLimiter rateLimiter) {
+        try {
+            rateLimiter.acquire();
+            weatherService.prefetch( zipCode );
+            succeeded.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.warn( "Warm-up fetch for {} failed: {}", zipCode, e.getMessage() );
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * The configured zip codes followed by those of the file, without duplicates.
+     */
+    private List<String> zipCodes() {
+        Set<String> zipCodes = new LinkedHashSet<String>();
+        addAll( zipCodes, warmupProperties.getZipCodes() );
+
+        String file = warmupProperties.getZipCodesFile();
+        if (file != null && !file.trim().isEmpty()) {
+            try {
+                addAll( zipCodes, Files.readAllLines( Paths.get( file ), StandardCharsets.UTF_8 ) );
+            } catch (IOException e) {
+                logger.warn( "Could not read warm-up zip codes from {}: {}", file, e.getMessage() );
+            }
+        }
+
+        return new ArrayList<String>( zipCodes );
+    }
+
+    private static void addAll(Set<String> zipCodes, Collection<String> lines) {
+        for (String line : lines) {
+            String zipCode = line.trim();
+            if (!zipCode.isEmpty() && !zipCode.startsWith( "#" )) {
+                zipCodes.add( zipCode );
+            }
+        }
+    }
+
+    public boolean isDone() {
+        return done.isDone();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sivaji.weather.webservices.service;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Reports the instance OUT_OF_SERVICE until the cache warm-up finished, so the load balancer
+ * only sends traffic to instances with a hot cache.
+ */
+@Component
+public class CacheWarmupHealthIndicator extends AbstractHealthIndicator {
+
+    private final CacheWarmup cacheWarmup;
+
+    public CacheWarmupHealthIndicator(CacheWarmup cacheWarmup) {
+        this.cacheWarmup = cacheWarmup;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (cacheWarmup.isDone()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetail( "total", cacheWarmup.getTotal() )
+                .withDetail( "fetched", cacheWarmup.getSucceeded() )
+                .withDetail( "failed", cacheWarmup.getFailed() );
+    }
+}
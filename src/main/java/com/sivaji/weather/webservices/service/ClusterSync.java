@@ -0,0 +1,192 @@
+package com.sivaji.weather.webservices.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import com.sivaji.weather.webservices.model.CacheInvalidation;
+import com.sivaji.weather.webservices.model.PeerWindEntry;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+
+/**
+ * Keeps the caches of the instances behind the load balancer consistent. Removals queued by the
+ * {@link CacheManager} are sent to every peer in batches, and peers may be asked for a cached
+ * wind entry before calling OpenWeatherMap.
+ * <p>
+ * Delivery is best effort: a removal a peer missed is corrected by its TTL. The peers share a
+ * token, and the internal endpoints refuse calls without it.
+ */
+@Component
+public class ClusterSync {
+
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+
+    private static final Logger logger = LoggerFactory.getLogger( ClusterSync.class );
+
+    private final CacheManager cacheManager = CacheManager.getInstance();
+    private final boolean enabled;
+    private final List<String> peers;
+    private final boolean peerFetch;
+    private final String token;
+    private final byte[] tokenBytes;
+    private final RestTemplate restTemplate;
+    private final ScheduledExecutorService syncExecutor;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder peerHits = new LongAdder();
+
+    public ClusterSync(WeatherServiceProperties serviceProperties) {
+        WeatherServiceProperties.Cluster clusterProperties = serviceProperties.getCluster();
+        this.peers = new ArrayList<String>();
+        for (String peer : clusterProperties.getPeers()) {
+            if (peer != null && !peer.trim().isEmpty()) {
+                this.peers.add( peer.trim().replaceAll( "/+$", "" ) );
+            }
+        }
+        this.enabled = clusterProperties.isEnabled() && !this.peers.isEmpty();
+        this.peerFetch = this.enabled && clusterProperties.isPeerFetch();
+        this.token = clusterProperties.getToken();
+        this.tokenBytes = token == null ? null : token.getBytes( StandardCharsets.UTF_8 );
+
+        if (!this.enabled) {
+            this.restTemplate = null;
+            this.syncExecutor = null;
+            return;
+        }
+
+        if (token == null || token.trim().isEmpty()) {
+            throw new IllegalStateException( "Cluster sync is enabled without a token, set app.weather.cluster.token "
+                    + "to the same secret on every instance." );
+        }
+
+        // Plain connections, peer calls must not compete with upstream calls for the pool
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout( clusterProperties.getTimeoutMs() );
+        requestFactory.setReadTimeout( clusterProperties.getTimeoutMs() );
+        this.restTemplate = new RestTemplate( requestFactory );
+
+        cacheManager.setSyncEnabled( true );
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "weather-cluster-sync-" );
+        threadFactory.setDaemon( true );
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor( threadFactory );
+        this.syncExecutor.scheduleWithFixedDelay( this::sync, clusterProperties.getSyncIntervalMs(),
+                clusterProperties.getSyncIntervalMs(), TimeUnit.MILLISECONDS );
+        logger.info( "Syncing cache removals with {} peers", peers.size() );
+    }
+
+    /**
+     * Send the removals queued since the last call to every peer.
+     */
+    public void sync() {
+        try {
+            CacheInvalidation invalidation = cacheManager.drainInvalidations();
+            if (invalidation.isEmpty()) {
+                return;
+            }
+
+            HttpEntity<CacheInvalidation> request = new HttpEntity<CacheInvalidation>( invalidation, tokenHeaders() );
+            for (String peer : peers) {
+                try {
+                    restTemplate.postForEntity( peer + "/internal/cache/invalidations", request, Void.class );
+                    sent.increment();
+                } catch (RestClientException e) {
+                    sendFailures.increment();
+                    logger.warn( "Could not send cache removals to {}: {}", peer, e.getMessage() );
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn( "Cache removal sync failed: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * A peer's cached entry for the zip code, or null when no peer has one or peer fetch is disabled.
+     */
+    public PeerWindEntry fetchWind(String zipCode) {
+        if (!peerFetch) {
+            return null;
+        }
+
+        HttpEntity<Void> request = new HttpEntity<Void>( tokenHeaders() );
+        for (String peer : peers) {
+            try {
+                PeerWindEntry entry = restTemplate.exchange( peer + "/internal/cache/wind/{zipCode}", HttpMethod.GET,
+                        request, PeerWindEntry.class, zipCode ).getBody();
+                if (entry != null) {
+                    peerHits.increment();
+                    return entry;
+                }
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode() != HttpStatus.NOT_FOUND) {
+                    logger.debug( "Peer {} refused the lookup for {}: {}", peer, zipCode, e.getMessage() );
+                }
+            } catch (RestClientException e) {
+                logger.debug( "Peer {} is unavailable for {}: {}", peer, zipCode, e.getMessage() );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a call from a peer is enabled here and carries the shared token. The comparison
+     * takes the same time wherever the tokens differ.
+     */
+    public boolean isAuthorized(String requestToken) {
+        return enabled && requestToken != null
+                && MessageDigest.isEqual( tokenBytes, requestToken.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private HttpHeaders tokenHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set( TOKEN_HEADER, token );
+        return headers;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getSendFailureCount() {
+        return sendFailures.sum();
+    }
+
+    public long getPeerHitCount() {
+        return peerHits.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+            // Send what was removed since the last run
+            sync();
+            cacheManager.setSyncEnabled( false );
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+
+/**
+ * The HTTP client used for upstream calls: a bounded pool of keep-alive connections with
+ * connect, read and total timeouts, and gzip compressed responses.
+ * <p>
+ * The total timeout aborts a call still running after the limit, it also covers responses
+ * trickling in slower than the read timeout would notice.
+ */
+public class UpstreamHttpClient implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger( UpstreamHttpClient.class );
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final HttpComponentsClientHttpRequestFactory requestFactory;
+    private final ScheduledThreadPoolExecutor abortTimer;
+
+    public UpstreamHttpClient(WeatherServiceProperties.Upstream upstreamProperties) {
+        this.connectionManager = new PoolingHttpClientConnectionManager(
+                upstreamProperties.getIdleTimeoutMs(), TimeUnit.MILLISECONDS );
+        this.connectionManager.setMaxTotal( upstreamProperties.getMaxConnections() );
+        this.connectionManager.setDefaultMaxPerRoute( upstreamProperties.getMaxConnectionsPerRoute() );
+        // Check connections idle for a while, the server may have closed them
+        this.connectionManager.setValidateAfterInactivity( 2000 );
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout( upstreamProperties.getConnectTimeoutMs() )
+                .setSocketTimeout( upstreamProperties.getReadTimeoutMs() )
+                .setConnectionRequestTimeout( upstreamProperties.getConnectionRequestTimeoutMs() )
+                .build();
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager( connectionManager )
+                .setDefaultRequestConfig( requestConfig )
+                // Retry once, a pooled connection may have been dropped by the server
+                .setRetryHandler( new DefaultHttpRequestRetryHandler( 1, false ) )
+                .evictExpiredConnections()
+                .evictIdleConnections( upstreamProperties.getIdleTimeoutMs(), TimeUnit.MILLISECONDS );
+        if (!upstreamProperties.isCompression()) {
+            builder.disableContentCompression();
+        }
+        this.httpClient = builder.build();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory( "weather-upstream-abort-" );
+        threadFactory.setDaemon( true );
+        this.abortTimer = new ScheduledThreadPoolExecutor( 1, threadFactory );
+        // Completed calls cancel their abort, drop it from the queue right away
+        this.abortTimer.setRemoveOnCancelPolicy( true );
+        this.requestFactory = new TimeLimitedRequestFactory( httpClient, upstreamProperties.getTotalTimeoutMs(), abortTimer );
+    }
+
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+
+    /**
+     * The number of connections currently used by a call.
+     */
+    public int getLeasedConnections() {
+        return connectionManager.getTotalStats().getLeased();
+    }
+
+    /**
+     * The number of idle keep-alive connections in the pool.
+     */
+    public int getAvailableConnections() {
+        return connectionManager.getTotalStats().getAvailable();
+    }
+
+    /**
+     * The number of calls waiting for a connection.
+     */
+    public int getPendingConnections() {
+        return connectionManager.getTotalStats().getPending();
+    }
+
+    public int getMaxConnections() {
+        return connectionManager.getTotalStats().getMax();
+    }
+
+    /**
+     * The number of calls whose total timeout is still pending.
+     */
+    int getScheduledAborts() {
+        return abortTimer.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        abortTimer.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn( "Could not close the upstream HTTP client: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * Aborts requests still running after the total timeout. The abort is cancelled once the
+     * response is closed or the call fails.
+     */
+    private static class TimeLimitedRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        private final long totalTimeoutMillis;
+        private final ScheduledThreadPoolExecutor abortTimer;
+        /* Hands the abort scheduled for the request being created over to createRequest */
+        private final ThreadLocal<ScheduledFuture<?>> scheduledAbort = new ThreadLocal<ScheduledFuture<?>>();
+
+        TimeLimitedRequestFactory(CloseableHttpClient httpClient, long totalTimeoutMillis,
+                                  ScheduledThreadPoolExecutor abortTimer) {
+            super( httpClient );
+            this.totalTimeoutMillis = totalTimeoutMillis;
+            this.abortTimer = abortTimer;
+        }
+
+        @Override
+        public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+            ClientHttpRequest request;
+            try {
+                request = super.createRequest( uri, httpMethod );
+            } catch (IOException | RuntimeException e) {
+                cancelScheduledAbort();
+                throw e;
+            }
+            ScheduledFuture<?> abort = scheduledAbort.get();
+            if (abort == null) {
+                return request;
+            }
+            scheduledAbort.remove();
+            return new AbortCancellingRequest( request, abort );
+        }
+
+        @Override
+        protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+            HttpUriRequest request = super.createHttpUriRequest( httpMethod, uri );
+            if (totalTimeoutMillis > 0 && request instanceof HttpRequestBase) {
+                final HttpRequestBase abortable = (HttpRequestBase) request;
+                scheduledAbort.set( abortTimer.schedule( () -> {
+                    if (!abortable.isAborted()) {
+                        abortable.abort();
+                    }
+                }, totalTimeoutMillis, TimeUnit.MILLISECONDS ) );
+            }
+            return request;
+        }
+
+        private void cancelScheduledAbort() {
+            ScheduledFuture<?> abort = scheduledAbort.get();
+            if (abort != null) {
+                scheduledAbort.remove();
+                abort.cancel( false );
+            }
+        }
+    }
+
+    /**
+     * Cancels the abort of its request when the call fails or its response is closed.
+     */
+    private static class AbortCancellingRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest request;
+        private final ScheduledFuture<?> abort;
+
+        AbortCancellingRequest(ClientHttpRequest request, ScheduledFuture<?> abort) {
+            this.request = request;
+            this.abort = abort;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            try {
+                return new AbortCancellingResponse( request.execute(), abort );
+            } catch (IOException | RuntimeException e) {
+                abort.cancel( false );
+                throw e;
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+
+    private static class AbortCancellingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final ScheduledFuture<?> abort;
+
+        AbortCancellingResponse(ClientHttpResponse response, ScheduledFuture<?> abort) {
+            this.response = response;
+            this.abort = abort;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Still covered by the abort, closing reads what is left of the body
+                response.close();
+            } finally {
+                abort.cancel( false );
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * Builds the {@link org.springframework.web.client.RestTemplate} of {@link WeatherService} on the
+ * pooled upstream client, and publishes the pool statistics on the actuator metrics endpoint.
+ */
+@Configuration
+public class UpstreamHttpClientConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public UpstreamHttpClient upstreamHttpClient(WeatherServiceProperties serviceProperties) {
+        return new UpstreamHttpClient( serviceProperties.getUpstream() );
+    }
+
+    @Bean
+    public RestTemplateCustomizer upstreamRestTemplateCustomizer(UpstreamHttpClient upstreamHttpClient) {
+        return restTemplate -> restTemplate.setRequestFactory( upstreamHttpClient.getRequestFactory() );
+    }
+
+    @Bean
+    public PublicMetrics upstreamPoolPublicMetrics(UpstreamHttpClient upstreamHttpClient) {
+        return () -> {
+            Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+            metrics.add( new Metric<Integer>( "weather.upstream.pool.leased", upstreamHttpClient.getLeasedConnections() ) );
+            metrics.add( new Metric<Integer>( "weather.upstream.pool.available", upstreamHttpClient.getAvailableConnections() ) );
+            metrics.add( new Metric<Integer>( "weather.upstream.pool.pending", upstreamHttpClient.getPendingConnections() ) );
+            metrics.add( new Metric<Integer>( "weather.upstream.pool.max", upstreamHttpClient.getMaxConnections() ) );
+            return metrics;
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CircuitBreaker;
+import com.sivaji.weather.webservices.utils.ConcurrencyLimiter;
+import com.sivaji.weather.webservices.utils.LatencyRecorder;
+import com.sivaji.weather.webservices.utils.QuotaScheduler;
+import com.sivaji.weather.webservices.utils.RequestCoalescer;
+import com.sivaji.weather.webservices.utils.WindHistoryStore;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * The actuator /weather endpoint: cache occupancy, request outcomes and latency percentiles of
+ * wind lookups and upstream calls, how concurrent misses were coalesced, and how much of the
+ * access log was written or dropped.
+ */
+@Component
+public class WeatherMetricsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+    private final WeatherService weatherService;
+
+    public WeatherMetricsEndpoint(WeatherService weatherService) {
+        super( "weather", false );
+        this.weatherService = weatherService;
+    }
+
+    @Override
+    public Map<String, Object> invoke() {
+        WeatherServiceMetrics metrics = weatherService.getMetrics();
+        Cache<Weather> cache = weatherService.getCache();
+        RequestCoalescer<Weather> coalescer = weatherService.getRequestCoalescer();
+
+        Map<String, Object> cacheDetails = new LinkedHashMap<String, Object>();
+        cacheDetails.put( "size", cache.size() );
+        cacheDetails.put( "evictions", cache.getEvictionCount() );
+        cacheDetails.put( "expirations", cache.getExpiredCount() );
+        Cache<String> negativeCache = weatherService.getNegativeCache();
+        if (negativeCache != null) {
+            cacheDetails.put( "unknownZipCodes", negativeCache.size() );
+        }
+
+        Map<String, Object> requests = new LinkedHashMap<String, Object>();
+        requests.put( "hits", metrics.getHits() );
+        requests.put( "misses", metrics.getMisses() );
+        requests.put( "stale", metrics.getStale() );
+        requests.put( "peerHits", metrics.getPeerHits() );
+        requests.put( "notFound", metrics.getNotFound() );
+        requests.put( "errors", metrics.getErrors() );
+        requests.put( "hitRatio", metrics.getHitRatio() );
+        requests.put( "latency", latency( metrics.getRequestLatency() ) );
+
+        Map<String, Object> upstream = new LinkedHashMap<String, Object>();
+        upstream.put( "calls", metrics.getUpstreamLatency().getCount() );
+        upstream.put( "errors", metrics.getUpstreamErrors() );
+        upstream.put( "latency", latency( metrics.getUpstreamLatency() ) );
+
+        // Misses that reached the coalescer, one load per group of concurrent misses of a zip code
+        Map<String, Object> coalescing = new LinkedHashMap<String, Object>();
+        coalescing.put( "requests", coalescer.getRequestCount() );
+        coalescing.put( "loads", coalescer.getLoadCount() );
+        coalescing.put( "coalesced", coalescer.getCoalescedCount() );
+        coalescing.put( "timeouts", coalescer.getTimeoutCount() );
+        coalescing.put( "inflight", coalescer.getInFlightCount() );
+        coalescing.put( "meanMillis", coalescer.getMeanLatencyMillis() );
+        coalescing.put( "maxMillis", coalescer.getMaxLatencyMillis() );
+        upstream.put( "coalescing", coalescing );
+
+        ConcurrencyLimiter limiter = weatherService.getUpstreamLimiter();
+        if (limiter != null) {
+            Map<String, Object> limiterDetails = new LinkedHashMap<String, Object>();
+            limiterDetails.put( "limit", limiter.getLimit() );
+            limiterDetails.put( "inflight", limiter.getInFlight() );
+            limiterDetails.put( "rejected", limiter.getRejectedCount() );
+            upstream.put( "limiter", limiterDetails );
+        }
+
+        CircuitBreaker circuitBreaker = weatherService.getCircuitBreaker();
+        if (circuitBreaker != null) {
+            Map<String, Object> circuitDetails = new LinkedHashMap<String, Object>();
+            circuitDetails.put( "state", circuitBreaker.getState() );
+            circuitDetails.put( "rejected", circuitBreaker.getRejectedCount() );
+            upstream.put( "circuitBreaker", circuitDetails );
+        }
+
+        QuotaScheduler quotaScheduler = weatherService.getQuotaScheduler();
+        if (quotaScheduler != null) {
+            Map<String, Object> quota = new LinkedHashMap<String, Object>();
+            quota.put( "callsPerMinute", quotaScheduler.getCallsPerMinute() );
+            quota.put( "remaining", quotaScheduler.getRemaining() );
+            quota.put( "waiting", quotaScheduler.getWaiting() );
+            quota.put( "rejected", quotaScheduler.getRejectedCount() );
+            upstream.put( "quota", quota );
+        }
+
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put( "cache", cacheDetails );
+        result.put( "requests", requests );
+        result.put( "upstream", upstream );
+
+        AccessLog accessLog = weatherService.getAccessLog();
+        if (accessLog != null) {
+            Map<String, Object> accessLogDetails = new LinkedHashMap<String, Object>();
+            accessLogDetails.put( "capacity", accessLog.getCapacity() );
+            accessLogDetails.put( "written", accessLog.getWritten() );
+            accessLogDetails.put( "sampledOut", accessLog.getSampledOut() );
+            accessLogDetails.put( "dropped", accessLog.getDropped() );
+            result.put( "accessLog", accessLogDetails );
+        }
+
+        WindHistoryStore windHistory = weatherService.getWindHistoryStore();
+        if (windHistory != null) {
+            Map<String, Object> historyDetails = new LinkedHashMap<String, Object>();
+            historyDetails.put( "segments", windHistory.getSegmentCount() );
+            historyDetails.put( "appended", windHistory.getAppendedCount() );
+            result.put( "history", historyDetails );
+        }
+        return result;
+    }
+
+    private static Map<String, Object> latency(LatencyRecorder recorder) {
+        Map<String, Object> latency = new LinkedHashMap<String, Object>();
+        latency.put( "count", recorder.getCount() );
+        latency.put( "mean", recorder.getMeanMillis() );
+        latency.put( "p50", recorder.getPercentileMillis( 50 ) );
+        latency.put( "p90", recorder.getPercentileMillis( 90 ) );
+        latency.put( "p99", recorder.getPercentileMillis( 99 ) );
+        latency.put( "p999", recorder.getPercentileMillis( 99.9 ) );
+        latency.put( "max", recorder.getMaxMillis() );
+        return latency;
+    }
+}
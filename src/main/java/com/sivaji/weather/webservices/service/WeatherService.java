@@ -1,23 +1,73 @@
 package com.sivaji.weather.webservices.service;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sivaji.weather.webservices.exception.InvalidRequestException;
 import com.sivaji.weather.webservices.exception.InvalidZipCodeException;
+import com.sivaji.weather.webservices.exception.UpstreamUnavailableException;
 import com.sivaji.weather.webservices.exception.WeatherServiceException;
+import com.sivaji.weather.webservices.exception.ZipCodeNotFoundException;
+import com.sivaji.weather.webservices.model.BatchWindResult;
+import com.sivaji.weather.webservices.model.EncodedWeather;
+import com.sivaji.weather.webservices.model.PeerWindEntry;
 import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.model.WindObservation;
 import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheEntry;
 import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.CacheSnapshotStore;
+import com.sivaji.weather.webservices.utils.CircuitBreaker;
+import com.sivaji.weather.webservices.utils.ConcurrencyLimiter;
+import com.sivaji.weather.webservices.utils.GeoCellIndex;
+import com.sivaji.weather.webservices.utils.ObservationExpiry;
+import com.sivaji.weather.webservices.utils.QuotaScheduler;
+import com.sivaji.weather.webservices.utils.RequestCoalescer;
 import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import com.sivaji.weather.webservices.utils.Weigher;
+import com.sivaji.weather.webservices.utils.WindHistoryStore;
+import com.sivaji.weather.webservices.utils.ZipCodeStore;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriTemplate;
 
@@ -26,53 +76,960 @@ import org.springframework.web.util.UriTemplate;
 public class WeatherService {
 
     private static final String COUNTRY_CODE = "us";
-    private static final String WEATHER_URL =
-            "http://api.openweathermap.org/data/2.5/weather?zip={zipCode},{countryCode}&APPID={key}";
+    private static final String WEATHER_PATH = "/weather?zip={zipCode},{countryCode}&APPID={key}";
+    private static final String WEATHER_BY_LOCATION_PATH = "/weather?lat={lat}&lon={lon}&APPID={key}";
+
+    /* Rough heap cost of a cached entry besides its strings: entry, map node, Weather and String headers */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    /* Rough heap cost of an encoded response besides its bytes: entry, map node, arrays and ETag */
+    private static final int ENCODED_ENTRY_OVERHEAD_BYTES = 150;
+
+    /* Table slots of an entry in the zip code store, at its maximum load factor */
+    private static final int ZIP_CODE_ENTRY_BYTES = 56;
+
+    /* Roughly the number of US zip codes, to size the zip code store up front */
+    private static final int US_ZIP_CODES = 42000;
 
     private static final Logger logger = LoggerFactory.getLogger( WeatherService.class );
     private final RestTemplate restTemplate;
     private final String apiKey;
+    private final UriTemplate weatherUrl;
+    private final UriTemplate weatherByLocationUrl;
     private final CacheManager cacheManager = CacheManager.getInstance();
+    private final Cache<Weather> weatherAPICache;
+    /* Zip codes OpenWeatherMap answered 404 for, null when disabled */
+    private final Cache<String> unknownZipCodes;
+
+    /* Request log written in the background, null when disabled */
+    private final AccessLog accessLog;
+
+    /* On-disk history of the fetched wind, null when disabled */
+    private final WindHistoryStore windHistory;
+
+    /* Expiry from the observation time of the wind, null for the fixed cache TTL */
+    private final ObservationExpiry observationExpiry;
+
+    /* JSON of the cached wind, null unless encoded responses are enabled */
+    private final Cache<EncodedWeather> encodedResponses;
+    private final ObjectWriter weatherWriter;
+    private final RequestCoalescer<Weather> requestCoalescer;
     private final String regex = "^\\d{5}(-\\d{4})?$";
 
+    /* Refresh-ahead: entries older than the soft TTL are served while being refreshed in the background */
+    private final boolean refreshAhead;
+    private final long softTtlMillis;
+    private final ExecutorService refreshExecutor;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /* Bounded pool running upstream calls for asynchronous requests */
+    private final ExecutorService upstreamExecutor;
+
+    /* Load shedding toward OpenWeatherMap, null when disabled */
+    private final ConcurrencyLimiter upstreamLimiter;
+    private final CircuitBreaker circuitBreaker;
+
+    /* Spends the per-minute call quota of the API key, user requests first; null when disabled */
+    private final QuotaScheduler quotaScheduler;
+    private final long quotaMaxWaitMillis;
+
+    private final int batchMaxSize;
+    private final int batchMaxConcurrency;
+
+    /* Snapshot of the cache written periodically and on shutdown, null when disabled */
+    private final CacheSnapshotStore<Weather> snapshotStore;
+    private final ScheduledExecutorService snapshotExecutor;
+
+    private final WeatherServiceMetrics metrics = new WeatherServiceMetrics();
+
+    /* Maps zip codes to the grid cell their wind is cached and fetched for, null when disabled */
+    private final GeoCellIndex geoCellIndex;
+
+    /* Peers asked for an entry before calling upstream, null outside a cluster */
+    private final ClusterSync clusterSync;
+
     public WeatherService(RestTemplateBuilder restTemplateBuilder, WeatherServiceProperties serviceProperties) {
+        this( restTemplateBuilder, serviceProperties, null );
+    }
+
+    public WeatherService(RestTemplateBuilder restTemplateBuilder, WeatherServiceProperties serviceProperties,
+                          ClusterSync clusterSync) {
+        this( restTemplateBuilder, serviceProperties, clusterSync, new ObjectMapper() );
+    }
+
+    @Autowired
+    public WeatherService(RestTemplateBuilder restTemplateBuilder, WeatherServiceProperties serviceProperties,
+                          ClusterSync clusterSync, ObjectMapper objectMapper) {
         this.restTemplate = restTemplateBuilder.build();
+        this.clusterSync = clusterSync;
+        this.geoCellIndex = loadGeoCellIndex( serviceProperties.getGeo() );
         this.apiKey = serviceProperties.getApi().getKey();
+        String baseUrl = StringUtils.removeEnd( serviceProperties.getApi().getUrl(), "/" );
+        this.weatherUrl = new UriTemplate( baseUrl + WEATHER_PATH );
+        this.weatherByLocationUrl = new UriTemplate( baseUrl + WEATHER_BY_LOCATION_PATH );
+        this.weatherAPICache = createCache( serviceProperties.getCache() );
+        this.unknownZipCodes = createNegativeCache( serviceProperties.getCache().getNegative() );
+        this.encodedResponses = createEncodedCache( serviceProperties.getCache() );
+        WeatherServiceProperties.Expiry expiryProperties = serviceProperties.getCache().getExpiry();
+        this.observationExpiry = expiryProperties.isObservationAligned()
+                ? new ObservationExpiry( TimeUnit.MINUTES.toMillis( expiryProperties.getUpdateIntervalMinutes() ),
+                        TimeUnit.MINUTES.toMillis( expiryProperties.getRefreshIntervalMinutes() ),
+                        TimeUnit.SECONDS.toMillis( expiryProperties.getPublishDelaySeconds() ),
+                        TimeUnit.SECONDS.toMillis( expiryProperties.getMinTtlSeconds() ),
+                        TimeUnit.MINUTES.toMillis( expiryProperties.getMaxTtlMinutes() ) )
+                : null;
+        this.weatherWriter = objectMapper.writerFor( Weather.class );
+        this.requestCoalescer = new RequestCoalescer<Weather>( serviceProperties.getCoalescing().getWaitTimeoutMs(),
+                serviceProperties.getCoalescing().isShareFailures() );
+
+        WeatherServiceProperties.RefreshAhead refreshProperties = serviceProperties.getRefreshAhead();
+        this.refreshAhead = refreshProperties.isEnabled();
+        this.softTtlMillis = TimeUnit.MINUTES.toMillis( refreshProperties.getSoftTtlMinutes() );
+        if (this.refreshAhead) {
+            this.weatherAPICache.setStaleGraceMinutes( refreshProperties.getStaleGraceMinutes() );
+            this.refreshExecutor = new ThreadPoolExecutor( refreshProperties.getThreads(), refreshProperties.getThreads(),
+                    0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>( refreshProperties.getQueueCapacity() ),
+                    new CustomizableThreadFactory( "weather-refresh-" ) );
+        } else {
+            this.refreshExecutor = null;
+        }
+
+        WeatherServiceProperties.Upstream upstreamProperties = serviceProperties.getUpstream();
+        this.upstreamExecutor = new ThreadPoolExecutor( upstreamProperties.getThreads(), upstreamProperties.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>( upstreamProperties.getQueueCapacity() ),
+                new CustomizableThreadFactory( "weather-upstream-" ) );
+
+        WeatherServiceProperties.Limiter limiterProperties = serviceProperties.getLimiter();
+        this.upstreamLimiter = limiterProperties.isEnabled()
+                ? new ConcurrencyLimiter( limiterProperties.getInitialLimit(), limiterProperties.getMinLimit(),
+                        limiterProperties.getMaxLimit(), limiterProperties.getBackoffRatio(),
+                        limiterProperties.getRttTolerance() )
+                : null;
+        WeatherServiceProperties.CircuitBreaker circuitBreakerProperties = serviceProperties.getCircuitBreaker();
+        this.circuitBreaker = circuitBreakerProperties.isEnabled()
+                ? new CircuitBreaker( circuitBreakerProperties.getFailureThreshold(), circuitBreakerProperties.getOpenMs() )
+                : null;
+
+        WeatherServiceProperties.Quota quotaProperties = serviceProperties.getQuota();
+        this.quotaScheduler = quotaProperties.isEnabled()
+                ? new QuotaScheduler( quotaProperties.getCallsPerMinute(), quotaProperties.getBurst(),
+                        quotaProperties.getBackgroundReserve() )
+                : null;
+        this.quotaMaxWaitMillis = quotaProperties.getMaxWaitMs();
+
+        WeatherServiceProperties.AccessLog accessLogProperties = serviceProperties.getAccessLog();
+        this.accessLog = accessLogProperties.isEnabled()
+                ? new AccessLog( accessLogProperties.getCapacity(), accessLogProperties.getHitSampleRate(),
+                        accessLogProperties.getSampleRate(), accessLogProperties.getFlushIntervalMs() )
+                : null;
+
+        this.windHistory = openWindHistory( serviceProperties.getHistory() );
+
+        this.batchMaxSize = serviceProperties.getBatch().getMaxSize();
+        this.batchMaxConcurrency = serviceProperties.getBatch().getMaxConcurrency();
+
+        WeatherServiceProperties.Snapshot snapshotProperties = serviceProperties.getCache().getSnapshot();
+        if (snapshotProperties.isEnabled()) {
+            this.snapshotStore = new CacheSnapshotStore<Weather>( weatherAPICache,
+                    Paths.get( snapshotProperties.getPath() ), new WeatherSnapshotCodec() );
+            loadSnapshot();
+            this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new CustomizableThreadFactory( "weather-snapshot-" ) );
+            this.snapshotExecutor.scheduleWithFixedDelay( this::writeSnapshot, snapshotProperties.getIntervalSeconds(),
+                    snapshotProperties.getIntervalSeconds(), TimeUnit.SECONDS );
+        } else {
+            this.snapshotStore = null;
+            this.snapshotExecutor = null;
+        }
+    }
+
+    private static GeoCellIndex loadGeoCellIndex(WeatherServiceProperties.Geo geoProperties) {
+        if (!geoProperties.isEnabled()) {
+            return null;
+        }
+
+        try {
+            GeoCellIndex index = GeoCellIndex.load( Paths.get( geoProperties.getCentroidsFile() ),
+                    geoProperties.getCellSizeDegrees() );
+            logger.info( "Caching wind per {} degree cell for {} zip codes", index.getCellSizeDegrees(), index.size() );
+            return index;
+        } catch (IOException | RuntimeException e) {
+            logger.warn( "Could not load zip code centroids {}, caching per zip code: {}",
+                    geoProperties.getCentroidsFile(), e.getMessage() );
+            return null;
+        }
+    }
+
+    private static WindHistoryStore openWindHistory(WeatherServiceProperties.History historyProperties) {
+        if (!historyProperties.isEnabled()) {
+            return null;
+        }
+        if (historyProperties.getSegmentSizeMb() < 1 || historyProperties.getSegmentSizeMb() > 2047) {
+            logger.warn( "Wind history segment size of {} MB is not between 1 and 2047 MB, not keeping history",
+                    historyProperties.getSegmentSizeMb() );
+            return null;
+        }
+
+        try {
+            return new WindHistoryStore( Paths.get( historyProperties.getPath() ),
+                    TimeUnit.MINUTES.toMillis( historyProperties.getSegmentMinutes() ),
+                    historyProperties.getSegmentSizeMb() << 20,
+                    TimeUnit.HOURS.toMillis( historyProperties.getRetentionHours() ) );
+        } catch (IOException | RuntimeException e) {
+            logger.warn( "Could not open the wind history in {}, not keeping history: {}",
+                    historyProperties.getPath(), e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * The key the wind of a zip code is cached and fetched under: its grid cell when it is
+     * indexed, the zip code itself otherwise.
+     */
+    private String cacheKey(String zipCode) {
+        String cellKey = geoCellIndex == null ? null : geoCellIndex.cellKey( zipCode );
+        return cellKey == null ? zipCode : cellKey;
+    }
+
+    /**
+     * The live cached entry for a zip code, or null.
+     */
+    public CacheEntry<Weather> getCachedEntry(String zipCode) {
+        return weatherAPICache.getEntry( cacheKey( zipCode ) );
+    }
+
+    /**
+     * Warm the cache from the last snapshot, before the first request is served.
+     */
+    private void loadSnapshot() {
+        try {
+            snapshotStore.load();
+        } catch (IOException | RuntimeException e) {
+            logger.warn( "Could not load cache snapshot {}: {}", snapshotStore.getPath(), e.getMessage() );
+        }
+    }
+
+    private void writeSnapshot() {
+        try {
+            snapshotStore.write();
+        } catch (IOException | RuntimeException e) {
+            logger.warn( "Could not write cache snapshot {}: {}", snapshotStore.getPath(), e.getMessage() );
+        }
+    }
+
+    private Cache<Weather> createCache(WeatherServiceProperties.Cache cacheProperties) {
+        if (cacheProperties.getStore() == WeatherServiceProperties.Cache.StoreType.ZIP_CODE) {
+            return createZipCodeCache( cacheProperties );
+        }
+
+        if (cacheProperties.getMaximumWeight() > 0) {
+            return cacheManager.getCache( CacheManager.CACHE_NAME, cacheProperties.getMaximumWeight(),
+                    new Weigher<Weather>() {
+                        @Override
+                        public int weigh(String key, Weather value) {
+                            String name = value == null ? null : value.getName();
+                            return ENTRY_OVERHEAD_BYTES + 2 * (key.length() + (name == null ? 0 : name.length()));
+                        }
+                    } );
+        }
+
+        if (cacheProperties.getMaximumSize() > 0) {
+            return cacheManager.getCache( CacheManager.CACHE_NAME, cacheProperties.getMaximumSize() );
+        }
+
+        return cacheManager.getCache( CacheManager.CACHE_NAME );
+    }
+
+    private Cache<String> createNegativeCache(WeatherServiceProperties.Negative negativeProperties) {
+        if (!negativeProperties.isEnabled()) {
+            return null;
+        }
+
+        Cache<String> cache = negativeProperties.getMaximumSize() > 0
+                ? cacheManager.getCache( CacheManager.NEGATIVE_CACHE_NAME, negativeProperties.getMaximumSize() )
+                : cacheManager.getCache( CacheManager.NEGATIVE_CACHE_NAME );
+        cache.setDefaultMinutes( negativeProperties.getTtlMinutes() );
+        return cache;
+    }
+
+    private Cache<EncodedWeather> createEncodedCache(WeatherServiceProperties.Cache cacheProperties) {
+        if (!cacheProperties.isEncodedResponses()) {
+            return null;
+        }
+
+        // Bounded like the wind cache, an encoding is useless once its entry is gone
+        Cache<EncodedWeather> cache;
+        if (cacheProperties.getMaximumWeight() > 0) {
+            cache = cacheManager.getCache( CacheManager.ENCODED_CACHE_NAME, cacheProperties.getMaximumWeight(),
+                    new Weigher<EncodedWeather>() {
+                        @Override
+                        public int weigh(String key, EncodedWeather value) {
+                            return ENCODED_ENTRY_OVERHEAD_BYTES + 2 * key.length() + value.getJson().length;
+                        }
+                    } );
+        } else if (cacheProperties.getMaximumSize() > 0) {
+            cache = cacheManager.getCache( CacheManager.ENCODED_CACHE_NAME, cacheProperties.getMaximumSize() );
+        } else {
+            cache = cacheManager.getCache( CacheManager.ENCODED_CACHE_NAME );
+        }
+        cache.setDefaultMinutes( weatherAPICache.getDefaultMinutes() );
+        return cache;
+    }
+
+    private Cache<Weather> createZipCodeCache(WeatherServiceProperties.Cache cacheProperties) {
+        ZipCodeStore<Weather> store = new ZipCodeStore<Weather>( new WeatherZipCodeCodec(), US_ZIP_CODES );
+
+        // Every entry costs the same few table slots, names are shared
+        final int entryWeight = cacheProperties.getMaximumWeight() > 0 ? ZIP_CODE_ENTRY_BYTES : 1;
+        long maximumWeight = cacheProperties.getMaximumWeight() > 0
+                ? cacheProperties.getMaximumWeight() : cacheProperties.getMaximumSize();
+
+        return cacheManager.getCache( CacheManager.CACHE_NAME, store, maximumWeight, new Weigher<Weather>() {
+            @Override
+            public int weigh(String key, Weather value) {
+                return entryWeight;
+            }
+        } );
     }
 
     public Weather getWindByZipCode(String zipCode) throws WeatherServiceException {
-        logger.info( "Requesting current wind for {}", zipCode );
+        validateZipCode( zipCode );
+
+        long start = System.nanoTime();
+        try {
+            return lookup( zipCode, cacheKey( zipCode ), start );
+        } catch (RuntimeException e) {
+            metrics.recordError();
+            logAccess( zipCode, e instanceof ZipCodeNotFoundException ? AccessLog.Outcome.NOT_FOUND
+                    : AccessLog.Outcome.ERROR, start, 0 );
+            throw e;
+        } finally {
+            metrics.getRequestLatency().recordSince( start );
+        }
+    }
+
+    private Weather lookup(String zipCode, String key, long start) {
+        if (refreshAhead) {
+            return getWithRefreshAhead( zipCode, key, start );
+        }
+
+        Weather cached = weatherAPICache.get( key );
+        if (cached != null) {
+            metrics.recordHit();
+            logAccess( zipCode, AccessLog.Outcome.HIT, start, 0 );
+            return cached;
+        }
+
+        rejectUnknown( key );
+        metrics.recordMiss();
+        long loadStart = System.nanoTime();
+        Weather loaded = load( key, false, QuotaScheduler.Priority.USER );
+        logAccess( zipCode, AccessLog.Outcome.MISS, start, System.nanoTime() - loadStart );
+        return loaded;
+    }
+
+    private void logAccess(String zipCode, AccessLog.Outcome outcome, long start, long upstreamNanos) {
+        if (accessLog != null) {
+            accessLog.record( zipCode, outcome, start, upstreamNanos );
+        }
+    }
+
+    /**
+     * Fetch a zip code ahead of user requests unless it is cached. The upstream call runs at
+     * background priority, so it is skipped rather than eat into the quota left for users.
+     */
+    public Weather prefetch(String zipCode) throws WeatherServiceException {
+        validateZipCode( zipCode );
+
+        String key = cacheKey( zipCode );
+        Weather cached = weatherAPICache.get( key );
+        if (cached != null) {
+            return cached;
+        }
+        rejectUnknown( key );
+        return load( key, false, QuotaScheduler.Priority.BACKGROUND );
+    }
+
+    /**
+     * Non-blocking variant of {@link #getWindByZipCode(String)}. Cache hits complete inline on the
+     * calling thread, misses are fetched on the bounded upstream executor.
+     */
+    public CompletableFuture<Weather> getWindByZipCodeAsync(String zipCode) throws WeatherServiceException {
+        return getWindEntryByZipCodeAsync( zipCode ).thenApply( CacheEntry::getValue );
+    }
+
+    /**
+     * Like {@link #getWindByZipCodeAsync(String)}, with the insert time and time to live of the
+     * cache entry serving the wind, for HTTP validators. A stale entry served because the upstream
+     * call failed is already expired.
+     */
+    public CompletableFuture<CacheEntry<Weather>> getWindEntryByZipCodeAsync(String zipCode) throws WeatherServiceException {
+        validateZipCode( zipCode );
+
+        final String key = cacheKey( zipCode );
+        final long start = System.nanoTime();
+        CacheEntry<Weather> entry = refreshAhead
+                ? weatherAPICache.getStaleEntry( key ) : weatherAPICache.getEntry( key );
+
+        long now = System.currentTimeMillis();
+        if (entry != null && !entry.isExpired( now )) {
+            if (refreshAhead && now - entry.getInsertTime() >= softTtlMillis) {
+                refreshAsync( key );
+            }
+            metrics.recordHit();
+            metrics.getRequestLatency().recordSince( start );
+            logAccess( zipCode, AccessLog.Outcome.HIT, start, 0 );
+            return CompletableFuture.completedFuture( entry );
+        }
+
+        if (entry == null) {
+            try {
+                rejectUnknown( key );
+            } catch (ZipCodeNotFoundException e) {
+                logAccess( zipCode, AccessLog.Outcome.NOT_FOUND, start, 0 );
+                throw e;
+            }
+        }
+        metrics.recordMiss();
+        final long loadStart = System.nanoTime();
+        CompletableFuture<CacheEntry<Weather>> loaded = requestCoalescer.executeAsync( key,
+                loader( key, entry != null, QuotaScheduler.Priority.USER ), upstreamExecutor )
+                .thenApply( weather -> loadedEntry( key, weather ) );
+        // Past the hard TTL but within the grace window: fall back to the stale entry
+        final CacheEntry<Weather> stale = entry;
+        if (stale != null) {
+            loaded = loaded.exceptionally( e -> {
+                logger.warn( "Upstream call for {} failed, serving stale data: {}", key, e.getMessage() );
+                metrics.recordStale();
+                return stale;
+            } );
+        }
+
+        return loaded.whenComplete( (loadedEntry, failure) -> {
+            if (failure != null) {
+                metrics.recordError();
+            }
+            metrics.getRequestLatency().recordSince( start );
+            logAccess( zipCode, outcome( loadedEntry, stale, failure ), start, System.nanoTime() - loadStart );
+        } );
+    }
+
+    private static AccessLog.Outcome outcome(CacheEntry<Weather> loadedEntry, CacheEntry<Weather> stale, Throwable failure) {
+        if (failure == null) {
+            return loadedEntry == stale ? AccessLog.Outcome.STALE : AccessLog.Outcome.MISS;
+        }
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        return cause instanceof ZipCodeNotFoundException ? AccessLog.Outcome.NOT_FOUND : AccessLog.Outcome.ERROR;
+    }
+
+    /**
+     * Like {@link #getWindEntryByZipCodeAsync(String)}, with the wind encoded as JSON. When encoded
+     * responses are enabled the encoding is kept until the cache entry is replaced, so repeat
+     * hits serialize nothing.
+     */
+    public CompletableFuture<CacheEntry<EncodedWeather>> getEncodedWindByZipCodeAsync(String zipCode) throws WeatherServiceException {
+        return getWindEntryByZipCodeAsync( zipCode ).thenApply( entry -> encode( cacheKey( zipCode ), entry ) );
+    }
 
+    private CacheEntry<EncodedWeather> encode(String key, CacheEntry<Weather> entry) {
+        EncodedWeather encoded = encodedResponses == null ? null : encodedResponses.get( key );
+        if (encoded == null || encoded.getInsertTime() != entry.getInsertTime()) {
+            try {
+                encoded = new EncodedWeather( weatherWriter.writeValueAsBytes( entry.getValue() ), entry.getInsertTime() );
+            } catch (JsonProcessingException e) {
+                throw new WeatherServiceException( "Could not encode the wind for " + key + ": " + e.getMessage() );
+            }
+            // Wind that is not cached is not worth keeping the encoding of
+            if (encodedResponses != null && entry.getTtlMillis() > 0) {
+                encodedResponses.add( key, encoded );
+            }
+        }
+        return new CacheEntry<EncodedWeather>( encoded, entry.getInsertTime(), entry.getTtlMillis() );
+    }
+
+    /**
+     * Whether {@link #getEncodedWindByZipCodeAsync(String)} reuses the encoding of cache hits.
+     */
+    public boolean isEncodingResponses() {
+        return encodedResponses != null;
+    }
+
+    /**
+     * The cache entry written for the loaded wind, or a newer one of a concurrent refresh.
+     * Wind that is not cached, evicted already, must not be cached downstream either.
+     */
+    private CacheEntry<Weather> loadedEntry(String key, Weather weather) {
+        CacheEntry<Weather> entry = weatherAPICache.getEntry( key );
+        if (entry != null) {
+            return entry;
+        }
+        return new CacheEntry<Weather>( weather, System.currentTimeMillis(), 0 );
+    }
+
+    /**
+     * Trim and deduplicate the zip codes of a batch request, keeping their order.
+     */
+    public List<String> normalizeZipCodes(Collection<String> zipCodes) {
+        Set<String> normalized = new LinkedHashSet<String>();
+        if (zipCodes != null) {
+            for (String zipCode : zipCodes) {
+                if (zipCode != null && !zipCode.trim().isEmpty()) {
+                    normalized.add( zipCode.trim() );
+                }
+            }
+        }
+
+        if (normalized.size() > batchMaxSize) {
+            throw new InvalidRequestException( "At most " + batchMaxSize + " zip codes are allowed per request" );
+        }
+
+        return new ArrayList<String>( normalized );
+    }
+
+    /**
+     * Look up the wind for many zip codes with at most the configured number of lookups outstanding.
+     * Each result is passed to the consumer as soon as it is available, cache hits first, possibly
+     * from an upstream thread. The returned future completes once every zip code was answered.
+     */
+    public CompletableFuture<Void> getWindByZipCodes(List<String> zipCodes, Consumer<BatchWindResult> consumer) {
+        CompletableFuture<Void> done = new CompletableFuture<Void>();
+        if (zipCodes.isEmpty()) {
+            done.complete( null );
+            return done;
+        }
+
+        BatchLookup batch = new BatchLookup( zipCodes, consumer, done );
+        for (int lane = 0; lane < Math.min( batchMaxConcurrency, zipCodes.size() ); lane++) {
+            batch.run();
+        }
+        return done;
+    }
+
+    /**
+     * Walks the zip codes of a batch. Each call to run() is one lane that keeps looking up the next
+     * zip code, looping over results completed inline and resuming from the callback otherwise.
+     */
+    private class BatchLookup {
+        private final List<String> zipCodes;
+        private final Consumer<BatchWindResult> consumer;
+        private final CompletableFuture<Void> done;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+
+        BatchLookup(List<String> zipCodes, Consumer<BatchWindResult> consumer, CompletableFuture<Void> done) {
+            this.zipCodes = zipCodes;
+            this.consumer = consumer;
+            this.done = done;
+            this.remaining = new AtomicInteger( zipCodes.size() );
+        }
+
+        void run() {
+            int index;
+            while ((index = next.getAndIncrement()) < zipCodes.size()) {
+                final String zipCode = zipCodes.get( index );
+                CompletableFuture<Weather> result;
+                try {
+                    result = getWindByZipCodeAsync( zipCode );
+                } catch (RuntimeException e) {
+                    result = new CompletableFuture<Weather>();
+                    result.completeExceptionally( e );
+                }
+
+                if (!result.isDone()) {
+                    result.whenComplete( (weather, failure) -> {
+                        deliver( zipCode, weather, failure );
+                        run();
+                    } );
+                    return;
+                }
+                result.whenComplete( (weather, failure) -> deliver( zipCode, weather, failure ) );
+            }
+        }
+
+        private void deliver(String zipCode, Weather weather, Throwable failure) {
+            try {
+                if (failure == null) {
+                    consumer.accept( BatchWindResult.success( zipCode, weather ) );
+                } else {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure;
+                    consumer.accept( BatchWindResult.failure( zipCode, cause.getMessage() ) );
+                }
+            } catch (RuntimeException e) {
+                logger.warn( "Could not deliver batch result for {}: {}", zipCode, e.getMessage() );
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete( null );
+                }
+            }
+        }
+    }
+
+    private void validateZipCode(String zipCode) {
         if (!Pattern.matches( regex, zipCode )) {
             throw new InvalidZipCodeException( "Invalid Zip Code" );
         }
+    }
 
-        Cache weatherAPICache = cacheManager.getCache( CacheManager.CACHE_NAME );
+    /**
+     * Serve entries past the soft TTL immediately and refresh them in the background.
+     * Entries past the hard TTL are refetched, but served stale within the grace window
+     * when the upstream call fails.
+     */
+    private Weather getWithRefreshAhead(String zipCode, String key, long start) {
+        CacheEntry<Weather> entry = weatherAPICache.getStaleEntry( key );
+        if (entry == null) {
+            rejectUnknown( key );
+            metrics.recordMiss();
+            long loadStart = System.nanoTime();
+            Weather loaded = load( key, false, QuotaScheduler.Priority.USER );
+            logAccess( zipCode, AccessLog.Outcome.MISS, start, System.nanoTime() - loadStart );
+            return loaded;
+        }
 
-        if (weatherAPICache.isKeyInCache( zipCode )) {
-            logger.info( "Getting data from the Cache {}", weatherAPICache.isKeyInCache( zipCode ) );
-            return (Weather) weatherAPICache.get( zipCode );
+        long now = System.currentTimeMillis();
+        if (!entry.isExpired( now )) {
+            if (now - entry.getInsertTime() >= softTtlMillis) {
+                refreshAsync( key );
+            }
+            metrics.recordHit();
+            logAccess( zipCode, AccessLog.Outcome.HIT, start, 0 );
+            return entry.getValue();
         }
 
-        URI url = new UriTemplate( WEATHER_URL ).expand( zipCode, COUNTRY_CODE, this.apiKey);
-        return invoke( url, zipCode, Weather.class );
+        metrics.recordMiss();
+        long loadStart = System.nanoTime();
+        try {
+            Weather loaded = load( key, true, QuotaScheduler.Priority.USER );
+            logAccess( zipCode, AccessLog.Outcome.MISS, start, System.nanoTime() - loadStart );
+            return loaded;
+        } catch (RuntimeException e) {
+            logger.warn( "Upstream call for {} failed, serving stale data: {}", key, e.getMessage() );
+            metrics.recordStale();
+            logAccess( zipCode, AccessLog.Outcome.STALE, start, System.nanoTime() - loadStart );
+            return entry.getValue();
+        }
+    }
+
+    private void refreshAsync(final String key) {
+        // At most one background refresh per cache key
+        if (!refreshing.add( key )) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute( () -> {
+                try {
+                    load( key, true, QuotaScheduler.Priority.BACKGROUND );
+                } catch (RuntimeException e) {
+                    logger.warn( "Background refresh for {} failed: {}", key, e.getMessage() );
+                } finally {
+                    refreshing.remove( key );
+                }
+            } );
+        } catch (RejectedExecutionException e) {
+            refreshing.remove( key );
+            logger.debug( "Refresh queue full, skipping refresh for {}", key );
+        }
+    }
+
+    /**
+     * Fetch a zip code from upstream. Concurrent loads for the same zip code share a single
+     * upstream call, a non refresh load is answered from the cache when a concurrent one filled it.
+     */
+    private Weather load(String key, boolean refresh, QuotaScheduler.Priority priority) {
+        return requestCoalescer.execute( key, loader( key, refresh, priority ) );
+    }
+
+    private Supplier<Weather> loader(String key, boolean refresh, QuotaScheduler.Priority priority) {
+        return () -> {
+            if (!refresh) {
+                Weather cached = weatherAPICache.get( key );
+                if (cached != null) {
+                    return cached;
+                }
+                Weather shared = fetchFromPeer( key );
+                if (shared != null) {
+                    return shared;
+                }
+            }
+            URI url = GeoCellIndex.isCellKey( key )
+                    ? weatherByLocationUrl.expand( geoCellIndex.latitudeOf( key ),
+                            geoCellIndex.longitudeOf( key ), this.apiKey )
+                    : weatherUrl.expand( key, COUNTRY_CODE, this.apiKey );
+            return invoke( url, key, Weather.class, priority );
+        };
     }
 
 
-    private <T> T invoke(URI url, String zipCode, Class<T> responseType) {
+    private Weather invoke(URI url, String key, Class<Weather> responseType, QuotaScheduler.Priority priority) {
+        acquireQuota( priority );
+        try {
+            acquireUpstream();
+        } catch (UpstreamUnavailableException e) {
+            // No call is made, the quota is only spent on calls that reach OpenWeatherMap
+            if (quotaScheduler != null) {
+                quotaScheduler.release();
+            }
+            throw e;
+        }
+
         RequestEntity<?> request = RequestEntity.get( url )
                 .accept( MediaType.APPLICATION_JSON ).build();
-        ResponseEntity<T> exchange = this.restTemplate
-                .exchange( request, responseType );
+        ResponseEntity<Weather> exchange;
+        long start = System.nanoTime();
+        boolean responded = false;
+        try {
+            exchange = this.restTemplate.exchange( request, responseType );
+            responded = true;
+            if (exchange.getBody() == null) {
+                throw new WeatherServiceException( "No Response" );
+            }
+        } catch (HttpClientErrorException e) {
+            // OpenWeatherMap answered, the request was at fault
+            responded = true;
+            metrics.recordUpstreamError();
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                throw rememberUnknown( key );
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordUpstreamError();
+            throw e;
+        } finally {
+            long rttNanos = System.nanoTime() - start;
+            metrics.getUpstreamLatency().record( rttNanos );
+            releaseUpstream( rttNanos, responded );
+        }
 
-        Cache weatherAPICache = cacheManager.getCache( CacheManager.CACHE_NAME );
-        weatherAPICache.add( zipCode, exchange.getBody() );
+        cacheFetched( key, exchange.getBody() );
+        appendHistory( key, exchange.getBody() );
 
         return exchange.getBody();
     }
 
+    private void cacheFetched(String key, Weather weather) {
+        if (observationExpiry == null || weather.getObservationTime() <= 0) {
+            weatherAPICache.add( key, weather );
+            return;
+        }
+
+        long ttlMillis = observationExpiry.ttlMillisFromEpochSeconds( weather.getObservationTime(),
+                System.currentTimeMillis() );
+        weatherAPICache.add( key, weather, ttlMillis, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Append a fetched observation to the history, at its observation time when known.
+     */
+    private void appendHistory(String key, Weather weather) {
+        if (windHistory == null) {
+            return;
+        }
+
+        long time = weather.getObservationTime() > 0
+                ? TimeUnit.SECONDS.toMillis( weather.getObservationTime() ) : System.currentTimeMillis();
+        try {
+            windHistory.append( key, time, weather.getWindSpeed(), weather.getWindDirection() );
+        } catch (IOException | RuntimeException e) {
+            logger.warn( "Could not append the wind of {} to the history: {}", key, e.getMessage() );
+        }
+    }
+
+    /**
+     * The wind observed for a zip code between two times, both inclusive, oldest first. Zip codes
+     * of the same grid cell share their history, as they share their cached wind.
+     */
+    public List<WindObservation> getWindHistory(String zipCode, Instant from, Instant to) throws WeatherServiceException {
+        validateZipCode( zipCode );
+        if (windHistory == null) {
+            throw new InvalidRequestException( "Wind history is not enabled." );
+        }
+        if (from.isAfter( to )) {
+            throw new InvalidRequestException( "The start of the range must not be after its end." );
+        }
+
+        // Segments only roll on appends, drop the expired ones so they are not served
+        windHistory.removeExpired();
+        List<WindObservation> observations = new ArrayList<WindObservation>();
+        windHistory.range( cacheKey( zipCode ), from.toEpochMilli(), to.toEpochMilli(),
+                (time, windSpeed, windDirection) -> observations.add(
+                        new WindObservation( Instant.ofEpochMilli( time ), windSpeed, windDirection ) ) );
+        Collections.reverse( observations );
+        return observations;
+    }
+
+    /**
+     * Take a peer's cached entry for the zip code, keeping its original expiry.
+     */
+    private Weather fetchFromPeer(String key) {
+        PeerWindEntry entry = clusterSync == null ? null : clusterSync.fetchWind( key );
+        if (entry == null) {
+            return null;
+        }
+
+        Weather weather = entry.toWeather();
+        weatherAPICache.restore( key, weather, entry.getInsertTime(), entry.getTtlMillis() );
+        metrics.recordPeerHit();
+        return weather;
+    }
+
+    /**
+     * Answer zip codes OpenWeatherMap recently did not know without calling it again.
+     */
+    private void rejectUnknown(String zipCode) {
+        String message = unknownZipCodes == null ? null : unknownZipCodes.get( zipCode );
+        if (message != null) {
+            metrics.recordNotFound();
+            throw new ZipCodeNotFoundException( message );
+        }
+    }
+
+    private ZipCodeNotFoundException rememberUnknown(String zipCode) {
+        String message = "Zip Code " + zipCode + " not found";
+        if (unknownZipCodes != null) {
+            unknownZipCodes.add( zipCode, message );
+        }
+        return new ZipCodeNotFoundException( message );
+    }
+
+    /**
+     * Wait for the call's turn within the API key quota, or fail when it does not come in time.
+     */
+    private void acquireQuota(QuotaScheduler.Priority priority) {
+        if (quotaScheduler == null) {
+            return;
+        }
+
+        try {
+            if (!quotaScheduler.acquire( priority, quotaMaxWaitMillis )) {
+                throw new UpstreamUnavailableException( "Upstream call quota exhausted" );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException( "Interrupted waiting for the upstream call quota" );
+        }
+    }
+
+    /**
+     * Reject the call right away when the upstream is saturated or failing, rather than queue it.
+     */
+    private void acquireUpstream() {
+        if (upstreamLimiter != null && !upstreamLimiter.tryAcquire()) {
+            throw new UpstreamUnavailableException( "Too many upstream calls in flight" );
+        }
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            if (upstreamLimiter != null) {
+                upstreamLimiter.onIgnored();
+            }
+            throw new UpstreamUnavailableException( "Upstream is unavailable" );
+        }
+    }
+
+    private void releaseUpstream(long rttNanos, boolean responded) {
+        if (upstreamLimiter != null) {
+            if (responded) {
+                upstreamLimiter.onSuccess( rttNanos );
+            } else {
+                upstreamLimiter.onDropped();
+            }
+        }
+        if (circuitBreaker != null) {
+            if (responded) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure();
+            }
+        }
+    }
+
+    public WeatherServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Cache<Weather> getCache() {
+        return weatherAPICache;
+    }
+
+    /**
+     * The zip codes OpenWeatherMap does not know, null when negative caching is disabled.
+     */
+    public Cache<String> getNegativeCache() {
+        return unknownZipCodes;
+    }
+
+    /**
+     * The upstream concurrency limiter, null when disabled.
+     */
+    public ConcurrencyLimiter getUpstreamLimiter() {
+        return upstreamLimiter;
+    }
+
+    /**
+     * The upstream call quota, null when disabled.
+     */
+    public QuotaScheduler getQuotaScheduler() {
+        return quotaScheduler;
+    }
+
+    /**
+     * The upstream circuit breaker, null when disabled.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RequestCoalescer<Weather> getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * The wind history, null when disabled.
+     */
+    public WindHistoryStore getWindHistoryStore() {
+        return windHistory;
+    }
+
+    /**
+     * The request log, null when disabled.
+     */
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
     public void clearCache() throws WeatherServiceException {
-        cacheManager.getCache( CacheManager.CACHE_NAME ).removeAll();
+        weatherAPICache.removeAll();
+        if (unknownZipCodes != null) {
+            unknownZipCodes.removeAll();
+        }
+        if (encodedResponses != null) {
+            encodedResponses.removeAll();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        upstreamExecutor.shutdownNow();
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        if (snapshotExecutor != null) {
+            // Let a periodic write finish rather than race it
+            snapshotExecutor.shutdown();
+            try {
+                snapshotExecutor.awaitTermination( 10, TimeUnit.SECONDS );
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeSnapshot();
+        }
+        if (accessLog != null) {
+            accessLog.shutdown();
+        }
+        if (windHistory != null) {
+            windHistory.close();
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sivaji.weather.webservices.utils.LatencyRecorder;
+
+
+/**
+ * Request outcome counters and latencies of {@link WeatherService}. Counters are striped adders
+ * and latencies go to lock free histograms, so recording never contends on the request path.
+ */
+public class WeatherServiceMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder peerHits = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder upstreamErrors = new LongAdder();
+    private final LatencyRecorder requestLatency = new LatencyRecorder();
+    private final LatencyRecorder upstreamLatency = new LatencyRecorder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * A request answered with an entry past its TTL because the upstream call failed.
+     */
+    void recordStale() {
+        stale.increment();
+    }
+
+    /**
+     * A miss answered with the entry cached by another instance.
+     */
+    void recordPeerHit() {
+        peerHits.increment();
+    }
+
+    /**
+     * A request for a zip code OpenWeatherMap does not know, answered from the negative cache.
+     */
+    void recordNotFound() {
+        notFound.increment();
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordUpstreamError() {
+        upstreamErrors.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getStale() {
+        return stale.sum();
+    }
+
+    public long getPeerHits() {
+        return peerHits.sum();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getUpstreamErrors() {
+        return upstreamErrors.sum();
+    }
+
+    /**
+     * The share of requests answered from the cache without an upstream call.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount / (double) total;
+    }
+
+    /**
+     * Latency of wind lookups as seen by the caller, hits and misses alike.
+     */
+    public LatencyRecorder getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * Latency of calls to OpenWeatherMap, failed calls included.
+     */
+    public LatencyRecorder getUpstreamLatency() {
+        return upstreamLatency;
+    }
+}
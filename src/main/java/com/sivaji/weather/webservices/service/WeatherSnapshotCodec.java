@@ -0,0 +1,31 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.CacheSnapshotStore;
+
+
+/**
+ * Snapshot encoding of a cached {@link Weather}: the name followed by wind speed and direction.
+ */
+class WeatherSnapshotCodec implements CacheSnapshotStore.Codec<Weather> {
+
+    @Override
+    public void write(DataOutput out, Weather value) throws IOException {
+        CacheSnapshotStore.writeString( out, value.getName() );
+        out.writeDouble( value.getWindSpeed() );
+        out.writeDouble( value.getWindDirection() );
+    }
+
+    @Override
+    public Weather read(ByteBuffer in) {
+        Weather weather = new Weather();
+        weather.setName( CacheSnapshotStore.readString( in ) );
+        weather.setWindSpeed( in.getDouble() );
+        weather.setWindDirection( in.getDouble() );
+        return weather;
+    }
+}
@@ -0,0 +1,35 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.ZipCodeStore;
+
+
+/**
+ * Packs a cached {@link Weather} into the primitive fields of a {@link ZipCodeStore}.
+ */
+class WeatherZipCodeCodec implements ZipCodeStore.Codec<Weather> {
+
+    @Override
+    public String getName(Weather value) {
+        return value.getName();
+    }
+
+    @Override
+    public double getWindSpeed(Weather value) {
+        return value.getWindSpeed();
+    }
+
+    @Override
+    public double getWindDirection(Weather value) {
+        return value.getWindDirection();
+    }
+
+    @Override
+    public Weather create(String name, double windSpeed, double windDirection) {
+        Weather weather = new Weather();
+        weather.setName( name );
+        weather.setWindSpeed( windSpeed );
+        weather.setWindDirection( windDirection );
+        return weather;
+    }
+}
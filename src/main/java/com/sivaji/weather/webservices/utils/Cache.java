@@ -1,47 +1,93 @@
 package com.sivaji.weather.webservices.utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 
+import com.sivaji.weather.webservices.model.CacheEventListener;
 
 public class Cache<T> {
 
-    private static final Logger logger = LoggerFactory.getLogger(Cache.class.getName());
-
     /**
      * The default number of minutes to store an item in cache.
      */
     public static final int DEFAULT_MINUTES = 15;
 
     /**
-     * The map of keys and values to store in cache.
+     * The keys and immutable entries (value, insert time and time to live).
      */
-    protected final Map<String, T> valueMap = new HashMap<String, T>();
+    protected final CacheStore<T> store;
 
-    /**
-     * The map of keys and insert time.
+    private final String name;
+    private volatile int defaultMinutes = DEFAULT_MINUTES;
+    private volatile long staleGraceMillis;
+    private final LongAdder expiredCount = new LongAdder();
+
+    /* Eviction policy and weigher, only set for bounded caches */
+    private final TinyLfuPolicy policy;
+    private final Weigher<? super T> weigher;
+
+    /*
+     * Bounded caches change the store and the policy for a key under its stripe lock, so the
+     * policy tracks exactly the keys in the store. Evictions take the victim's lock after the
+     * policy released its own.
      */
-    protected final Map<String, Long> insertTimeMap = new HashMap<String, Long>();
+    private static final int LOCK_STRIPES = 64;
+    private final Object[] locks;
 
-    /**
-     * The map of keys and the number of minutes to cache for.
-     */
-    protected final Map<String, Integer> cacheMinutesMap = new HashMap<String, Integer>();
+    /* Removes entries past their grace window, null when they are only dropped on read */
+    private final ExpiryScheduler expiryScheduler;
 
-    private final String name;
-    private Timer scavengeTimer;
-    private int defaultMinutes = DEFAULT_MINUTES;
-    private boolean isScavengeRunning;
+    /* Told about explicit removals, not expiry or eviction */
+    private volatile CacheEventListener eventListener;
 
 
     protected Cache(String name) {
+        this(name, null);
+    }
+
+    protected Cache(String name, ExpiryScheduler expiryScheduler) {
+        this(name, new MapCacheStore<T>(), expiryScheduler);
+    }
+
+    protected Cache(String name, CacheStore<T> store, ExpiryScheduler expiryScheduler) {
+        this.name = name;
+        this.store = store;
+        this.policy = null;
+        this.weigher = null;
+        this.locks = null;
+        this.expiryScheduler = expiryScheduler;
+    }
+
+    /**
+     * Create a bounded cache holding at most maximumWeight, as measured by the weigher.
+     */
+    protected Cache(String name, long maximumWeight, Weigher<? super T> weigher) {
+        this(name, maximumWeight, weigher, null);
+    }
+
+    protected Cache(String name, long maximumWeight, Weigher<? super T> weigher, ExpiryScheduler expiryScheduler) {
+        this(name, new MapCacheStore<T>(), maximumWeight, weigher, expiryScheduler);
+    }
+
+    protected Cache(String name, CacheStore<T> store, long maximumWeight, Weigher<? super T> weigher,
+                    ExpiryScheduler expiryScheduler) {
         this.name = name;
+        this.store = store;
+        this.expiryScheduler = expiryScheduler;
+        this.policy = new TinyLfuPolicy(maximumWeight);
+        this.weigher = weigher;
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private Object lockFor(String key) {
+        int hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
     }
 
 
@@ -50,88 +96,237 @@ public class Cache<T> {
     }
 
 
-    public synchronized void add(String key, T value) {
-        valueMap.put(key, value);
-        insertTimeMap.put(key, System.currentTimeMillis());
+    public void add(String key, T value) {
+        add(key, value, getDefaultMinutes());
+    }
 
-        // Scavenge cache to remove expired items if necessary
-        if (doScavenge()) {
-            scavengeCache();
+
+    public void add(String key, T value, int expireMinutes) {
+        add(key, value, expireMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Add an entry expiring after its own time to live rather than the cache default.
+     */
+    public void add(String key, T value, long ttl, TimeUnit unit) {
+        CacheEntry<T> entry = new CacheEntry<T>(value, System.currentTimeMillis(), unit.toMillis(ttl));
+        if (policy == null) {
+            store.put(key, entry);
+        } else {
+            List<String> evicted;
+            synchronized (lockFor(key)) {
+                store.put(key, entry);
+                evicted = policy.onWrite(key, weigher.weigh(key, value));
+            }
+            removeEvicted(evicted);
         }
+        scheduleExpiry(key, entry.getExpireTime());
     }
 
+    /**
+     * Add an entry with its original insert time, as read back from a snapshot. Entries past
+     * their grace window are skipped and an entry added since is never replaced.
+     * Returns whether the entry was added.
+     */
+    public boolean restore(String key, T value, long insertTime, long ttlMillis) {
+        CacheEntry<T> entry = new CacheEntry<T>(value, insertTime, ttlMillis);
+
+        if (isBeyondGrace(entry, System.currentTimeMillis())) {
+            return false;
+        }
 
-    public synchronized void add(String key, T value, int expireMinutes) {
-        add(key, value);
-        cacheMinutesMap.put(key, expireMinutes);
+        if (policy == null) {
+            if (store.putIfAbsent(key, entry) != null) {
+                return false;
+            }
+        } else {
+            List<String> evicted;
+            synchronized (lockFor(key)) {
+                if (store.putIfAbsent(key, entry) != null) {
+                    return false;
+                }
+                evicted = policy.onWrite(key, weigher.weigh(key, value));
+            }
+            removeEvicted(evicted);
+        }
+        scheduleExpiry(key, entry.getExpireTime());
+        return true;
+    }
+
+    /**
+     * Remove the entries of keys the policy evicted, unless they were added again since.
+     */
+    private void removeEvicted(List<String> evicted) {
+        for (String key : evicted) {
+            synchronized (lockFor(key)) {
+                if (!policy.contains(key)) {
+                    store.remove(key);
+                }
+            }
+        }
+    }
+
+    private void scheduleExpiry(String key, long expireTime) {
+        if (expiryScheduler != null) {
+            expiryScheduler.schedule(this, key, expireTime, expireTime + staleGraceMillis);
+        }
     }
 
 
     public T get(String key) {
-        if (!isKeyInCache(key)) {
+        CacheEntry<T> entry = getEntry(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * Get the live entry for a key, or null when it is missing or expired.
+     */
+    public CacheEntry<T> getEntry(String key) {
+        CacheEntry<T> entry = getStaleEntry(key);
+
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
             return null;
         }
 
-        return valueMap.get(key);
+        return entry;
     }
 
+    /**
+     * Get the entry for a key even when it has expired, as long as it is still within the
+     * stale grace window. Callers check {@link CacheEntry#isExpired(long)} to tell them apart.
+     */
+    public CacheEntry<T> getStaleEntry(String key) {
+        CacheEntry<T> entry = store.get(key);
 
-    protected boolean isExpired(String key) {
-        Long timeEntered = insertTimeMap.get(key);
+        if (entry == null) {
+            return null;
+        }
 
-        if (timeEntered == null) {
-            return true;
+        if (isBeyondGrace(entry, System.currentTimeMillis())) {
+            removeExpired(key, entry);
+            return null;
         }
 
-        Integer cacheMinutes = cacheMinutesMap.get(key);
-        if (cacheMinutes == null) {
-            cacheMinutes = getDefaultMinutes();
+        if (policy != null) {
+            policy.onAccess(key);
         }
 
-        return System.currentTimeMillis() > timeEntered + (cacheMinutes * 60 * 1000);
+        return entry;
     }
 
 
-    public synchronized void remove(String key) {
+    protected boolean isExpired(String key) {
+        CacheEntry<T> entry = store.get(key);
+        return entry == null || entry.isExpired(System.currentTimeMillis());
+    }
+
+
+    public void remove(String key) {
         remove(key, true);
     }
 
-    protected synchronized void remove(String key, boolean fireEvents) {
-        valueMap.remove(key);
-        insertTimeMap.remove(key);
-        cacheMinutesMap.remove(key);
+    protected void remove(String key, boolean fireEvents) {
+        if (policy == null) {
+            store.remove(key);
+        } else {
+            synchronized (lockFor(key)) {
+                store.remove(key);
+                policy.onRemove(key);
+            }
+        }
+
+        CacheEventListener listener = eventListener;
+        if (fireEvents && listener != null) {
+            listener.onRemove(name, key);
+        }
     }
 
 
-    public synchronized void removeAll() {
+    public void removeAll() {
         removeAll(true);
     }
 
 
-    protected synchronized void removeAll(boolean fireEvents) {
-        valueMap.clear();
-        insertTimeMap.clear();
-        cacheMinutesMap.clear();
+    protected void removeAll(boolean fireEvents) {
+        if (policy == null) {
+            store.clear();
+        } else {
+            clearLocked(0);
+        }
+
+        CacheEventListener listener = eventListener;
+        if (fireEvents && listener != null) {
+            listener.onRemoveAll(name);
+        }
     }
 
-    public int removeExpired() {
-        int count = 0;
+    /**
+     * Clear the store and the policy while holding every stripe lock, taken in order.
+     */
+    private void clearLocked(int stripe) {
+        if (stripe == LOCK_STRIPES) {
+            store.clear();
+            policy.clear();
+            return;
+        }
+        synchronized (locks[stripe]) {
+            clearLocked(stripe + 1);
+        }
+    }
 
-        List<String> toBeRemoved = new ArrayList<String>();
+    public void setEventListener(CacheEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
 
-        for (String key : valueMap.keySet()) {
-            if (isExpired(key)) {
-                toBeRemoved.add(key);
+    public int removeExpired() {
+        final int[] count = new int[1];
+        final long now = System.currentTimeMillis();
+
+        // Weakly consistent iteration, conditional removal keeps concurrent re-adds
+        store.forEach((key, entry) -> {
+            if (isBeyondGrace(entry, now) && removeExpired(key, entry)) {
+                count[0]++;
             }
+        });
+
+        return count[0];
+    }
+
+    /**
+     * Remove the entry for a key if it still expires at expireTime and is past its grace window.
+     * Returns 0 when it was removed, the time to try again when it is still within its grace
+     * window, or -1 when the entry is gone or was replaced.
+     */
+    long expire(String key, long expireTime) {
+        CacheEntry<T> entry = store.get(key);
+
+        if (entry == null || entry.getExpireTime() != expireTime) {
+            return -1;
         }
 
-        // Run removal in separate loop to avoid concurrent modification exception
-        for (String key : toBeRemoved) {
-            remove(key, false);
-            count++;
+        if (!isBeyondGrace(entry, System.currentTimeMillis())) {
+            return expireTime + staleGraceMillis + 1;
         }
 
-        return count;
+        return removeExpired(key, entry) ? 0 : -1;
+    }
+
+    private boolean removeExpired(String key, CacheEntry<T> entry) {
+        // Only drop the entry we looked at, a concurrent add may have replaced it
+        if (policy == null) {
+            if (!store.remove(key, entry)) {
+                return false;
+            }
+        } else {
+            synchronized (lockFor(key)) {
+                if (!store.remove(key, entry)) {
+                    return false;
+                }
+                policy.onRemove(key);
+            }
+        }
+        expiredCount.increment();
+        return true;
     }
 
     public int getDefaultMinutes() {
@@ -142,62 +337,65 @@ public class Cache<T> {
         this.defaultMinutes = defaultMinutes;
     }
 
-    public String[] getKeys() {
-        return valueMap.keySet().toArray(new String[0]);
+    /**
+     * Keep expired entries for this many minutes so they can still be served stale.
+     */
+    public void setStaleGraceMinutes(int staleGraceMinutes) {
+        this.staleGraceMillis = staleGraceMinutes * 60L * 1000L;
     }
 
+    public int getStaleGraceMinutes() {
+        return (int) (staleGraceMillis / (60L * 1000L));
+    }
 
-    public boolean isKeyInCache(String key) {
-        if (isExpired(key)) {
-            remove(key, false);
-        }
-
-        return valueMap.containsKey(key);
+    private boolean isBeyondGrace(CacheEntry<T> entry, long now) {
+        return now > entry.getExpireTime() + staleGraceMillis;
     }
 
     /**
-     * Check if this cache should scavenge expired items.
+     * Visit every entry, including stale ones. Weakly consistent with concurrent writes.
      */
-    private boolean doScavenge() {
-        //Random number is even test
-		/*Random generator = new Random();
-		 return (generator.nextInt(100) + 1) % 2 == 0;*/
+    public void forEachEntry(BiConsumer<String, CacheEntry<T>> action) {
+        store.forEach(action);
+    }
 
-        // Memory free test
-        Runtime rt = Runtime.getRuntime();
-        long allocated = rt.totalMemory();
-        long free = rt.freeMemory();
-        float percentFree = (float) free / allocated;
+    public String[] getKeys() {
+        final List<String> keys = new ArrayList<String>(store.size());
+        store.forEach((key, entry) -> keys.add(key));
+        return keys.toArray(new String[0]);
+    }
+
+    public int size() {
+        return store.size();
+    }
 
-        return percentFree < .10;
+    public boolean isBounded() {
+        return policy != null;
     }
 
     /**
-     * Run separate thread to remove expired items from cache.
+     * The maximum total weight of a bounded cache, 0 for an unbounded one.
      */
-    private synchronized void scavengeCache() {
-        if (isScavengeRunning) {
-            return;
-        }
-
-        logger.trace("Running scavenge for cache: {}", getName());
+    public long getMaximumWeight() {
+        return policy == null ? 0 : policy.getMaximum();
+    }
 
-        scavengeTimer = new Timer("TIMER-" + this.toString());
-        scavengeTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                int count = removeExpired();
-                isScavengeRunning = false;
+    /**
+     * The number of entries evicted to keep a bounded cache within its maximum.
+     */
+    public long getEvictionCount() {
+        return policy == null ? 0 : policy.getEvictionCount();
+    }
 
-                if (count > 0) {
-                    logger.debug("Scavenged {} items from cache: {}", count, getName());
-                }
 
-                scavengeTimer.cancel();
-            }
-        }, 5 * 1000);
+    /**
+     * The number of entries removed because they expired, past their grace window.
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
 
-        isScavengeRunning = true;
+    public boolean isKeyInCache(String key) {
+        return getEntry(key) != null;
     }
 }
-
@@ -0,0 +1,38 @@
+package com.sivaji.weather.webservices.utils;
+
+/**
+ * Immutable holder for a cached value together with its insert time and time to live.
+ * A new entry is created for every write so readers never observe a half-updated item.
+ */
+public final class CacheEntry<T> {
+
+    private final T value;
+    private final long insertTime;
+    private final long ttlMillis;
+
+    public CacheEntry(T value, long insertTime, long ttlMillis) {
+        this.value = value;
+        this.insertTime = insertTime;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public long getInsertTime() {
+        return insertTime;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public long getExpireTime() {
+        return insertTime + ttlMillis;
+    }
+
+    public boolean isExpired(long now) {
+        return now > getExpireTime();
+    }
+}
@@ -1,11 +1,15 @@
 package com.sivaji.weather.webservices.utils;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.sivaji.weather.webservices.model.CacheEventListener;
+import com.sivaji.weather.webservices.model.CacheInvalidation;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,18 +20,25 @@ public final class CacheManager implements CacheEventListener {
     private static final Logger logger = LoggerFactory.getLogger(CacheManager.class.getName());
 
     public static final String CACHE_NAME = "WEATHER_WIND_API_CACHE";
+    public static final String NEGATIVE_CACHE_NAME = "WEATHER_UNKNOWN_ZIP_CODE_CACHE";
+    public static final String ENCODED_CACHE_NAME = "WEATHER_ENCODED_RESPONSE_CACHE";
     private static final String CACHE_PARAM_REMOVE_SEPARATOR = ":";
 
     /* Singleton instance */
     private final static CacheManager instance = new CacheManager();
 
     /* The cache container */
-    private Map<String, Cache> cacheMap = new HashMap<String, Cache>();
+    private final ConcurrentMap<String, Cache> cacheMap = new ConcurrentHashMap<String, Cache>();
+
+    /* Removes expired entries of every cache from one thread */
+    private final ExpiryScheduler expiryScheduler = new ExpiryScheduler();
 
     /* Cache sync variables */
     private final Set<String> removeQueue = new HashSet<String>();
     private final Set<String> removeAllQueue = new HashSet<String>();
     private final Object CACHE_SYNC_LOCK = new Object();
+    /* Removals are only queued while something drains them */
+    private volatile boolean syncEnabled;
 
 
     private CacheManager() {}
@@ -36,35 +47,163 @@ public final class CacheManager implements CacheEventListener {
         return instance;
     }
 
-    private synchronized void add(String name, Cache cache) {
+    private Cache add(String name, Cache cache) {
         if (StringUtils.isBlank(name)) {
             throw new IllegalArgumentException("Cache name must not be blank.");
         }
-        cacheMap.put(name, cache);
+        Cache existing = cacheMap.putIfAbsent(name, cache);
+        if (existing != null) {
+            return existing;
+        }
+        cache.setEventListener(this);
+        return cache;
     }
 
 
-    public synchronized void removeCache(String name) {
+    public void removeCache(String name) {
         if (StringUtils.isBlank(name)) {
             return;
         }
         cacheMap.remove(name);
     }
 
+    public ExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
     /**
-     * Get a cache with the specified name.
+     * Get a cache with the specified name, holding its values in a map. An existing cache is
+     * returned whatever its bound.
+     *
+     * @throws IllegalStateException when the cache already exists with another type of store
      */
     public <T> Cache<T> getCache(String name) {
         if (StringUtils.isBlank(name)) {
             throw new IllegalArgumentException("The cache name must not be blank.");
         }
 
-        if (cacheMap.get(name) == null) {
-            Cache<T> cache = new Cache<T>(name);
-            add(name, cache);
+        Cache<T> cache = cacheMap.get(name);
+        if (cache == null) {
+            cache = add(name, new Cache<T>(name, expiryScheduler));
+        }
+        if (!(cache.store instanceof MapCacheStore)) {
+            throw new IllegalStateException("Cache " + name + " already exists with a "
+                    + cache.store.getClass().getSimpleName() + ".");
         }
 
-        return cacheMap.get(name);
+        return cache;
+    }
+
+    /**
+     * Get a bounded cache with the specified name holding at most maximumSize entries.
+     */
+    public <T> Cache<T> getCache(String name, long maximumSize) {
+        return getCache(name, maximumSize, new Weigher<T>() {
+            @Override
+            public int weigh(String key, T value) {
+                return 1;
+            }
+        });
+    }
+
+    /**
+     * Get a bounded cache with the specified name whose entries weigh at most maximumWeight
+     * in total, evicting with a W-TinyLFU policy.
+     *
+     * @throws IllegalStateException when the cache already exists with another type of store or bound
+     */
+    public <T> Cache<T> getCache(String name, long maximumWeight, Weigher<? super T> weigher) {
+        return getCache(name, new MapCacheStore<T>(), maximumWeight, weigher);
+    }
+
+    private static void checkBound(Cache<?> cache, long maximumWeight) {
+        if (cache.getMaximumWeight() != maximumWeight) {
+            throw new IllegalStateException("Cache " + cache.getName() + " already exists with maximum weight "
+                    + cache.getMaximumWeight() + ", not " + maximumWeight + ".");
+        }
+    }
+
+    /**
+     * Get a cache with the specified name keeping its entries in the given store, bounded like
+     * {@link #getCache(String, long, Weigher)} when maximumWeight is positive. An existing cache
+     * with a store of the same type is returned as is, the given store is then not used.
+     *
+     * @throws IllegalStateException when the cache already exists with another type of store or bound
+     */
+    public <T> Cache<T> getCache(String name, CacheStore<T> store, long maximumWeight, Weigher<? super T> weigher) {
+        if (StringUtils.isBlank(name)) {
+            throw new IllegalArgumentException("The cache name must not be blank.");
+        }
+
+        Cache<T> cache = cacheMap.get(name);
+        if (cache == null) {
+            cache = add(name, maximumWeight > 0
+                    ? new Cache<T>(name, store, maximumWeight, weigher, expiryScheduler)
+                    : new Cache<T>(name, store, expiryScheduler));
+        }
+        if (cache.store.getClass() != store.getClass()) {
+            throw new IllegalStateException("Cache " + name + " already exists with a "
+                    + cache.store.getClass().getSimpleName() + ", not a " + store.getClass().getSimpleName() + ".");
+        }
+        checkBound(cache, Math.max(0, maximumWeight));
+
+        return cache;
+    }
+
+    /**
+     * Start or stop queueing removals for {@link #drainInvalidations()}.
+     */
+    public void setSyncEnabled(boolean syncEnabled) {
+        this.syncEnabled = syncEnabled;
+        if (!syncEnabled) {
+            synchronized (CACHE_SYNC_LOCK) {
+                removeQueue.clear();
+                removeAllQueue.clear();
+            }
+        }
+    }
+
+    /**
+     * Take the removals queued since the last call. Keys removed from a cache that was also
+     * cleared are left out.
+     */
+    public CacheInvalidation drainInvalidations() {
+        CacheInvalidation invalidation = new CacheInvalidation();
+        synchronized (CACHE_SYNC_LOCK) {
+            invalidation.getRemoveAll().addAll(removeAllQueue);
+            for (String queued : removeQueue) {
+                int separator = queued.indexOf(CACHE_PARAM_REMOVE_SEPARATOR);
+                String cacheName = queued.substring(0, separator);
+                if (!removeAllQueue.contains(cacheName)) {
+                    invalidation.getRemove().computeIfAbsent(cacheName, name -> new ArrayList<String>())
+                            .add(queued.substring(separator + 1));
+                }
+            }
+            removeQueue.clear();
+            removeAllQueue.clear();
+        }
+        return invalidation;
+    }
+
+    /**
+     * Apply removals received from another instance, without queueing them again.
+     */
+    public void apply(CacheInvalidation invalidation) {
+        for (String cacheName : invalidation.getRemoveAll()) {
+            Cache cache = cacheMap.get(cacheName);
+            if (cache != null) {
+                cache.removeAll(false);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> removed : invalidation.getRemove().entrySet()) {
+            Cache cache = cacheMap.get(removed.getKey());
+            if (cache != null) {
+                for (String key : removed.getValue()) {
+                    cache.remove(key, false);
+                }
+            }
+        }
     }
 
     /**
@@ -72,6 +211,9 @@ public final class CacheManager implements CacheEventListener {
      */
     @Override
     public void onRemove(String cacheName, String key) {
+        if (!syncEnabled) {
+            return;
+        }
         synchronized (CACHE_SYNC_LOCK) {
             removeQueue.add(cacheName + CACHE_PARAM_REMOVE_SEPARATOR + key);
         }
@@ -82,6 +224,9 @@ public final class CacheManager implements CacheEventListener {
      */
     @Override
     public void onRemoveAll(String cacheName) {
+        if (!syncEnabled) {
+            return;
+        }
         synchronized (CACHE_SYNC_LOCK) {
             removeAllQueue.add(cacheName);
         }
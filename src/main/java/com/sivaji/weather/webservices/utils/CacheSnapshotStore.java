@@ -0,0 +1,193 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Writes the entries of a cache to a snapshot file and reads them back, so a restarted
+ * instance starts with a warm cache.
+ * <p>
+ * The file holds a header followed by self-delimiting records: key, insert time, time to live
+ * and the value as encoded by the codec. Entries keep their original insert time, so restored
+ * entries expire when they would have without the restart. Snapshots are written to a temporary
+ * file and moved into place, and loaded through a memory mapping of the file.
+ */
+public class CacheSnapshotStore<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheSnapshotStore.class.getName());
+
+    private static final int MAGIC = 0x57534e50;
+    private static final int VERSION = 1;
+
+    private final Cache<T> cache;
+    private final Path path;
+    private final Codec<T> codec;
+
+    public CacheSnapshotStore(Cache<T> cache, Path path, Codec<T> codec) {
+        this.cache = cache;
+        this.path = path;
+        this.codec = codec;
+    }
+
+    /**
+     * Write every entry of the cache, returns the number of entries written.
+     */
+    public int write() throws IOException {
+        long start = System.nanoTime();
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+        final AtomicInteger count = new AtomicInteger();
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                final long now = System.currentTimeMillis();
+                cache.forEachEntry((key, entry) -> {
+                    if (entry.getExpireTime() + TimeUnit.MINUTES.toMillis(cache.getStaleGraceMinutes()) < now) {
+                        return;
+                    }
+                    try {
+                        writeString(out, key);
+                        out.writeLong(entry.getInsertTime());
+                        out.writeLong(entry.getTtlMillis());
+                        codec.write(out, entry.getValue());
+                        count.incrementAndGet();
+                    } catch (IOException e) {
+                        throw new SnapshotException(e);
+                    }
+                });
+            } catch (SnapshotException e) {
+                throw (IOException) e.getCause();
+            }
+            move(temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        logger.info("Wrote {} entries of cache {} to {} in {} ms", count.get(), cache.getName(), path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count.get();
+    }
+
+    private void move(Path temp) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Add the entries of the snapshot that are still live (or within the stale grace window) to
+     * the cache, returns the number of entries restored. A missing file restores nothing, a
+     * truncated one restores the records before the damage.
+     */
+    public int load() throws IOException {
+        if (!Files.isRegularFile(path)) {
+            logger.info("No cache snapshot at {}", path);
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        int restored = 0;
+        int skipped = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                logger.warn("Ignoring cache snapshot {} with an unknown format", path);
+                return 0;
+            }
+
+            while (in.hasRemaining()) {
+                int position = in.position();
+                try {
+                    String key = readString(in);
+                    long insertTime = in.getLong();
+                    long ttlMillis = in.getLong();
+                    T value = codec.read(in);
+                    if (cache.restore(key, value, insertTime, ttlMillis)) {
+                        restored++;
+                    } else {
+                        skipped++;
+                    }
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    logger.warn("Cache snapshot {} is truncated at byte {}, ignoring the rest", path, position);
+                    break;
+                }
+            }
+        }
+
+        logger.info("Restored {} entries of cache {} from {} in {} ms, skipped {} expired or newer",
+                restored, cache.getName(), path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), skipped);
+        return restored;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Write a nullable string as its UTF-8 length and bytes.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes cached values in a snapshot.
+     */
+    public interface Codec<T> {
+
+        void write(DataOutput out, T value) throws IOException;
+
+        T read(ByteBuffer in);
+    }
+
+    /* Carries an IOException out of the entry visitor */
+    private static class SnapshotException extends RuntimeException {
+        SnapshotException(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.function.BiConsumer;
+
+
+/**
+ * Holds the entries of a {@link Cache}. Implementations are thread safe, conditional removal
+ * only removes the entry when it still is the given one (same write), so concurrent adds are kept.
+ */
+public interface CacheStore<T> {
+
+    CacheEntry<T> get(String key);
+
+    void put(String key, CacheEntry<T> entry);
+
+    /**
+     * Store the entry unless the key is present, returns the present entry or null.
+     */
+    CacheEntry<T> putIfAbsent(String key, CacheEntry<T> entry);
+
+    void remove(String key);
+
+    /**
+     * Remove the key only while it still maps to the given entry, returns whether it was removed.
+     */
+    boolean remove(String key, CacheEntry<T> entry);
+
+    void clear();
+
+    int size();
+
+    /**
+     * Visit every entry, weakly consistent with concurrent writes.
+     */
+    void forEach(BiConsumer<String, CacheEntry<T>> action);
+}
@@ -0,0 +1,76 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Stops calling a failing dependency. After a number of consecutive failures the circuit opens
+ * and calls are rejected without being made; once the open period elapsed a single trial call
+ * is let through, its outcome closes the circuit or opens it for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile State state = State.CLOSED;
+    /* When the circuit opened, or when the last trial call was let through */
+    private final AtomicLong openedAt = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("The failure threshold must be positive.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Whether a call may be made now. Every allowed call must report its outcome.
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        // Open, or half open with a trial call that did not report back in time
+        long opened = openedAt.get();
+        long now = System.nanoTime();
+        if (now - opened >= openNanos && openedAt.compareAndSet(opened, now)) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+
+        rejected.increment();
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        state = State.CLOSED;
+    }
+
+    public void recordFailure() {
+        if (state == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(System.nanoTime());
+            state = State.OPEN;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,120 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Limits the number of calls in flight to a value adapted from the observed round trip times,
+ * additive increase and multiplicative decrease (AIMD). The limit grows by one per call completed
+ * near the no-load round trip time while it is being used, and shrinks by the backoff ratio on
+ * each call that failed or took longer than the tolerated multiple of that round trip time.
+ * <p>
+ * Calls over the limit are rejected immediately instead of queueing.
+ */
+public class ConcurrencyLimiter {
+
+    /* The no-load round trip time is re-estimated over windows of this many calls */
+    private static final int RTT_WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+
+    /* Guarded by this */
+    private long minRttNanos = Long.MAX_VALUE;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double rttTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("The limits must satisfy 1 <= min <= max.");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("The backoff ratio must be between 0 and 1.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    }
+
+    /**
+     * Take a slot for a call, false when the limit is reached. A successful acquire must be
+     * followed by exactly one of onSuccess, onDropped or onIgnored.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The call completed, in the given round trip time.
+     */
+    public void onSuccess(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        update(rttNanos, false, current);
+    }
+
+    /**
+     * The call failed or timed out, the upstream is overloaded.
+     */
+    public void onDropped() {
+        int current = inFlight.getAndDecrement();
+        update(0, true, current);
+    }
+
+    /**
+     * The call was not made, release its slot without adjusting the limit.
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void update(long rttNanos, boolean dropped, int inFlightAtRelease) {
+        if (!dropped) {
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+            windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+            // Let the baseline follow an upstream that became slower for good
+            if (++windowSamples >= RTT_WINDOW) {
+                minRttNanos = windowMinRttNanos;
+                windowMinRttNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+
+        double current = limit;
+        if (dropped || rttNanos > minRttNanos * rttTolerance) {
+            limit = Math.max(minLimit, current * backoffRatio);
+        } else if (inFlightAtRelease * 2 >= (int) current) {
+            // Only grow a limit that is actually used
+            limit = Math.min(maxLimit, current + 1);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,214 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Removes cache entries when their time to live (plus stale grace) has passed, for all caches,
+ * from a single daemon thread.
+ * <p>
+ * Deadlines are kept in a hashed timing wheel: each slot covers one tick and holds the entries
+ * due in that tick, deadlines past one turn of the wheel carry a remaining round count. Scheduling
+ * is a lock-free enqueue and each tick only visits its own slot, so expiry costs O(1) per entry
+ * without scanning the caches. Entries removed or replaced before their deadline are skipped when
+ * the slot fires, the cache re-checks the current entry before removing it.
+ */
+public final class ExpiryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiryScheduler.class.getName());
+
+    /**
+     * The default tick, entries are removed at most this late.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+
+    /**
+     * The default number of slots, one turn covers a little over an hour at one second ticks.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 4096;
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+
+    /* Deadlines scheduled by any thread, moved onto the wheel by the worker */
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+
+    /* The next tick to process, only touched by the thread advancing the wheel */
+    private long tick;
+
+    private final boolean autoStart;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final LongAdder expiredCount = new LongAdder();
+
+    public ExpiryScheduler() {
+        this(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, true);
+    }
+
+    /**
+     * @param autoStart whether to start the worker thread on the first schedule, tests advance
+     *                  the wheel themselves with {@link #advance(long)}
+     */
+    ExpiryScheduler(long tickMillis, int wheelSize, boolean autoStart) {
+        if (tickMillis <= 0 || wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size a power of two.");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.autoStart = autoStart;
+    }
+
+    /**
+     * Remove the entry of the cache expiring at expireTime once removeAt, a wall clock time,
+     * has passed.
+     */
+    void schedule(Cache<?> cache, String key, long expireTime, long removeAt) {
+        long delayMillis = Math.max(0, removeAt - System.currentTimeMillis());
+        long deadline = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        pending.add(new Timeout(cache, key, expireTime, deadline));
+
+        if (autoStart && !started.get() && started.compareAndSet(false, true)) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runWorker();
+                }
+            }, "cache-expiry");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long sleepNanos = tick * tickNanos - elapsedNanos();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            try {
+                int count = advance(elapsedNanos());
+                if (count > 0) {
+                    logger.trace("Expired {} cache entries", count);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Cache expiry failed", e);
+            }
+        }
+    }
+
+    /**
+     * Process every tick up to the given time since start, returns the number of entries removed.
+     * Must only be called from one thread at a time.
+     */
+    int advance(long elapsedNanos) {
+        int count = 0;
+        long lastTick = elapsedNanos / tickNanos;
+        while (tick <= lastTick) {
+            transferPending();
+            count += expireSlot((int) (tick & mask));
+            tick++;
+        }
+        return count;
+    }
+
+    long getTickNanos() {
+        return tickNanos;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            // Never fire early, overdue deadlines go to the current slot
+            long dueTick = Math.max((timeout.deadline + tickNanos - 1) / tickNanos, tick);
+            timeout.rounds = (dueTick - tick) / wheel.length;
+            int slot = (int) (dueTick & mask);
+            timeout.next = wheel[slot];
+            wheel[slot] = timeout;
+        }
+    }
+
+    private int expireSlot(int slot) {
+        int count = 0;
+        Timeout previous = null;
+        Timeout timeout = wheel[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                previous = timeout;
+            } else {
+                if (previous == null) {
+                    wheel[slot] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                count += expire(timeout);
+            }
+            timeout = next;
+        }
+        return count;
+    }
+
+    private int expire(Timeout timeout) {
+        long retryAt = timeout.cache.expire(timeout.key, timeout.expireTime);
+        if (retryAt > 0) {
+            // The grace window grew since the entry was scheduled
+            schedule(timeout.cache, timeout.key, timeout.expireTime, retryAt);
+            return 0;
+        }
+        if (retryAt == 0) {
+            expiredCount.increment();
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * The number of deadlines waiting to be moved onto the wheel.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * The number of entries removed by this scheduler.
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * A deadline for one entry. Holds the key and expire time rather than the entry so replaced
+     * or evicted values are not retained until their deadline.
+     */
+    private static final class Timeout {
+        private final Cache<?> cache;
+        private final String key;
+        private final long expireTime;
+        private final long deadline;
+        private long rounds;
+        private Timeout next;
+
+        Timeout(Cache<?> cache, String key, long expireTime, long deadline) {
+            this.cache = cache;
+            this.key = key;
+            this.expireTime = expireTime;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-min sketch estimating how often a key was used recently (TinyLFU).
+ * Counters saturate at 15 and are halved periodically so old popularity fades.
+ * Updates are lock-free, only the periodic reset is guarded.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0x2f0d5ef1, 0x6ab4c5d3, 0x3c6ef372};
+
+    private final AtomicIntegerArray table;
+    private final int mask;
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+    private final ReentrantLock resetLock = new ReentrantLock();
+
+    FrequencySketch(long maximumSize) {
+        // Four counters per expected key keep collisions rare enough for small caches
+        int width = Integer.highestOneBit((int) Math.min(Math.max(4 * maximumSize, 64), 1 << 24) - 1) << 1;
+        this.table = new AtomicIntegerArray(width * DEPTH);
+        this.mask = width - 1;
+        this.sampleSize = 10L * width;
+    }
+
+    /**
+     * Record one use of the key.
+     */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            int count;
+            while ((count = table.get(index)) < MAX_COUNT) {
+                if (table.compareAndSet(index, count, count + 1)) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+
+        if (added && additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Estimated number of recent uses of the key.
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, table.get(indexOf(hash, row)));
+        }
+
+        return frequency;
+    }
+
+    void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+        additions.set(0);
+    }
+
+    private void reset() {
+        if (!resetLock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (additions.get() < sampleSize) {
+                return;
+            }
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, table.get(i) >>> 1);
+            }
+            additions.set(additions.get() >>> 1);
+        } finally {
+            resetLock.unlock();
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * Maps zip codes to cells of a latitude/longitude grid through their centroids, so neighboring
+ * zip codes can share one cached reading. Centroids are held in packed primitive arrays sorted
+ * by zip code, about 12 bytes per zip code, and looked up by binary search.
+ * <p>
+ * Cells are identified by keys like {@code cell:374:-1221}, the row and column of the grid.
+ */
+public class GeoCellIndex {
+
+    private static final String CELL_PREFIX = "cell:";
+
+    private final int[] zipCodes;
+    private final float[] latitudes;
+    private final float[] longitudes;
+    private final double cellSizeDegrees;
+
+    GeoCellIndex(int[] zipCodes, float[] latitudes, float[] longitudes, double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0) {
+            throw new IllegalArgumentException("The cell size must be positive.");
+        }
+        this.zipCodes = zipCodes;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cellSizeDegrees = cellSizeDegrees;
+    }
+
+    /**
+     * Read centroids from a CSV file of zip code, latitude and longitude lines. A header line,
+     * blank lines and lines starting with # are skipped.
+     */
+    public static GeoCellIndex load(Path path, double cellSizeDegrees) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return load(reader, cellSizeDegrees);
+        }
+    }
+
+    public static GeoCellIndex load(BufferedReader reader, double cellSizeDegrees) throws IOException {
+        int[] zipCodes = new int[1024];
+        float[] latitudes = new float[1024];
+        float[] longitudes = new float[1024];
+        int size = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.trim().split("\\s*,\\s*");
+            if (fields.length < 3 || fields[0].startsWith("#")) {
+                continue;
+            }
+            int zipCode = ZipCodeStore.encode(fields[0]);
+            if (zipCode < 0 || fields[0].length() != 5) {
+                // The header, or not a 5 digit zip code
+                continue;
+            }
+
+            if (size == zipCodes.length) {
+                zipCodes = Arrays.copyOf(zipCodes, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            zipCodes[size] = zipCode;
+            latitudes[size] = Float.parseFloat(fields[1]);
+            longitudes[size] = Float.parseFloat(fields[2]);
+            size++;
+        }
+
+        return sorted(zipCodes, latitudes, longitudes, size, cellSizeDegrees);
+    }
+
+    private static GeoCellIndex sorted(int[] zipCodes, float[] latitudes, float[] longitudes, int size,
+                                       double cellSizeDegrees) {
+        // Sort the positions by zip code, packing code and position into one long
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) zipCodes[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] sortedZipCodes = new int[size];
+        float[] sortedLatitudes = new float[size];
+        float[] sortedLongitudes = new float[size];
+        int count = 0;
+        for (long packed : order) {
+            int zipCode = (int) (packed >>> 32);
+            int position = (int) packed;
+            // The last line wins for duplicates
+            if (count > 0 && sortedZipCodes[count - 1] == zipCode) {
+                count--;
+            }
+            sortedZipCodes[count] = zipCode;
+            sortedLatitudes[count] = latitudes[position];
+            sortedLongitudes[count] = longitudes[position];
+            count++;
+        }
+
+        return new GeoCellIndex(Arrays.copyOf(sortedZipCodes, count), Arrays.copyOf(sortedLatitudes, count),
+                Arrays.copyOf(sortedLongitudes, count), cellSizeDegrees);
+    }
+
+    /**
+     * The key of the cell holding the zip code's centroid, or null when the zip code is not
+     * indexed. ZIP+4 codes map to the cell of their 5 digit zip code.
+     */
+    public String cellKey(String zipCode) {
+        int code = zipCode.length() >= 5 ? ZipCodeStore.encode(zipCode.substring(0, 5)) : -1;
+        int position = code < 0 ? -1 : Arrays.binarySearch(zipCodes, code);
+        if (position < 0) {
+            return null;
+        }
+
+        long row = (long) Math.floor(latitudes[position] / cellSizeDegrees);
+        long column = (long) Math.floor(longitudes[position] / cellSizeDegrees);
+        return CELL_PREFIX + row + ':' + column;
+    }
+
+    public static boolean isCellKey(String key) {
+        return key.startsWith(CELL_PREFIX);
+    }
+
+    public double latitudeOf(String cellKey) {
+        return center(cellKey, true);
+    }
+
+    public double longitudeOf(String cellKey) {
+        return center(cellKey, false);
+    }
+
+    private double center(String cellKey, boolean latitude) {
+        int separator = cellKey.indexOf(':', CELL_PREFIX.length());
+        String index = latitude
+                ? cellKey.substring(CELL_PREFIX.length(), separator) : cellKey.substring(separator + 1);
+        return (Long.parseLong(index) + 0.5) * cellSizeDegrees;
+    }
+
+    public int size() {
+        return zipCodes.length;
+    }
+
+    public double getCellSizeDegrees() {
+        return cellSizeDegrees;
+    }
+}
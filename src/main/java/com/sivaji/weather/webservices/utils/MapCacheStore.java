@@ -0,0 +1,56 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+
+/**
+ * The default store: a concurrent map of keys and immutable entries. Reads are lock-free,
+ * writes are serialized per bin by the map.
+ */
+final class MapCacheStore<T> implements CacheStore<T> {
+
+    private final ConcurrentMap<String, CacheEntry<T>> entryMap = new ConcurrentHashMap<String, CacheEntry<T>>();
+
+    @Override
+    public CacheEntry<T> get(String key) {
+        return entryMap.get(key);
+    }
+
+    @Override
+    public void put(String key, CacheEntry<T> entry) {
+        entryMap.put(key, entry);
+    }
+
+    @Override
+    public CacheEntry<T> putIfAbsent(String key, CacheEntry<T> entry) {
+        return entryMap.putIfAbsent(key, entry);
+    }
+
+    @Override
+    public void remove(String key) {
+        entryMap.remove(key);
+    }
+
+    @Override
+    public boolean remove(String key, CacheEntry<T> entry) {
+        // Entries do not override equals, this compares identity
+        return entryMap.remove(key, entry);
+    }
+
+    @Override
+    public void clear() {
+        entryMap.clear();
+    }
+
+    @Override
+    public int size() {
+        return entryMap.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, CacheEntry<T>> action) {
+        entryMap.forEach(action);
+    }
+}
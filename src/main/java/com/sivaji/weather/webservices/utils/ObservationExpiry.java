@@ -0,0 +1,68 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Computes how long upstream data stays fresh from its observation time, for a provider that
+ * makes a new observation every update interval and publishes it some delay later.
+ * <p>
+ * Data is refetched once per refresh period, as a fixed time to live of that length would, but
+ * just after the first observation of the next period is published rather than at a random
+ * point between observations: the same upstream calls serve fresher data. Once that observation
+ * is overdue the provider has not published it yet, so the data is refetched after the minimum
+ * time to live and then after as long again as it has been overdue: retries back off
+ * exponentially from the first one while the observation time does not advance.
+ */
+public class ObservationExpiry {
+
+    private final long updateIntervalMillis;
+    private final long refreshIntervalMillis;
+    private final long publishDelayMillis;
+    private final long minTtlMillis;
+    private final long maxTtlMillis;
+
+    public ObservationExpiry(long updateIntervalMillis, long refreshIntervalMillis, long publishDelayMillis,
+                             long minTtlMillis, long maxTtlMillis) {
+        if (updateIntervalMillis <= 0 || refreshIntervalMillis <= 0 || publishDelayMillis < 0 || minTtlMillis <= 0
+                || maxTtlMillis < minTtlMillis) {
+            throw new IllegalArgumentException("The update and refresh intervals and the minimum time to live must be "
+                    + "positive, the publish delay not negative and the maximum time to live at least the minimum.");
+        }
+        this.updateIntervalMillis = updateIntervalMillis;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.publishDelayMillis = publishDelayMillis;
+        this.minTtlMillis = minTtlMillis;
+        this.maxTtlMillis = maxTtlMillis;
+    }
+
+    /**
+     * The time to live of data observed at observationMillis and fetched now.
+     */
+    public long ttlMillis(long observationMillis, long now) {
+        long due = nextObservation(observationMillis) + publishDelayMillis;
+        long ttl = now < due ? due - now : minTtlMillis + now - due;
+        return Math.min(Math.max(ttl, minTtlMillis), maxTtlMillis);
+    }
+
+    /**
+     * The first observation after this one that falls in a later refresh period.
+     */
+    long nextObservation(long observationMillis) {
+        long periodEnd = (Math.floorDiv(observationMillis, refreshIntervalMillis) + 1) * refreshIntervalMillis;
+        long updates = Math.max(1, -Math.floorDiv(observationMillis - periodEnd, updateIntervalMillis));
+        return observationMillis + updates * updateIntervalMillis;
+    }
+
+    /**
+     * The time to live of data observed at observationSeconds since the epoch, as OpenWeatherMap
+     * reports it, and fetched now.
+     */
+    public long ttlMillisFromEpochSeconds(long observationSeconds, long now) {
+        return ttlMillis(TimeUnit.SECONDS.toMillis(observationSeconds), now);
+    }
+
+    public long getUpdateIntervalMillis() {
+        return updateIntervalMillis;
+    }
+}
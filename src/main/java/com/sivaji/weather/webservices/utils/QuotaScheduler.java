@@ -0,0 +1,129 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Spends a calls-per-minute budget as a token bucket. User calls take a token or queue for the
+ * next one up to a deadline; background calls only run while more than the reserved share of the
+ * bucket is left and never wait, so bursts of refreshes cannot starve user traffic.
+ * <p>
+ * Over any minute at most callsPerMinute + burst calls are let through.
+ */
+public class QuotaScheduler {
+
+    public enum Priority {
+        USER, BACKGROUND
+    }
+
+    private final int callsPerMinute;
+    private final double capacity;
+    private final double backgroundReserve;
+    private final double tokensPerNano;
+
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /* Guarded by this, negative while user calls are queued for future tokens */
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * @param backgroundReserve share of the bucket background calls leave to user calls, 0 to 1
+     */
+    public QuotaScheduler(int callsPerMinute, int burst, double backgroundReserve) {
+        if (callsPerMinute <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The budget and burst must be positive.");
+        }
+        this.callsPerMinute = callsPerMinute;
+        this.capacity = burst;
+        this.backgroundReserve = Math.min(1, Math.max(0, backgroundReserve)) * burst;
+        this.tokensPerNano = callsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = burst;
+    }
+
+    /**
+     * Take a token for one call, waiting at most maxWaitMillis for user calls. False when the
+     * budget does not allow the call in time, the caller should not make it.
+     */
+    public boolean acquire(Priority priority, long maxWaitMillis) throws InterruptedException {
+        long waitNanos = reserve(priority, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos < 0) {
+            rejected.increment();
+            return false;
+        }
+
+        if (waitNanos > 0) {
+            waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private synchronized long reserve(Priority priority, long maxWaitNanos) {
+        refill();
+        if (priority == Priority.BACKGROUND) {
+            if (tokens >= 1 + backgroundReserve) {
+                tokens -= 1;
+                return 0;
+            }
+            return -1;
+        }
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+
+        // Queue behind the calls already waiting for a token
+        long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    /**
+     * Give back the token of a call that was acquired but not made.
+     */
+    public synchronized void release() {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+    public int getCallsPerMinute() {
+        return callsPerMinute;
+    }
+
+    /**
+     * The number of calls that can be made right now without waiting.
+     */
+    public synchronized int getRemaining() {
+        refill();
+        return (int) Math.max(0, tokens);
+    }
+
+    /**
+     * The number of user calls waiting for a token.
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,252 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.sivaji.weather.webservices.exception.WeatherServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Coalesces concurrent loads of the same key into a single in-flight call (single flight).
+ * The first caller for a key runs the loader, callers arriving while it runs wait for and
+ * share its result.
+ */
+public class RequestCoalescer<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class.getName());
+
+    /* Times out async waiters, shared by all coalescers */
+    private static final ScheduledThreadPoolExecutor waitTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "weather-coalescer-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        waitTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<String, CompletableFuture<V>>();
+    private final long waitTimeoutMillis;
+    private final boolean shareFailures;
+
+    /* Statistics */
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param waitTimeoutMillis how long a waiter blocks for the in-flight call before giving up
+     * @param shareFailures     whether waiters receive the leader's failure, or retry the load themselves
+     */
+    public RequestCoalescer(long waitTimeoutMillis, boolean shareFailures) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.shareFailures = shareFailures;
+    }
+
+    /**
+     * Load the value for a key, joining the in-flight load when there is one.
+     */
+    public V execute(String key, Supplier<V> loader) {
+        long start = System.nanoTime();
+        try {
+            return execute(key, loader, shareFailures);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            requestCount.increment();
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        }
+    }
+
+    private V execute(String key, Supplier<V> loader, boolean shareFailure) {
+        CompletableFuture<V> call = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing == null) {
+            return load(key, loader, call);
+        }
+
+        coalescedCount.increment();
+        try {
+            return existing.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCount.increment();
+            throw new WeatherServiceException("Timed out waiting for the upstream response");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherServiceException("Interrupted waiting for the upstream response");
+        } catch (ExecutionException e) {
+            if (!shareFailure) {
+                logger.debug("In-flight load for {} failed, retrying", key);
+                return execute(key, loader, true);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new WeatherServiceException(e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Load the value for a key on the executor without blocking the caller. Callers arriving
+     * while the load runs share its future, so no thread waits on an in-flight call, and their
+     * future fails once the wait timeout passes.
+     */
+    public CompletableFuture<V> executeAsync(String key, Supplier<V> loader, Executor executor) {
+        final long start = System.nanoTime();
+        CompletableFuture<V> result = executeAsync(key, loader, executor, shareFailures);
+        result.whenComplete((value, failure) -> {
+            long elapsed = System.nanoTime() - start;
+            requestCount.increment();
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        });
+        return result;
+    }
+
+    private CompletableFuture<V> executeAsync(String key, Supplier<V> loader, Executor executor, boolean shareFailure) {
+        final CompletableFuture<V> call = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing == null) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        load(key, loader, call);
+                    } catch (RuntimeException e) {
+                        // Delivered to the callers through the future
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, call);
+                call.completeExceptionally(new WeatherServiceException("Too many pending upstream requests"));
+            }
+            return call;
+        }
+
+        coalescedCount.increment();
+        if (shareFailure) {
+            return withTimeout(existing);
+        }
+
+        // Retry once on failure, without wrapping the retry's own failure
+        final CompletableFuture<V> result = new CompletableFuture<V>();
+        existing.whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+                return;
+            }
+            logger.debug("In-flight load for {} failed, retrying", key);
+            executeAsync(key, loader, executor, true).whenComplete((retried, retryFailure) -> {
+                if (retryFailure == null) {
+                    result.complete(retried);
+                } else {
+                    result.completeExceptionally(unwrap(retryFailure));
+                }
+            });
+        });
+        return withTimeout(result);
+    }
+
+    /**
+     * A future completed like the given one, or failed when it takes longer than the wait timeout.
+     */
+    private CompletableFuture<V> withTimeout(CompletableFuture<V> call) {
+        final CompletableFuture<V> result = new CompletableFuture<V>();
+        final ScheduledFuture<?> timeout = waitTimer.schedule(() -> {
+            // Counted before the waiter sees the failure, taken back when the call won the race
+            timeoutCount.increment();
+            if (!result.completeExceptionally(new WeatherServiceException("Timed out waiting for the upstream response"))) {
+                timeoutCount.decrement();
+            }
+        }, waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        call.whenComplete((value, failure) -> {
+            timeout.cancel(false);
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(unwrap(failure));
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private V load(String key, Supplier<V> loader, CompletableFuture<V> call) {
+        loadCount.increment();
+        V value = null;
+        Throwable failure = null;
+        try {
+            value = loader.get();
+            return value;
+        } catch (Throwable e) {
+            // Errors too, or the dead call would stay registered and every later caller would join it
+            failure = e;
+            throw e;
+        } finally {
+            // Unregister before completing so woken waiters that retry start a new load
+            inFlight.remove(key, call);
+            if (failure == null) {
+                call.complete(value);
+            } else {
+                call.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * The number of loads actually executed, one per coalesced group of callers.
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * The number of callers that joined an in-flight load instead of starting their own.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public double getMeanLatencyMillis() {
+        long count = requestCount.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / 1000000d;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxNanos.get() / 1000000d;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,266 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU eviction policy for bounded caches.
+ *
+ * New keys enter a small LRU admission window. Keys leaving the window compete with the
+ * least recently used key of the main segmented LRU (probation + protected), and the
+ * one used less often according to the {@link FrequencySketch} is evicted. Keys hit again
+ * while on probation are promoted to the protected segment.
+ *
+ * Reads never block: the sketch is updated lock-free and reordering is skipped when the
+ * eviction lock is busy. Writes and removals are serialized by the eviction lock. Evicted keys
+ * are no longer tracked once a write returns them, the caller removes their entries.
+ */
+class TinyLfuPolicy {
+
+    private static final double WINDOW_PERCENT = 0.01;
+    private static final double PROTECTED_PERCENT = 0.80;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /* Segments in LRU order (eldest first), mapping keys to their weight */
+    private final LinkedHashMap<String, Integer> window = new LinkedHashMap<String, Integer>();
+    private final LinkedHashMap<String, Integer> probation = new LinkedHashMap<String, Integer>();
+    private final LinkedHashMap<String, Integer> protectedSegment = new LinkedHashMap<String, Integer>();
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+    private long evictionCount;
+
+    TinyLfuPolicy(long maximum) {
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("The cache maximum must be positive.");
+        }
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, (long) (maximum * WINDOW_PERCENT));
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_PERCENT);
+        this.sketch = new FrequencySketch(maximum);
+    }
+
+    long getMaximum() {
+        return maximum;
+    }
+
+    long getEvictionCount() {
+        evictionLock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the key is tracked, it is not once evicted.
+     */
+    boolean contains(String key) {
+        evictionLock.lock();
+        try {
+            return window.containsKey(key) || probation.containsKey(key) || protectedSegment.containsKey(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Record a cache hit.
+     */
+    void onAccess(String key) {
+        sketch.increment(key);
+
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            reorder(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Record an insert or update and evict until the cache is back within its maximum, returns
+     * the evicted keys.
+     */
+    List<String> onWrite(String key, int weight) {
+        sketch.increment(key);
+
+        evictionLock.lock();
+        try {
+            Integer previous;
+            if ((previous = window.get(key)) != null) {
+                windowWeight += weight - previous;
+                window.put(key, weight);
+                reorder(key);
+            } else if ((previous = probation.get(key)) != null) {
+                probationWeight += weight - previous;
+                probation.put(key, weight);
+                reorder(key);
+            } else if ((previous = protectedSegment.get(key)) != null) {
+                protectedWeight += weight - previous;
+                protectedSegment.put(key, weight);
+                reorder(key);
+            } else {
+                window.put(key, weight);
+                windowWeight += weight;
+            }
+
+            return evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    void onRemove(String key) {
+        evictionLock.lock();
+        try {
+            onRemoveLocked(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    void clear() {
+        evictionLock.lock();
+        try {
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowWeight = 0;
+            probationWeight = 0;
+            protectedWeight = 0;
+            sketch.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Move a key to the most recently used position, promoting it from probation.
+     * Must be called with the eviction lock held.
+     */
+    private void reorder(String key) {
+        Integer weight;
+        if ((weight = window.remove(key)) != null) {
+            window.put(key, weight);
+        } else if ((weight = protectedSegment.remove(key)) != null) {
+            protectedSegment.put(key, weight);
+        } else if ((weight = probation.remove(key)) != null) {
+            probationWeight -= weight;
+            protectedSegment.put(key, weight);
+            protectedWeight += weight;
+
+            // Demote the eldest protected keys back to probation when the segment overflows
+            while (protectedWeight > protectedMaximum && protectedSegment.size() > 1) {
+                Map.Entry<String, Integer> eldest = protectedSegment.entrySet().iterator().next();
+                protectedSegment.remove(eldest.getKey());
+                protectedWeight -= eldest.getValue();
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationWeight += eldest.getValue();
+            }
+        }
+    }
+
+    /**
+     * Must be called with the eviction lock held.
+     */
+    private List<String> evict() {
+        List<String> evicted = new ArrayList<String>(0);
+
+        // Keys leaving the admission window compete with the main segment's victim
+        while (windowWeight > windowMaximum && window.size() > 1) {
+            Map.Entry<String, Integer> candidate = window.entrySet().iterator().next();
+            window.remove(candidate.getKey());
+            windowWeight -= candidate.getValue();
+            admit(candidate.getKey(), candidate.getValue(), evicted);
+        }
+
+        // Oversized entries may still leave the cache above its maximum
+        while (totalWeight() > maximum) {
+            String victim = eldestOf(probation);
+            if (victim == null) {
+                victim = eldestOf(protectedSegment);
+            }
+            if (victim == null) {
+                victim = eldestOf(window);
+            }
+            if (victim == null) {
+                break;
+            }
+            onRemoveLocked(victim);
+            evicted(victim, evicted);
+        }
+        return evicted.isEmpty() ? Collections.<String>emptyList() : evicted;
+    }
+
+    private void admit(String candidate, int weight, List<String> evicted) {
+        long mainMaximum = maximum - windowMaximum;
+        int candidateFrequency = sketch.frequency(candidate);
+
+        while (probationWeight + protectedWeight + weight > mainMaximum) {
+            String victim = eldestOf(probation);
+            if (victim == null) {
+                victim = eldestOf(protectedSegment);
+            }
+            if (victim == null || sketch.frequency(victim) >= candidateFrequency) {
+                // The candidate is no more popular than what it would replace
+                evicted(candidate, evicted);
+                return;
+            }
+            onRemoveLocked(victim);
+            evicted(victim, evicted);
+        }
+
+        probation.put(candidate, weight);
+        probationWeight += weight;
+    }
+
+    private void onRemoveLocked(String key) {
+        Integer weight;
+        if ((weight = window.remove(key)) != null) {
+            windowWeight -= weight;
+        } else if ((weight = probation.remove(key)) != null) {
+            probationWeight -= weight;
+        } else if ((weight = protectedSegment.remove(key)) != null) {
+            protectedWeight -= weight;
+        }
+    }
+
+    private void evicted(String key, List<String> evicted) {
+        evictionCount++;
+        evicted.add(key);
+    }
+
+    private long totalWeight() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    private static String eldestOf(LinkedHashMap<String, Integer> segment) {
+        Iterator<String> keys = segment.keySet().iterator();
+        return keys.hasNext() ? keys.next() : null;
+    }
+}
@@ -4,7 +4,10 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -15,16 +18,101 @@ public class WeatherServiceProperties {
     @Valid
     private final Api api = new Api();
 
+    private final Cache cache = new Cache();
+
+    private final Coalescing coalescing = new Coalescing();
+
+    private final RefreshAhead refreshAhead = new RefreshAhead();
+
+    private final Upstream upstream = new Upstream();
+
+    private final Limiter limiter = new Limiter();
+
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private final Quota quota = new Quota();
+
+    private final Cluster cluster = new Cluster();
+
+    private final Geo geo = new Geo();
+
+    private final Batch batch = new Batch();
+
+    private final Warmup warmup = new Warmup();
+
+    private final AccessLog accessLog = new AccessLog();
+
+    @Valid
+    private final History history = new History();
+
     public Api getApi() {
         return this.api;
     }
 
+    public Cache getCache() {
+        return this.cache;
+    }
+
+    public Coalescing getCoalescing() {
+        return this.coalescing;
+    }
+
+    public RefreshAhead getRefreshAhead() {
+        return this.refreshAhead;
+    }
+
+    public Upstream getUpstream() {
+        return this.upstream;
+    }
+
+    public Limiter getLimiter() {
+        return this.limiter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    public Quota getQuota() {
+        return this.quota;
+    }
+
+    public Cluster getCluster() {
+        return this.cluster;
+    }
+
+    public Geo getGeo() {
+        return this.geo;
+    }
+
+    public Batch getBatch() {
+        return this.batch;
+    }
+
+    public Warmup getWarmup() {
+        return this.warmup;
+    }
+
+    public AccessLog getAccessLog() {
+        return this.accessLog;
+    }
+
+    public History getHistory() {
+        return this.history;
+    }
+
 
     public static class Api {
 
         @NotNull
         private String key;
 
+        /**
+         * Base URL of the OpenWeatherMap API, a stub server's for load tests.
+         */
+        @NotNull
+        private String url = "http://api.openweathermap.org/data/2.5";
+
         public String getKey() {
             return this.key;
         }
@@ -33,6 +121,1081 @@ public class WeatherServiceProperties {
             this.key = key;
         }
 
+        public String getUrl() {
+            return this.url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+    }
+
+    public static class Cache {
+
+        /**
+         * Maximum number of entries in the wind cache, 0 for unbounded.
+         */
+        private long maximumSize;
+
+        /**
+         * Maximum estimated heap usage of the wind cache in bytes, 0 for unbounded.
+         * Takes precedence over the maximum size.
+         */
+        private long maximumWeight;
+
+        /**
+         * How entries are held: MAP keeps the value objects, ZIP_CODE packs them into
+         * primitive tables keyed by the numeric zip code.
+         */
+        private StoreType store = StoreType.MAP;
+
+        /**
+         * Keep the JSON of cached wind responses with their ETag, so cache hits are written
+         * without serializing the wind again. The encodings are bounded like the wind cache,
+         * separately.
+         */
+        private boolean encodedResponses;
+
+        private final Snapshot snapshot = new Snapshot();
+
+        private final Negative negative = new Negative();
+
+        private final Expiry expiry = new Expiry();
+
+        public long getMaximumSize() {
+            return this.maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getMaximumWeight() {
+            return this.maximumWeight;
+        }
+
+        public void setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public StoreType getStore() {
+            return this.store;
+        }
+
+        public void setStore(StoreType store) {
+            this.store = store;
+        }
+
+        public boolean isEncodedResponses() {
+            return this.encodedResponses;
+        }
+
+        public void setEncodedResponses(boolean encodedResponses) {
+            this.encodedResponses = encodedResponses;
+        }
+
+        public Snapshot getSnapshot() {
+            return this.snapshot;
+        }
+
+        public Negative getNegative() {
+            return this.negative;
+        }
+
+        public Expiry getExpiry() {
+            return this.expiry;
+        }
+
+        public enum StoreType {
+            MAP, ZIP_CODE
+        }
+
+    }
+
+    public static class Snapshot {
+
+        /**
+         * Persist the wind cache to a snapshot file and load it at startup.
+         */
+        private boolean enabled;
+
+        /**
+         * Location of the snapshot file.
+         */
+        private String path = "weather-cache.snapshot";
+
+        /**
+         * How often the snapshot is written, in seconds. It is also written on shutdown.
+         */
+        private int intervalSeconds = 60;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return this.path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public int getIntervalSeconds() {
+            return this.intervalSeconds;
+        }
+
+        public void setIntervalSeconds(int intervalSeconds) {
+            this.intervalSeconds = intervalSeconds;
+        }
+
+    }
+
+    public static class Negative {
+
+        /**
+         * Remember zip codes OpenWeatherMap does not know, and answer repeat requests for them locally.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long an unknown zip code is remembered, in minutes.
+         */
+        private int ttlMinutes = 5;
+
+        /**
+         * Maximum number of unknown zip codes remembered.
+         */
+        private long maximumSize = 10000;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTtlMinutes() {
+            return this.ttlMinutes;
+        }
+
+        public void setTtlMinutes(int ttlMinutes) {
+            this.ttlMinutes = ttlMinutes;
+        }
+
+        public long getMaximumSize() {
+            return this.maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+    }
+
+    public static class Expiry {
+
+        /**
+         * Refetch wind once per refresh interval, just after OpenWeatherMap is due to publish the
+         * first observation of the interval, instead of a fixed time after the fetch. Refetches back
+         * off while the observation time does not advance.
+         */
+        private boolean observationAligned;
+
+        /**
+         * How often OpenWeatherMap publishes a new observation, in minutes.
+         */
+        private int updateIntervalMinutes = 10;
+
+        /**
+         * How often wind is refetched on average, in minutes. The default makes as many upstream
+         * calls as the default fixed time to live.
+         */
+        private int refreshIntervalMinutes = 15;
+
+        /**
+         * How long after its observation time OpenWeatherMap has published an observation, in
+         * seconds. Later publications are retried.
+         */
+        private int publishDelaySeconds = 300;
+
+        /**
+         * Shortest time wind is kept, also the first delay before refetching an overdue
+         * observation, doubled on every further retry, in seconds.
+         */
+        private int minTtlSeconds = 60;
+
+        /**
+         * Longest time wind is kept, in minutes.
+         */
+        private int maxTtlMinutes = 25;
+
+        public boolean isObservationAligned() {
+            return this.observationAligned;
+        }
+
+        public void setObservationAligned(boolean observationAligned) {
+            this.observationAligned = observationAligned;
+        }
+
+        public int getUpdateIntervalMinutes() {
+            return this.updateIntervalMinutes;
+        }
+
+        public void setUpdateIntervalMinutes(int updateIntervalMinutes) {
+            this.updateIntervalMinutes = updateIntervalMinutes;
+        }
+
+        public int getRefreshIntervalMinutes() {
+            return this.refreshIntervalMinutes;
+        }
+
+        public void setRefreshIntervalMinutes(int refreshIntervalMinutes) {
+            this.refreshIntervalMinutes = refreshIntervalMinutes;
+        }
+
+        public int getPublishDelaySeconds() {
+            return this.publishDelaySeconds;
+        }
+
+        public void setPublishDelaySeconds(int publishDelaySeconds) {
+            this.publishDelaySeconds = publishDelaySeconds;
+        }
+
+        public int getMinTtlSeconds() {
+            return this.minTtlSeconds;
+        }
+
+        public void setMinTtlSeconds(int minTtlSeconds) {
+            this.minTtlSeconds = minTtlSeconds;
+        }
+
+        public int getMaxTtlMinutes() {
+            return this.maxTtlMinutes;
+        }
+
+        public void setMaxTtlMinutes(int maxTtlMinutes) {
+            this.maxTtlMinutes = maxTtlMinutes;
+        }
+
+    }
+
+    public static class Coalescing {
+
+        /**
+         * How long a request waits for an identical in-flight upstream call, in milliseconds.
+         */
+        private long waitTimeoutMs = 10000;
+
+        /**
+         * Whether requests waiting on a failed upstream call receive its error or retry once.
+         */
+        private boolean shareFailures = true;
+
+        public long getWaitTimeoutMs() {
+            return this.waitTimeoutMs;
+        }
+
+        public void setWaitTimeoutMs(long waitTimeoutMs) {
+            this.waitTimeoutMs = waitTimeoutMs;
+        }
+
+        public boolean isShareFailures() {
+            return this.shareFailures;
+        }
+
+        public void setShareFailures(boolean shareFailures) {
+            this.shareFailures = shareFailures;
+        }
+
+    }
+
+    public static class RefreshAhead {
+
+        /**
+         * Serve cached wind past its soft TTL while refreshing it in the background.
+         */
+        private boolean enabled;
+
+        /**
+         * Age in minutes after which a cached entry is refreshed in the background.
+         * Should be lower than the cache TTL.
+         */
+        private int softTtlMinutes = 10;
+
+        /**
+         * Minutes past the cache TTL during which an entry is still served when upstream fails.
+         */
+        private int staleGraceMinutes = 30;
+
+        /**
+         * Number of background refresh threads.
+         */
+        private int threads = 2;
+
+        /**
+         * Maximum number of pending background refreshes, further refreshes are skipped.
+         */
+        private int queueCapacity = 1000;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSoftTtlMinutes() {
+            return this.softTtlMinutes;
+        }
+
+        public void setSoftTtlMinutes(int softTtlMinutes) {
+            this.softTtlMinutes = softTtlMinutes;
+        }
+
+        public int getStaleGraceMinutes() {
+            return this.staleGraceMinutes;
+        }
+
+        public void setStaleGraceMinutes(int staleGraceMinutes) {
+            this.staleGraceMinutes = staleGraceMinutes;
+        }
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+    }
+
+    public static class Upstream {
+
+        /**
+         * Number of threads making upstream calls for asynchronous requests.
+         */
+        private int threads = 20;
+
+        /**
+         * Maximum number of upstream calls waiting for a thread, further misses are rejected.
+         */
+        private int queueCapacity = 500;
+
+        /**
+         * Maximum number of pooled keep-alive connections to the upstream API.
+         */
+        private int maxConnections = 100;
+
+        /**
+         * Maximum number of pooled connections per upstream host.
+         */
+        private int maxConnectionsPerRoute = 50;
+
+        /**
+         * Timeout for establishing a connection, in milliseconds.
+         */
+        private int connectTimeoutMs = 2000;
+
+        /**
+         * Timeout between two packets of a response, in milliseconds.
+         */
+        private int readTimeoutMs = 5000;
+
+        /**
+         * How long a call waits for a pooled connection, in milliseconds.
+         */
+        private int connectionRequestTimeoutMs = 1000;
+
+        /**
+         * Upper bound on a whole upstream call, after which it is aborted, in milliseconds. 0 to disable.
+         */
+        private int totalTimeoutMs = 8000;
+
+        /**
+         * How long an idle pooled connection is kept open, in milliseconds.
+         */
+        private int idleTimeoutMs = 30000;
+
+        /**
+         * Ask the upstream API for gzip compressed responses.
+         */
+        private boolean compression = true;
+
+        public int getThreads() {
+            return this.threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return this.queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getMaxConnections() {
+            return this.maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return this.maxConnectionsPerRoute;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        }
+
+        public int getConnectTimeoutMs() {
+            return this.connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public int getReadTimeoutMs() {
+            return this.readTimeoutMs;
+        }
+
+        public void setReadTimeoutMs(int readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+        }
+
+        public int getConnectionRequestTimeoutMs() {
+            return this.connectionRequestTimeoutMs;
+        }
+
+        public void setConnectionRequestTimeoutMs(int connectionRequestTimeoutMs) {
+            this.connectionRequestTimeoutMs = connectionRequestTimeoutMs;
+        }
+
+        public int getTotalTimeoutMs() {
+            return this.totalTimeoutMs;
+        }
+
+        public void setTotalTimeoutMs(int totalTimeoutMs) {
+            this.totalTimeoutMs = totalTimeoutMs;
+        }
+
+        public int getIdleTimeoutMs() {
+            return this.idleTimeoutMs;
+        }
+
+        public void setIdleTimeoutMs(int idleTimeoutMs) {
+            this.idleTimeoutMs = idleTimeoutMs;
+        }
+
+        public boolean isCompression() {
+            return this.compression;
+        }
+
+        public void setCompression(boolean compression) {
+            this.compression = compression;
+        }
+
+    }
+
+    public static class Limiter {
+
+        /**
+         * Limit the upstream calls in flight to a value adapted from their round trip times.
+         * Calls over the limit fail fast, or are answered with stale data when refresh-ahead is enabled.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of upstream calls allowed in flight at startup.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * The limit never drops below this number of calls.
+         */
+        private int minLimit = 2;
+
+        /**
+         * The limit never grows above this number of calls.
+         */
+        private int maxLimit = 200;
+
+        /**
+         * Factor applied to the limit on each failed or slow call.
+         */
+        private double backoffRatio = 0.9;
+
+        /**
+         * A call taking longer than this multiple of the no-load round trip time shrinks the limit.
+         */
+        private double rttTolerance = 2.0;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return this.initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return this.minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return this.maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getBackoffRatio() {
+            return this.backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public double getRttTolerance() {
+            return this.rttTolerance;
+        }
+
+        public void setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+        }
+
+    }
+
+    public static class CircuitBreaker {
+
+        /**
+         * Stop calling OpenWeatherMap after consecutive failures.
+         */
+        private boolean enabled;
+
+        /**
+         * Number of consecutive failed upstream calls opening the circuit.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * How long upstream calls are rejected once the circuit opened, in milliseconds.
+         */
+        private long openMs = 10000;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFailureThreshold() {
+            return this.failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public long getOpenMs() {
+            return this.openMs;
+        }
+
+        public void setOpenMs(long openMs) {
+            this.openMs = openMs;
+        }
+
+    }
+
+    public static class Quota {
+
+        /**
+         * Spend upstream calls within the per-minute quota of the API key.
+         */
+        private boolean enabled;
+
+        /**
+         * Upstream calls allowed per minute. Up to the burst more may be made in a minute,
+         * keep the sum below the quota of the API key.
+         */
+        private int callsPerMinute = 50;
+
+        /**
+         * Upstream calls that may be made back to back after a quiet period.
+         */
+        private int burst = 10;
+
+        /**
+         * How long a user request waits for its turn before it fails or is answered with stale data,
+         * in milliseconds.
+         */
+        private long maxWaitMs = 2000;
+
+        /**
+         * Share of the burst background refresh and warm-up calls leave to user requests, 0 to 1.
+         */
+        private double backgroundReserve = 0.5;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCallsPerMinute() {
+            return this.callsPerMinute;
+        }
+
+        public void setCallsPerMinute(int callsPerMinute) {
+            this.callsPerMinute = callsPerMinute;
+        }
+
+        public int getBurst() {
+            return this.burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getMaxWaitMs() {
+            return this.maxWaitMs;
+        }
+
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        public double getBackgroundReserve() {
+            return this.backgroundReserve;
+        }
+
+        public void setBackgroundReserve(double backgroundReserve) {
+            this.backgroundReserve = backgroundReserve;
+        }
+
+    }
+
+    public static class Cluster {
+
+        /**
+         * Send cache removals to the other instances, and apply theirs.
+         */
+        private boolean enabled;
+
+        /**
+         * Base URLs of the other instances, for example http://10.0.0.2:8080. This instance must not be listed.
+         */
+        private List<String> peers = new ArrayList<String>();
+
+        /**
+         * How often queued removals are sent to the peers, in milliseconds.
+         */
+        private long syncIntervalMs = 200;
+
+        /**
+         * Ask the peers for a cached entry before calling OpenWeatherMap.
+         */
+        private boolean peerFetch;
+
+        /**
+         * Connect and read timeout of calls to a peer, in milliseconds.
+         */
+        private int timeoutMs = 300;
+
+        /**
+         * Shared secret peers send along with their calls, calls without it are refused. Required when enabled.
+         */
+        private String token;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPeers() {
+            return this.peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public long getSyncIntervalMs() {
+            return this.syncIntervalMs;
+        }
+
+        public void setSyncIntervalMs(long syncIntervalMs) {
+            this.syncIntervalMs = syncIntervalMs;
+        }
+
+        public boolean isPeerFetch() {
+            return this.peerFetch;
+        }
+
+        public void setPeerFetch(boolean peerFetch) {
+            this.peerFetch = peerFetch;
+        }
+
+        public int getTimeoutMs() {
+            return this.timeoutMs;
+        }
+
+        public void setTimeoutMs(int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public String getToken() {
+            return this.token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+    }
+
+    public static class Geo {
+
+        /**
+         * Cache and fetch the wind per grid cell rather than per zip code, so neighboring zip
+         * codes share one reading. Zip codes missing from the centroids file are fetched on their own.
+         */
+        private boolean enabled;
+
+        /**
+         * CSV file of zip code, latitude and longitude lines.
+         */
+        private String centroidsFile;
+
+        /**
+         * Size of a grid cell in degrees of latitude and longitude, 0.1 is about 11 km by 8 km in the US.
+         */
+        private double cellSizeDegrees = 0.1;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getCentroidsFile() {
+            return this.centroidsFile;
+        }
+
+        public void setCentroidsFile(String centroidsFile) {
+            this.centroidsFile = centroidsFile;
+        }
+
+        public double getCellSizeDegrees() {
+            return this.cellSizeDegrees;
+        }
+
+        public void setCellSizeDegrees(double cellSizeDegrees) {
+            this.cellSizeDegrees = cellSizeDegrees;
+        }
+
+    }
+
+    public static class Batch {
+
+        /**
+         * Maximum number of distinct zip codes per batch request.
+         */
+        private int maxSize = 500;
+
+        /**
+         * Maximum number of lookups a single batch request keeps outstanding.
+         */
+        private int maxConcurrency = 16;
+
+        /**
+         * How long a batch response may stream before it is closed, in milliseconds.
+         */
+        private long timeoutMs = 30000;
+
+        public int getMaxSize() {
+            return this.maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int getMaxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public long getTimeoutMs() {
+            return this.timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+    }
+
+    public static class Warmup {
+
+        /**
+         * Pre-populate the wind cache at startup. The instance reports OUT_OF_SERVICE on the
+         * health endpoint until the warm-up finished.
+         */
+        private boolean enabled;
+
+        /**
+         * Zip codes to fetch during warm-up.
+         */
+        private List<String> zipCodes = new ArrayList<String>();
+
+        /**
+         * File with more zip codes to fetch, one per line. Blank lines and lines starting with # are ignored.
+         */
+        private String zipCodesFile;
+
+        /**
+         * Maximum number of warm-up fetches started per second.
+         */
+        private double permitsPerSecond = 20;
+
+        /**
+         * Number of warm-up fetches running in parallel.
+         */
+        private int parallelism = 4;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getZipCodes() {
+            return this.zipCodes;
+        }
+
+        public void setZipCodes(List<String> zipCodes) {
+            this.zipCodes = zipCodes;
+        }
+
+        public String getZipCodesFile() {
+            return this.zipCodesFile;
+        }
+
+        public void setZipCodesFile(String zipCodesFile) {
+            this.zipCodesFile = zipCodesFile;
+        }
+
+        public double getPermitsPerSecond() {
+            return this.permitsPerSecond;
+        }
+
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        public int getParallelism() {
+            return this.parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+    }
+
+    public static class AccessLog {
+
+        /**
+         * Log every wind request to the com.sivaji.weather.webservices.access logger, from a
+         * background writer.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of requests buffered for the writer, more are dropped.
+         */
+        private int capacity = 8192;
+
+        /**
+         * Share of the cache hits logged, 0 to 1.
+         */
+        private double hitSampleRate = 1.0;
+
+        /**
+         * Share of the other requests logged, 0 to 1.
+         */
+        private double sampleRate = 1.0;
+
+        /**
+         * How often the writer drains the buffer, in milliseconds.
+         */
+        private long flushIntervalMs = 100;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return this.capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getHitSampleRate() {
+            return this.hitSampleRate;
+        }
+
+        public void setHitSampleRate(double hitSampleRate) {
+            this.hitSampleRate = hitSampleRate;
+        }
+
+        public double getSampleRate() {
+            return this.sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public long getFlushIntervalMs() {
+            return this.flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+    }
+
+    public static class History {
+
+        /**
+         * Append every wind observation fetched from OpenWeatherMap to an on-disk history.
+         */
+        private boolean enabled;
+
+        /**
+         * Directory of the history segment files.
+         */
+        private String path = "weather-history";
+
+        /**
+         * How long a segment is appended to before the next one is started, in minutes.
+         */
+        private int segmentMinutes = 60;
+
+        /**
+         * Size of a segment file, in megabytes. A full segment is followed by a new one early.
+         * A segment is mapped as one buffer, so it is smaller than 2 GB.
+         */
+        @Min(value = 1, message = "must be at least 1 megabyte")
+        @Max(value = 2047, message = "must be below 2048 megabytes, a segment is mapped as one buffer")
+        private int segmentSizeMb = 4;
+
+        /**
+         * How long segments are kept, in hours.
+         */
+        private int retentionHours = 72;
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return this.path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public int getSegmentMinutes() {
+            return this.segmentMinutes;
+        }
+
+        public void setSegmentMinutes(int segmentMinutes) {
+            this.segmentMinutes = segmentMinutes;
+        }
+
+        public int getSegmentSizeMb() {
+            return this.segmentSizeMb;
+        }
+
+        public void setSegmentSizeMb(int segmentSizeMb) {
+            this.segmentSizeMb = segmentSizeMb;
+        }
+
+        public int getRetentionHours() {
+            return this.retentionHours;
+        }
+
+        public void setRetentionHours(int retentionHours) {
+            this.retentionHours = retentionHours;
+        }
+
     }
 
 }
@@ -0,0 +1,8 @@
+package com.sivaji.weather.webservices.utils;
+
+/**
+ * Calculates the weight of a cache entry, used by bounded caches with a maximum weight.
+ */
+public interface Weigher<T> {
+    int weigh(String key, T value);
+}
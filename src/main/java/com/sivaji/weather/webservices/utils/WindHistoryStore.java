@@ -0,0 +1,443 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An append-only history of wind observations per key, kept on disk for range queries.
+ * <p>
+ * Observations are appended to segment files of a fixed size, memory mapped and started one per
+ * time window, or sooner when one fills up. Each record links back to the previous record of its
+ * key in the same segment, so the heap only holds the offset of every key's latest record per
+ * segment: a range query walks the key's chain backwards through the mapped segments and stops
+ * at the start of the range, without reading the segments into the heap. Segments past the
+ * retention are deleted when the store is opened, when a new one is started and by
+ * {@link #removeExpired()}, and existing segments are indexed again when the store is opened.
+ * A segment is unmapped once no query reads it, when it is deleted or the store is closed.
+ * <p>
+ * An observation not newer than the last one of its key is not appended, so refetching an
+ * unchanged observation adds nothing and the records of a key are in time order.
+ */
+public class WindHistoryStore implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WindHistoryStore.class.getName());
+
+    private static final int MAGIC = 0x57484953;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".seg";
+
+    /* Magic, version, window start */
+    private static final int HEADER_SIZE = 16;
+
+    /* Key length, written last, previous record of the key, time, wind speed and direction, then the key */
+    private static final int RECORD_SIZE = 30;
+    private static final int PREVIOUS = 2;
+    private static final int TIME = 6;
+    private static final int SPEED = 14;
+    private static final int DIRECTION = 22;
+
+    /**
+     * Receives the observations of a range query, newest first.
+     */
+    public interface Visitor {
+
+        void visit(long time, double windSpeed, double windDirection);
+    }
+
+    private final Path directory;
+    private final long segmentMillis;
+    private final int segmentSize;
+    private final long retentionMillis;
+
+    /* Oldest first, replaced on rollover, the last one is appended to */
+    private volatile List<Segment> segments = Collections.emptyList();
+    private final ConcurrentMap<String, Long> lastTimes = new ConcurrentHashMap<String, Long>();
+    private final LongAdder appended = new LongAdder();
+    /* Queries read the mappings under the read lock, they are only released under the write lock */
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    private long nextSequence;
+
+    /**
+     * @param segmentMillis how long a segment is appended to
+     * @param segmentSize   the size of a segment file in bytes
+     * @param retentionMillis how long a segment is kept after its window ended
+     */
+    public WindHistoryStore(Path directory, long segmentMillis, int segmentSize, long retentionMillis) throws IOException {
+        this(directory, segmentMillis, segmentSize, retentionMillis, System.currentTimeMillis());
+    }
+
+    WindHistoryStore(Path directory, long segmentMillis, int segmentSize, long retentionMillis, long now) throws IOException {
+        if (segmentMillis <= 0 || segmentSize < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid segment duration or size.");
+        }
+        this.directory = directory;
+        this.segmentMillis = segmentMillis;
+        this.segmentSize = segmentSize;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(directory);
+        open(now);
+    }
+
+    private void open(long now) throws IOException {
+        List<Path> paths = new ArrayList<Path>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path path : files) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+
+        List<Segment> opened = new ArrayList<Segment>();
+        int records = 0;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            try {
+                nextSequence = Math.max(nextSequence, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())) + 1);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            Segment segment = Segment.open(path);
+            if (segment == null) {
+                logger.warn("Ignoring wind history segment {} with an unknown format", path);
+                continue;
+            }
+            if (isExpired(segment, now)) {
+                delete(segment);
+                continue;
+            }
+            for (Map.Entry<String, Integer> head : segment.heads.entrySet()) {
+                lastTimes.merge(head.getKey(), segment.timeAt(head.getValue()), Math::max);
+            }
+            records += segment.records;
+            opened.add(segment);
+        }
+        segments = Collections.unmodifiableList(opened);
+        logger.info("Opened {} wind history segments with {} observations in {}", opened.size(), records, directory);
+    }
+
+    /**
+     * Append an observation of the key, returns false when it is not newer than the last one.
+     */
+    public boolean append(String key, long time, double windSpeed, double windDirection) throws IOException {
+        return append(key, time, windSpeed, windDirection, System.currentTimeMillis());
+    }
+
+    synchronized boolean append(String key, long time, double windSpeed, double windDirection, long now) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The wind history in " + directory + " is closed.");
+        }
+        Long lastTime = lastTimes.get(key);
+        if (lastTime != null && time <= lastTime) {
+            return false;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > Short.MAX_VALUE
+                || HEADER_SIZE + RECORD_SIZE + keyBytes.length > segmentSize) {
+            throw new IllegalArgumentException("Invalid history key " + key);
+        }
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || now >= segment.windowStart + segmentMillis
+                || !segment.append(keyBytes, key, time, windSpeed, windDirection)) {
+            segment = roll(now);
+            segment.append(keyBytes, key, time, windSpeed, windDirection);
+        }
+        lastTimes.put(key, time);
+        appended.increment();
+        return true;
+    }
+
+    /**
+     * Start a new segment and delete those past the retention.
+     */
+    private Segment roll(long now) throws IOException {
+        removeExpired(now);
+        List<Segment> kept = new ArrayList<Segment>(segments.size() + 1);
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            kept.add(segment);
+        }
+
+        Path path = directory.resolve(String.format("%020d%s", nextSequence++, SUFFIX));
+        Segment segment = Segment.create(path, now - now % segmentMillis, segmentSize);
+        kept.add(segment);
+        segments = Collections.unmodifiableList(kept);
+        return segment;
+    }
+
+    /**
+     * Delete the segments past the retention, also when nothing was appended for a while.
+     */
+    public void removeExpired() {
+        removeExpired(System.currentTimeMillis());
+    }
+
+    void removeExpired(long now) {
+        // The oldest segment expires first, checking it is enough to skip the lock
+        List<Segment> snapshot = segments;
+        if (snapshot.isEmpty() || !isExpired(snapshot.get(0), now)) {
+            return;
+        }
+
+        synchronized (this) {
+            List<Segment> kept = new ArrayList<Segment>(segments.size());
+            List<Segment> expired = new ArrayList<Segment>();
+            for (Segment segment : segments) {
+                (isExpired(segment, now) ? expired : kept).add(segment);
+            }
+            // Out of the list before being unmapped, queries starting now do not reach them
+            segments = Collections.unmodifiableList(kept);
+            for (Segment segment : expired) {
+                delete(segment);
+            }
+        }
+    }
+
+    private boolean isExpired(Segment segment, long now) {
+        return segment.windowStart + segmentMillis + retentionMillis <= now;
+    }
+
+    private void delete(Segment segment) {
+        for (Map.Entry<String, Integer> head : segment.heads.entrySet()) {
+            lastTimes.remove(head.getKey(), segment.timeAt(head.getValue()));
+        }
+        unmap(segment);
+        try {
+            Files.deleteIfExists(segment.path);
+            logger.info("Deleted wind history segment {}", segment.path);
+        } catch (IOException e) {
+            logger.warn("Could not delete wind history segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    /**
+     * Visit the observations of the key from the given time up to the other, both inclusive,
+     * newest first.
+     */
+    public void range(String key, long from, long to, Visitor visitor) {
+        mappingLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The wind history in " + directory + " is closed.");
+            }
+            // Segments deleted meanwhile are not in the list anymore, those in it stay mapped
+            List<Segment> snapshot = segments;
+            for (int i = snapshot.size() - 1; i >= 0; i--) {
+                Segment segment = snapshot.get(i);
+                Integer head = segment.heads.get(key);
+                if (head == null) {
+                    continue;
+                }
+
+                ByteBuffer buffer = segment.buffer;
+                for (int offset = head; offset >= 0; offset = buffer.getInt(offset + PREVIOUS)) {
+                    long time = buffer.getLong(offset + TIME);
+                    if (time < from) {
+                        // Older records of the key, in this segment or before, are older still
+                        return;
+                    }
+                    if (time <= to) {
+                        visitor.visit(time, buffer.getDouble(offset + SPEED), buffer.getDouble(offset + DIRECTION));
+                    }
+                }
+            }
+        } finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * The number of observations appended since the store was opened.
+     */
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Write the appended observations to disk and unmap the segments, waiting for running queries.
+     * Appending to or querying a closed store fails, closing it again does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        List<Segment> closing = segments;
+        mappingLock.writeLock().lock();
+        try {
+            closed = true;
+            segments = Collections.emptyList();
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+        for (Segment segment : closing) {
+            segment.buffer.force();
+            unmap(segment);
+        }
+    }
+
+    /**
+     * Release the mapping of a segment already removed from the list, once the queries that may
+     * still walk it are done.
+     */
+    private void unmap(Segment segment) {
+        mappingLock.writeLock().lock();
+        try {
+            Segment.unmap(segment.buffer);
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    private static class Segment {
+
+        final Path path;
+        final long windowStart;
+        final MappedByteBuffer buffer;
+        /* The offset of the latest record of every key */
+        final ConcurrentMap<String, Integer> heads = new ConcurrentHashMap<String, Integer>();
+        /* Only used by the appending thread */
+        int size = HEADER_SIZE;
+        int records;
+
+        private Segment(Path path, long windowStart, MappedByteBuffer buffer) {
+            this.path = path;
+            this.windowStart = windowStart;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long windowStart, int segmentSize) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, windowStart);
+                return new Segment(path, windowStart, buffer);
+            }
+        }
+
+        /**
+         * Map an existing segment and index its records, or null when it is not a segment. A record
+         * cut short by a crash ends the segment.
+         */
+        static Segment open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_SIZE + RECORD_SIZE || channel.size() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    return null;
+                }
+
+                Segment segment = new Segment(path, buffer.getLong(8), buffer);
+                while (segment.size + RECORD_SIZE <= buffer.limit()) {
+                    int keyLength = buffer.getShort(segment.size);
+                    if (keyLength <= 0 || segment.size + RECORD_SIZE + keyLength > buffer.limit()) {
+                        break;
+                    }
+                    segment.heads.put(segment.keyAt(segment.size, keyLength), segment.size);
+                    segment.size += RECORD_SIZE + keyLength;
+                    segment.records++;
+                }
+                return segment;
+            }
+        }
+
+        /**
+         * Append a record, returns false when the segment is full.
+         */
+        boolean append(byte[] keyBytes, String key, long time, double windSpeed, double windDirection) {
+            int offset = size;
+            if (offset + RECORD_SIZE + keyBytes.length > buffer.limit()) {
+                return false;
+            }
+
+            Integer previous = heads.get(key);
+            buffer.putInt(offset + PREVIOUS, previous == null ? -1 : previous);
+            buffer.putLong(offset + TIME, time);
+            buffer.putDouble(offset + SPEED, windSpeed);
+            buffer.putDouble(offset + DIRECTION, windDirection);
+            ByteBuffer keyBuffer = buffer.duplicate();
+            keyBuffer.position(offset + RECORD_SIZE);
+            keyBuffer.put(keyBytes);
+            // The length goes last, a record cut short has none
+            buffer.putShort(offset, (short) keyBytes.length);
+
+            // Publishes the record to queries
+            heads.put(key, offset);
+            size = offset + RECORD_SIZE + keyBytes.length;
+            records++;
+            return true;
+        }
+
+        /**
+         * Release a mapping now rather than when it is garbage collected, through the cleaner of the
+         * JDK buffer. The mapping is left to the garbage collector when the JDK has none.
+         */
+        static void unmap(MappedByteBuffer buffer) {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.debug("Could not unmap a wind history segment, leaving it to the garbage collector: {}",
+                        e.toString());
+            }
+        }
+
+        long timeAt(int offset) {
+            return buffer.getLong(offset + TIME);
+        }
+
+        private String keyAt(int offset, int keyLength) {
+            byte[] bytes = new byte[keyLength];
+            ByteBuffer keyBuffer = buffer.duplicate();
+            keyBuffer.position(offset + RECORD_SIZE);
+            keyBuffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+
+/**
+ * A store for caches keyed by US zip codes, holding each entry in primitive form.
+ * <p>
+ * A zip code is encoded as an int (5 digit codes as is, ZIP+4 codes offset past them) and the
+ * entries live in striped open-addressing tables of parallel arrays: insert time, time to live,
+ * wind speed and direction, plus the city name, interned so entries of the same city share one
+ * string. This avoids the key string, map node, entry and value objects of every entry. Values
+ * are rebuilt by the codec on every read, trading a short-lived allocation per hit for a much
+ * smaller resident footprint.
+ * <p>
+ * Readers use optimistic reads of a stripe's lock, writers its write lock. Conditional removal
+ * compares the insert time and time to live, the identity of a write. Keys that are not zip
+ * codes are kept in an ordinary map.
+ */
+public final class ZipCodeStore<T> implements CacheStore<T> {
+
+    /**
+     * Splits values into the primitive fields kept by the store and builds them back.
+     */
+    public interface Codec<T> {
+
+        String getName(T value);
+
+        double getWindSpeed(T value);
+
+        double getWindDirection(T value);
+
+        T create(String name, double windSpeed, double windDirection);
+    }
+
+    private static final int STRIPE_SHIFT = 4;
+    private static final int STRIPES = 1 << STRIPE_SHIFT;
+    private static final int MIN_CAPACITY = 16;
+
+    /* ZIP+4 codes are encoded after the 100000 five digit codes */
+    private static final int ZIP_PLUS_FOUR_OFFSET = 100000;
+
+    private final Codec<T> codec;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ConcurrentMap<String, String> names = new ConcurrentHashMap<String, String>();
+    private final MapCacheStore<T> overflow = new MapCacheStore<T>();
+    private final int initialCapacity;
+
+    public ZipCodeStore(Codec<T> codec) {
+        this(codec, 1024);
+    }
+
+    /**
+     * @param expectedSize the number of zip codes expected, to size the tables up front
+     */
+    public ZipCodeStore(Codec<T> codec, int expectedSize) {
+        this.codec = codec;
+        this.initialCapacity = capacityFor(Math.max(1, expectedSize / STRIPES));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(new Table(initialCapacity));
+        }
+    }
+
+    /**
+     * Encode a zip code as a non negative int, or -1 when the key is not a zip code.
+     */
+    static int encode(String key) {
+        int length = key.length();
+        if (length != 5 && length != 10) {
+            return -1;
+        }
+
+        int zip = digits(key, 0, 5);
+        if (zip < 0 || length == 5) {
+            return zip;
+        }
+
+        int plusFour = key.charAt(5) == '-' ? digits(key, 6, 10) : -1;
+        return plusFour < 0 ? -1 : ZIP_PLUS_FOUR_OFFSET + zip * 10000 + plusFour;
+    }
+
+    static String decode(int code) {
+        if (code < ZIP_PLUS_FOUR_OFFSET) {
+            return pad(code, 5);
+        }
+        code -= ZIP_PLUS_FOUR_OFFSET;
+        return pad(code / 10000, 5) + '-' + pad(code % 10000, 4);
+    }
+
+    private static int digits(String key, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String pad(int value, int width) {
+        char[] chars = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    private static int hash(int code) {
+        // Murmur3 finalizer, zip codes are clustered
+        int h = code;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes[hash >>> (32 - STRIPE_SHIFT)];
+    }
+
+    @Override
+    public CacheEntry<T> get(String key) {
+        int code = encode(key);
+        if (code < 0) {
+            return overflow.get(key);
+        }
+
+        int hash = hash(code);
+        Stripe stripe = stripeFor(hash);
+        Slot slot = new Slot();
+
+        long stamp = stripe.lock.tryOptimisticRead();
+        boolean found = stripe.table.read(code + 1, hash, slot);
+        if (!stripe.lock.validate(stamp)) {
+            stamp = stripe.lock.readLock();
+            try {
+                found = stripe.table.read(code + 1, hash, slot);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+
+        return found ? slot.toEntry(codec) : null;
+    }
+
+    @Override
+    public void put(String key, CacheEntry<T> entry) {
+        int code = encode(key);
+        if (code < 0) {
+            overflow.put(key, entry);
+            return;
+        }
+        write(code, entry, false);
+    }
+
+    @Override
+    public CacheEntry<T> putIfAbsent(String key, CacheEntry<T> entry) {
+        int code = encode(key);
+        if (code < 0) {
+            return overflow.putIfAbsent(key, entry);
+        }
+        return write(code, entry, true);
+    }
+
+    private CacheEntry<T> write(int code, CacheEntry<T> entry, boolean onlyIfAbsent) {
+        T value = entry.getValue();
+        String name = intern(codec.getName(value));
+        double windSpeed = codec.getWindSpeed(value);
+        double windDirection = codec.getWindDirection(value);
+
+        int hash = hash(code);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Table table = stripe.table;
+            int index = table.find(code + 1, hash);
+            if (index >= 0) {
+                if (onlyIfAbsent) {
+                    Slot present = new Slot();
+                    table.copy(index, present);
+                    return present.toEntry(codec);
+                }
+            } else {
+                if (stripe.size + 1 > table.keys.length * 3 / 4) {
+                    table = stripe.table = table.resize();
+                }
+                index = table.freeSlot(hash);
+                table.keys[index] = code + 1;
+                stripe.size++;
+            }
+
+            table.insertTimes[index] = entry.getInsertTime();
+            table.ttls[index] = entry.getTtlMillis();
+            table.windSpeeds[index] = windSpeed;
+            table.windDirections[index] = windDirection;
+            table.names[index] = name;
+            return null;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    private String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String interned = names.putIfAbsent(name, name);
+        return interned == null ? name : interned;
+    }
+
+    @Override
+    public void remove(String key) {
+        int code = encode(key);
+        if (code < 0) {
+            overflow.remove(key);
+            return;
+        }
+        delete(code, null);
+    }
+
+    @Override
+    public boolean remove(String key, CacheEntry<T> entry) {
+        int code = encode(key);
+        if (code < 0) {
+            return overflow.remove(key, entry);
+        }
+        return delete(code, entry);
+    }
+
+    private boolean delete(int code, CacheEntry<T> expected) {
+        int hash = hash(code);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Table table = stripe.table;
+            int index = table.find(code + 1, hash);
+            if (index < 0) {
+                return false;
+            }
+            if (expected != null && (table.insertTimes[index] != expected.getInsertTime()
+                    || table.ttls[index] != expected.getTtlMillis())) {
+                return false;
+            }
+            table.delete(index);
+            stripe.size--;
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.table = new Table(initialCapacity);
+                stripe.size = 0;
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        names.clear();
+        overflow.clear();
+    }
+
+    @Override
+    public int size() {
+        int size = overflow.size();
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, CacheEntry<T>> action) {
+        List<String> keys = new ArrayList<String>();
+        List<CacheEntry<T>> entries = new ArrayList<CacheEntry<T>>();
+
+        for (Stripe stripe : stripes) {
+            // Copy the stripe so the action runs without the lock and may write to the store
+            long stamp = stripe.lock.readLock();
+            try {
+                Table table = stripe.table;
+                for (int i = 0; i < table.keys.length; i++) {
+                    if (table.keys[i] != 0) {
+                        Slot slot = new Slot();
+                        table.copy(i, slot);
+                        keys.add(decode(table.keys[i] - 1));
+                        entries.add(slot.toEntry(codec));
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+
+            for (int i = 0; i < keys.size(); i++) {
+                action.accept(keys.get(i), entries.get(i));
+            }
+            keys.clear();
+            entries.clear();
+        }
+
+        overflow.forEach(action);
+    }
+
+    /**
+     * The number of distinct city names held.
+     */
+    public int getNameCount() {
+        return names.size();
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        /* Replaced on resize and clear, under the write lock */
+        private Table table;
+        private volatile int size;
+
+        Stripe(Table table) {
+            this.table = table;
+        }
+    }
+
+    /**
+     * Linear probing table with backward shift deletion, so there are no tombstones.
+     * Keys are stored as code + 1, 0 marks a free slot.
+     */
+    private static final class Table {
+        private final int[] keys;
+        private final long[] insertTimes;
+        private final long[] ttls;
+        private final double[] windSpeeds;
+        private final double[] windDirections;
+        private final String[] names;
+        private final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            insertTimes = new long[capacity];
+            ttls = new long[capacity];
+            windSpeeds = new double[capacity];
+            windDirections = new double[capacity];
+            names = new String[capacity];
+            mask = capacity - 1;
+        }
+
+        int find(int key, int hash) {
+            // Bounded, an optimistic reader may see the table mid-write
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                int k = keys[i];
+                if (k == key) {
+                    return i;
+                }
+                if (k == 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        int freeSlot(int hash) {
+            int i = hash & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        boolean read(int key, int hash, Slot slot) {
+            int index = find(key, hash);
+            if (index < 0) {
+                return false;
+            }
+            copy(index, slot);
+            return true;
+        }
+
+        void copy(int index, Slot slot) {
+            slot.insertTime = insertTimes[index];
+            slot.ttlMillis = ttls[index];
+            slot.windSpeed = windSpeeds[index];
+            slot.windDirection = windDirections[index];
+            slot.name = names[index];
+        }
+
+        void delete(int index) {
+            int free = index;
+            int j = index;
+            while (true) {
+                j = (j + 1) & mask;
+                if (keys[j] == 0) {
+                    break;
+                }
+                int home = hash(keys[j] - 1) & mask;
+                // Move the entry back unless its home slot lies cyclically in (free, j]
+                boolean stays = free <= j ? free < home && home <= j : free < home || home <= j;
+                if (!stays) {
+                    move(j, free);
+                    free = j;
+                }
+            }
+            keys[free] = 0;
+            names[free] = null;
+        }
+
+        private void move(int from, int to) {
+            keys[to] = keys[from];
+            insertTimes[to] = insertTimes[from];
+            ttls[to] = ttls[from];
+            windSpeeds[to] = windSpeeds[from];
+            windDirections[to] = windDirections[from];
+            names[to] = names[from];
+        }
+
+        Table resize() {
+            Table resized = new Table(keys.length << 1);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    int index = resized.freeSlot(hash(keys[i] - 1));
+                    resized.keys[index] = keys[i];
+                    resized.insertTimes[index] = insertTimes[i];
+                    resized.ttls[index] = ttls[i];
+                    resized.windSpeeds[index] = windSpeeds[i];
+                    resized.windDirections[index] = windDirections[i];
+                    resized.names[index] = names[i];
+                }
+            }
+            return resized;
+        }
+    }
+
+    /* The fields of one entry, copied out of the table */
+    private static final class Slot {
+        private long insertTime;
+        private long ttlMillis;
+        private double windSpeed;
+        private double windDirection;
+        private String name;
+
+        <T> CacheEntry<T> toEntry(Codec<T> codec) {
+            return new CacheEntry<T>(codec.create(name, windSpeed, windDirection), insertTime, ttlMillis);
+        }
+    }
+}
@@ -1,25 +1,53 @@
 package com.sivaji.weather.webservices.client;
 
+import com.sivaji.weather.webservices.model.BatchWindResult;
+import com.sivaji.weather.webservices.model.EncodedWeather;
 import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.model.WindObservation;
 import com.sivaji.weather.webservices.service.WeatherService;
+import com.sivaji.weather.webservices.utils.CacheEntry;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(WeatherAPIController.class)
+@Import(WeatherServiceProperties.class)
 public class WeatherAPIControllerTest {
 
     @Autowired
@@ -30,6 +58,7 @@ public class WeatherAPIControllerTest {
 
     private String zipCode = "08831";
     private Weather weather;
+    private long insertTime = (System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(7)) / 1000 * 1000;
 
     @Before
     public void setup() {
@@ -41,9 +70,174 @@ public class WeatherAPIControllerTest {
 
     @Test
     public void whenCityCodeIsProvided_thenResponseStatusIs200() throws Exception {
-        given(weatherServiceMock.getWindByZipCode(zipCode)).willReturn(weather);
-        mockMvc.perform(get("/api/v1/wind/"+zipCode))
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(entry()));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("New Brunswick"));
+    }
+
+    @Test
+    public void whenWindIsCached_thenValidatorsAndMaxAgeComeFromTheEntry() throws Exception {
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(entry()));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode))
+                .andReturn();
+
+        MvcResult response = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + Long.toHexString(insertTime) + "\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, insertTime))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("public")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=")))
+                .andReturn();
+        String maxAge = response.getResponse().getHeader(HttpHeaders.CACHE_CONTROL).replaceAll(".*max-age=(\\d+).*", "$1");
+        assertThat(Long.parseLong(maxAge)).isBetween(8L * 60 - 1, 8L * 60);
+    }
+
+    @Test
+    public void whenEtagMatches_thenResponseIs304WithoutBody() throws Exception {
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(entry()));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + Long.toHexString(insertTime) + "\""))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void whenNotModifiedSince_thenResponseIs304() throws Exception {
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(entry()));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode)
+                .header(HttpHeaders.IF_MODIFIED_SINCE, insertTime + 1000))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void whenEntryWasReplaced_thenFullResponseIsSent() throws Exception {
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(entry()));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + Long.toHexString(insertTime - 60000) + "\""))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("New Brunswick"));
+    }
+
+    @Test
+    public void whenStaleEntryIsServed_thenClientsMustRevalidate() throws Exception {
+        CacheEntry<Weather> stale = new CacheEntry<Weather>(weather, insertTime - TimeUnit.MINUTES.toMillis(20), TimeUnit.MINUTES.toMillis(15));
+        given(weatherServiceMock.getWindEntryByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(stale));
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=0, must-revalidate"));
+    }
+
+    @Test
+    public void whenResponsesAreEncoded_thenTheKeptJsonIsWritten() throws Exception {
+        byte[] json = "{\"windSpeed\":5.1,\"windDirection\":330.0,\"name\":\"New Brunswick\"}".getBytes(StandardCharsets.UTF_8);
+        CacheEntry<EncodedWeather> encoded = new CacheEntry<EncodedWeather>(new EncodedWeather(json, insertTime), insertTime, TimeUnit.MINUTES.toMillis(15));
+        given(weatherServiceMock.isEncodingResponses()).willReturn(true);
+        given(weatherServiceMock.getEncodedWindByZipCodeAsync(zipCode)).willReturn(CompletableFuture.completedFuture(encoded));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/wind/"+zipCode))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + Long.toHexString(insertTime) + "\""))
+                .andExpect(jsonPath("$.name").value("New Brunswick"));
+
+        result = mockMvc.perform(get("/api/v1/wind/"+zipCode)
+                .header(HttpHeaders.IF_NONE_MATCH, encoded.getValue().getEtag()))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Inserted seven minutes ago with the default 15 minute TTL, on a whole second.
+     */
+    private CacheEntry<Weather> entry() {
+        return new CacheEntry<Weather>(weather, insertTime, TimeUnit.MINUTES.toMillis(15));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenBatchIsPosted_thenResultsAreStreamedAsJsonLines() throws Exception {
+        List<String> zipCodes = Arrays.asList(zipCode, "ABC");
+        given(weatherServiceMock.normalizeZipCodes(anyListOf(String.class))).willReturn(zipCodes);
+        given(weatherServiceMock.getWindByZipCodes(anyListOf(String.class), any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<BatchWindResult> consumer = (Consumer<BatchWindResult>) invocation.getArguments()[1];
+            consumer.accept(BatchWindResult.success(zipCode, weather));
+            consumer.accept(BatchWindResult.failure("ABC", "Invalid Zip Code"));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        MvcResult result = mockMvc.perform(post("/api/v1/wind/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"08831\", \"ABC\", \"08831\"]"))
+                .andExpect(request().asyncStarted())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+
+        // Lines are written to the response as each result is emitted
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk());
+        assertThat(result.getResponse().getContentAsString()).isEqualTo(
+                "{\"zipCode\":\"08831\",\"weather\":{\"windSpeed\":5.1,\"windDirection\":330.0,\"name\":\"New Brunswick\"}}\n"
+                        + "{\"zipCode\":\"ABC\",\"error\":\"Invalid Zip Code\"}\n");
+    }
+
+    @Test
+    public void whenHistoryIsRequested_thenObservationsWithinTheRangeAreReturned() throws Exception {
+        Instant from = Instant.parse("2026-10-18T06:00:00Z");
+        Instant to = Instant.parse("2026-10-18T12:00:00Z");
+        given(weatherServiceMock.getWindHistory(zipCode, from, to)).willReturn(Collections.singletonList(
+                new WindObservation(Instant.parse("2026-10-18T09:10:00Z"), 5.1, 330)));
+
+        mockMvc.perform(get("/api/v1/wind/" + zipCode + "/history")
+                .param("from", "2026-10-18T06:00:00Z")
+                .param("to", "2026-10-18T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.zipCode").value(zipCode))
+                .andExpect(jsonPath("$.from").value("2026-10-18T06:00:00Z"))
+                .andExpect(jsonPath("$.observations[0].time").value("2026-10-18T09:10:00Z"))
+                .andExpect(jsonPath("$.observations[0].windSpeed").value(5.1));
+    }
+
+    @Test
+    public void whenHistoryRangeIsOmitted_thenTheLast24HoursAreReturned() throws Exception {
+        given(weatherServiceMock.getWindHistory(eq(zipCode), any(Instant.class), any(Instant.class)))
+                .willAnswer(invocation -> {
+                    Instant from = (Instant) invocation.getArguments()[1];
+                    Instant to = (Instant) invocation.getArguments()[2];
+                    assertThat(to).isBetween(Instant.now().minusSeconds(60), Instant.now());
+                    assertThat(from).isEqualTo(to.minusSeconds(TimeUnit.HOURS.toSeconds(24)));
+                    return Collections.emptyList();
+                });
+
+        mockMvc.perform(get("/api/v1/wind/" + zipCode + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.observations").isEmpty());
+    }
+
+    @Test
+    public void whenHistoryRangeIsNotAnInstant_thenResponseStatusIs400() throws Exception {
+        mockMvc.perform(get("/api/v1/wind/" + zipCode + "/history").param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
     }
 
 }
@@ -0,0 +1,101 @@
+package com.sivaji.weather.webservices.model;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeatherDeserializerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( WeatherDeserializerTest.class );
+
+    private static final int ITERATIONS = 20000;
+
+    /* Lenient like the converter of the RestTemplate */
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES );
+
+    @Test
+    public void whenPayloadIsRead_thenOnlyNameAndWindAreKept() throws Exception {
+        Weather weather = objectMapper.readValue( payload(), Weather.class );
+
+        assertThat( weather.getName() ).isEqualTo( "Mountain View" );
+        assertThat( weather.getWindSpeed() ).isEqualTo( 2.1 );
+        assertThat( weather.getWindDirection() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenPayloadHasAnObservationTime_thenItIsKeptButNotWritten() throws Exception {
+        Weather weather = objectMapper.readValue( payload(), Weather.class );
+
+        assertThat( weather.getObservationTime() ).isEqualTo( 1523203200L );
+        assertThat( objectMapper.writeValueAsString( weather ) ).doesNotContain( "observationTime" );
+    }
+
+    @Test
+    public void whenWindHasDirectionAndUnknownFields_thenTheyAreParsedOrSkipped() throws Exception {
+        String json = "{\"wind\":{\"gust\":{\"a\":[1,2]},\"speed\":\"4.6\",\"deg\":250},"
+                + "\"weather\":[{\"id\":721}],\"name\":\"New Brunswick\",\"cod\":200}";
+
+        Weather weather = objectMapper.readValue( json, Weather.class );
+
+        assertThat( weather.getName() ).isEqualTo( "New Brunswick" );
+        assertThat( weather.getWindSpeed() ).isEqualTo( 4.6 );
+        assertThat( weather.getWindDirection() ).isEqualTo( 250 );
+    }
+
+    @Test
+    public void whenPayloadIsReadRepeatedly_thenAllocationIsComparedWithMapBinding() throws Exception {
+        byte[] payload = payload();
+
+        // Warm up both paths so the measurement excludes class loading and compilation
+        long streaming = allocatedPerRead( payload, Weather.class );
+        long mapBinding = allocatedPerRead( payload, MapBoundWeather.class );
+        streaming = allocatedPerRead( payload, Weather.class );
+        mapBinding = allocatedPerRead( payload, MapBoundWeather.class );
+
+        logger.info( "Allocated per response: streaming deserializer {} bytes, map binding {} bytes",
+                streaming, mapBinding );
+
+        assertThat( streaming ).isLessThan( mapBinding );
+    }
+
+    private long allocatedPerRead(byte[] payload, Class<? extends WeatherResponse> type) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long before = threads.getThreadAllocatedBytes( threadId );
+        for (int i = 0; i < ITERATIONS; i++) {
+            objectMapper.readValue( payload, type );
+        }
+        return (threads.getThreadAllocatedBytes( threadId ) - before) / ITERATIONS;
+    }
+
+    private byte[] payload() throws IOException {
+        String json = StreamUtils.copyToString( getClass().getResourceAsStream( "/weather.json" ), StandardCharsets.UTF_8 );
+        return json.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * The previous binding: the wind object bound into a map, every other field walked by Jackson.
+     */
+    public static class MapBoundWeather extends WeatherResponse {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
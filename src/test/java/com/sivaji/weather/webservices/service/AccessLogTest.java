@@ -0,0 +1,149 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccessLogTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    @Test
+    public void whenRecorded_thenDrainWritesEachRecordOnce() {
+        AccessLog accessLog = new AccessLog( 16, 1, 1, 0 );
+
+        accessLog.record( ZIP_CODE, AccessLog.Outcome.HIT, System.nanoTime(), 0 );
+        accessLog.record( ZIP_CODE, AccessLog.Outcome.MISS, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos( 120 ) );
+
+        assertThat( accessLog.drain() ).isEqualTo( 2 );
+        assertThat( accessLog.drain() ).isEqualTo( 0 );
+        assertThat( accessLog.getWritten() ).isEqualTo( 2 );
+    }
+
+    @Test
+    public void whenCapacityIsNotAPowerOfTwo_thenItIsRoundedUp() {
+        assertThat( new AccessLog( 1, 1, 1, 0 ).getCapacity() ).isEqualTo( 1 );
+        assertThat( new AccessLog( 5, 1, 1, 0 ).getCapacity() ).isEqualTo( 8 );
+        assertThat( new AccessLog( 8, 1, 1, 0 ).getCapacity() ).isEqualTo( 8 );
+    }
+
+    @Test
+    public void whenHitsAreNotSampled_thenOnlyOtherOutcomesAreWritten() {
+        AccessLog accessLog = new AccessLog( 16, 0, 1, 0 );
+
+        for (int i = 0; i < 5; i++) {
+            accessLog.record( ZIP_CODE, AccessLog.Outcome.HIT, System.nanoTime(), 0 );
+        }
+        accessLog.record( ZIP_CODE, AccessLog.Outcome.ERROR, System.nanoTime(), 0 );
+
+        assertThat( accessLog.drain() ).isEqualTo( 1 );
+        assertThat( accessLog.getSampledOut() ).isEqualTo( 5 );
+    }
+
+    @Test
+    public void whenBufferIsFull_thenRecordsAreDroppedWithoutBlocking() {
+        AccessLog accessLog = new AccessLog( 4, 1, 1, 0 );
+
+        for (int i = 0; i < 10; i++) {
+            accessLog.record( ZIP_CODE, AccessLog.Outcome.MISS, System.nanoTime(), 0 );
+        }
+
+        assertThat( accessLog.getDropped() ).isEqualTo( 6 );
+        assertThat( accessLog.drain() ).isEqualTo( 4 );
+
+        // Drained slots are reused
+        accessLog.record( ZIP_CODE, AccessLog.Outcome.MISS, System.nanoTime(), 0 );
+        assertThat( accessLog.drain() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenRecordedConcurrently_thenEveryRecordIsWrittenOrDropped() throws Exception {
+        final AccessLog accessLog = new AccessLog( 256, 1, 1, 0 );
+        final int threads = 4;
+        final int perThread = 10000;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            List<Future<?>> producers = new ArrayList<Future<?>>();
+            for (int t = 0; t < threads; t++) {
+                producers.add( executor.submit( () -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        accessLog.record( ZIP_CODE, AccessLog.Outcome.HIT, System.nanoTime(), 0 );
+                    }
+                    return null;
+                } ) );
+            }
+
+            start.countDown();
+            long drained = 0;
+            while (!allDone( producers )) {
+                drained += accessLog.drain();
+            }
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+            drained += accessLog.drain();
+
+            assertThat( drained + accessLog.getDropped() ).isEqualTo( threads * perThread );
+            assertThat( accessLog.getWritten() ).isEqualTo( drained );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenServiceAnswers_thenHitsAndMissesAreLogged() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getAccessLog().setFlushIntervalMs( 0 );
+        serviceProperties.getAccessLog().setHitSampleRate( 0 );
+        WeatherService weatherService = new WeatherService(
+                new RestTemplateBuilder().requestFactory( new StubClientHttpRequestFactory() ), serviceProperties );
+        weatherService.clearCache();
+        try {
+            weatherService.getWindByZipCode( ZIP_CODE );
+            weatherService.getWindByZipCode( ZIP_CODE );
+
+            AccessLog accessLog = weatherService.getAccessLog();
+            assertThat( accessLog.drain() ).isEqualTo( 1 );
+            assertThat( accessLog.getSampledOut() ).isEqualTo( 1 );
+        } finally {
+            weatherService.clearCache();
+            weatherService.shutdown();
+        }
+    }
+
+    @Test
+    public void whenDisabled_thenServiceHasNoAccessLog() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getAccessLog().setEnabled( false );
+        WeatherService weatherService = new WeatherService(
+                new RestTemplateBuilder().requestFactory( new StubClientHttpRequestFactory() ), serviceProperties );
+        try {
+            assertThat( weatherService.getAccessLog() ).isNull();
+        } finally {
+            weatherService.shutdown();
+        }
+    }
+
+    private static boolean allDone(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
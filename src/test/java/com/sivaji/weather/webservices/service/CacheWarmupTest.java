@@ -0,0 +1,87 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheWarmupTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherServiceProperties serviceProperties;
+    private WeatherService weatherService;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.shutdown();
+        cache.removeAll();
+    }
+
+    @Test
+    public void whenWarmupIsDisabled_thenInstanceIsImmediatelyUp() {
+        CacheWarmup warmup = new CacheWarmup( weatherService, serviceProperties );
+
+        assertThat( new CacheWarmupHealthIndicator( warmup ).health().getStatus() ).isEqualTo( Status.UP );
+    }
+
+    @Test
+    public void whenWarmupRuns_thenInstanceIsOutOfServiceUntilEveryZipCodeIsCached() throws Exception {
+        File zipCodesFile = folder.newFile( "zip-codes.txt" );
+        Files.write( zipCodesFile.toPath(), Arrays.asList( "# top zip codes", "10001", "", "60601", "94043" ),
+                StandardCharsets.UTF_8 );
+
+        WeatherServiceProperties.Warmup warmupProperties = serviceProperties.getWarmup();
+        warmupProperties.setEnabled( true );
+        warmupProperties.setZipCodes( Arrays.asList( "08831", "94043", "invalid" ) );
+        warmupProperties.setZipCodesFile( zipCodesFile.getPath() );
+        warmupProperties.setParallelism( 2 );
+        warmupProperties.setPermitsPerSecond( 20 );
+        upstream.setLatencyMillis( 50 );
+
+        CacheWarmup warmup = new CacheWarmup( weatherService, serviceProperties );
+        CacheWarmupHealthIndicator health = new CacheWarmupHealthIndicator( warmup );
+        assertThat( health.health().getStatus() ).isEqualTo( Status.OUT_OF_SERVICE );
+
+        long start = System.nanoTime();
+        warmup.start().get( 10, TimeUnit.SECONDS );
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        assertThat( health.health().getStatus() ).isEqualTo( Status.UP );
+        assertThat( warmup.getTotal() ).isEqualTo( 5 );
+        assertThat( warmup.getSucceeded() ).isEqualTo( 4 );
+        assertThat( warmup.getFailed() ).isEqualTo( 1 );
+        assertThat( cache.getKeys() ).containsOnly( "08831", "94043", "10001", "60601" );
+        // Five permits at 20 per second are spread over at least 200 ms
+        assertThat( elapsedMillis ).isGreaterThanOrEqualTo( 190 );
+        warmup.shutdown();
+    }
+}
@@ -0,0 +1,173 @@
+package com.sivaji.weather.webservices.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivaji.weather.webservices.model.CacheInvalidation;
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Runs this instance against stub peers on localhost, which record the removals they receive
+ * and serve one cached wind entry.
+ */
+public class ClusterSyncTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<CacheInvalidation> received = new LinkedBlockingQueue<CacheInvalidation>();
+    private HttpServer peer;
+    private String unreachablePeer;
+    private ClusterSync clusterSync;
+    private WeatherService weatherService;
+    private StubClientHttpRequestFactory upstream;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() throws IOException {
+        peer = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        peer.createContext( "/internal/cache/invalidations", exchange -> {
+            if ("secret".equals( exchange.getRequestHeaders().getFirst( ClusterSync.TOKEN_HEADER ) )) {
+                received.add( objectMapper.readValue( exchange.getRequestBody(), CacheInvalidation.class ) );
+            }
+            exchange.sendResponseHeaders( 204, -1 );
+            exchange.close();
+        } );
+        peer.createContext( "/internal/cache/wind/", exchange -> {
+            if (!"secret".equals( exchange.getRequestHeaders().getFirst( ClusterSync.TOKEN_HEADER ) )) {
+                exchange.sendResponseHeaders( 403, -1 );
+                exchange.close();
+            } else if (exchange.getRequestURI().getPath().endsWith( ZIP_CODE )) {
+                respond( exchange, "{\"name\":\"Peer View\",\"windSpeed\":3.2,\"windDirection\":180.0,"
+                        + "\"insertTime\":" + System.currentTimeMillis() + ",\"ttlMillis\":600000}" );
+            } else {
+                exchange.sendResponseHeaders( 404, -1 );
+                exchange.close();
+            }
+        } );
+        peer.start();
+
+        // A port nobody listens on
+        try (ServerSocket socket = new ServerSocket( 0 )) {
+            unreachablePeer = "http://127.0.0.1:" + socket.getLocalPort();
+        }
+
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCluster().setEnabled( true );
+        serviceProperties.getCluster().setPeers( Arrays.asList( unreachablePeer,
+                "http://127.0.0.1:" + peer.getAddress().getPort() + "/" ) );
+        serviceProperties.getCluster().setSyncIntervalMs( 20 );
+        serviceProperties.getCluster().setPeerFetch( true );
+        serviceProperties.getCluster().setToken( "secret" );
+        clusterSync = new ClusterSync( serviceProperties );
+        upstream = new StubClientHttpRequestFactory();
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties,
+                clusterSync );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.shutdown();
+        clusterSync.shutdown();
+        peer.stop( 0 );
+        cache.removeAll();
+    }
+
+    @Test
+    public void whenCacheIsCleared_thenPeersReceiveTheRemoval() throws InterruptedException {
+        cache.add( ZIP_CODE, new Weather() );
+        cache.remove( ZIP_CODE );
+        weatherService.clearCache();
+
+        CacheInvalidation invalidation = received.poll( 5, TimeUnit.SECONDS );
+        assertThat( invalidation ).isNotNull();
+        assertThat( invalidation.getRemoveAll() ).contains( CacheManager.CACHE_NAME );
+        // Covered by the clear of the whole cache
+        assertThat( invalidation.getRemove() ).doesNotContainKey( CacheManager.CACHE_NAME );
+        assertThat( clusterSync.getSendFailureCount() ).isGreaterThan( 0 );
+    }
+
+    @Test
+    public void whenRemovalIsReceived_thenItIsAppliedWithoutBeingSentBack() throws InterruptedException {
+        cache.add( ZIP_CODE, new Weather() );
+        CacheInvalidation invalidation = new CacheInvalidation();
+        invalidation.getRemove().put( CacheManager.CACHE_NAME, Arrays.asList( ZIP_CODE ) );
+
+        CacheManager.getInstance().apply( invalidation );
+
+        assertThat( cache.isKeyInCache( ZIP_CODE ) ).isFalse();
+        assertThat( received.poll( 200, TimeUnit.MILLISECONDS ) ).isNull();
+    }
+
+    @Test
+    public void whenPeerHasTheEntry_thenUpstreamIsNotCalled() {
+        cache.removeAll();
+
+        Weather weather = weatherService.getWindByZipCode( ZIP_CODE );
+
+        assertThat( weather.getName() ).isEqualTo( "Peer View" );
+        assertThat( cache.getEntry( ZIP_CODE ).getTtlMillis() ).isEqualTo( 600000 );
+        assertThat( upstream.getCalls() ).isEqualTo( 0 );
+        assertThat( weatherService.getMetrics().getPeerHits() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenNoPeerHasTheEntry_thenUpstreamIsCalled() {
+        assertThat( weatherService.getWindByZipCode( "08831" ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenEnabledWithoutAToken_thenStartupFails() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getCluster().setEnabled( true );
+        serviceProperties.getCluster().setPeers( Arrays.asList( unreachablePeer ) );
+
+        try {
+            new ClusterSync( serviceProperties );
+            fail( "Expected cluster sync without a token to be refused" );
+        } catch (IllegalStateException expected) {
+            assertThat( expected.getMessage() ).contains( "token" );
+        }
+    }
+
+    @Test
+    public void whenTokenDiffers_thenTheCallIsNotAuthorized() {
+        assertThat( clusterSync.isAuthorized( "secret" ) ).isTrue();
+        assertThat( clusterSync.isAuthorized( "secreT" ) ).isFalse();
+        assertThat( clusterSync.isAuthorized( "" ) ).isFalse();
+        assertThat( clusterSync.isAuthorized( null ) ).isFalse();
+        assertThat( new ClusterSync( new WeatherServiceProperties() ).isAuthorized( null ) ).isFalse();
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes( StandardCharsets.UTF_8 );
+        exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+        exchange.sendResponseHeaders( 200, body.length );
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write( body );
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sivaji.weather.webservices.service;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves src/test/resources/weather.json in place of OpenWeatherMap, with optional latency
+ * and failures, and counts the upstream calls made.
+ */
+class StubClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private volatile byte[] body;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile HttpStatus status = HttpStatus.OK;
+    private volatile URI lastUri;
+
+    StubClientHttpRequestFactory() {
+        try (InputStream in = new ClassPathResource( "weather.json" ).getInputStream()) {
+            this.body = StreamUtils.copyToByteArray( in );
+        } catch (IOException e) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    void setStatus(HttpStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Serve the payload with another observation time, in seconds since the epoch.
+     */
+    void setObservationTime(long observationTime) {
+        String json = new String( body, StandardCharsets.UTF_8 );
+        this.body = json.replaceFirst( "\"dt\":\\d+", "\"dt\":" + observationTime ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    URI getLastUri() {
+        return lastUri;
+    }
+
+    /**
+     * The highest number of upstream calls that were in progress at the same time.
+     */
+    int getMaxConcurrentCalls() {
+        return maxActive.get();
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        lastUri = uri;
+        return new MockClientHttpRequest( httpMethod, uri ) {
+            @Override
+            protected ClientHttpResponse executeInternal() throws IOException {
+                calls.incrementAndGet();
+                int now = active.incrementAndGet();
+                maxActive.accumulateAndGet( now, Math::max );
+                try {
+                    if (latencyMillis > 0) {
+                        Thread.sleep( latencyMillis );
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException( "Interrupted" );
+                } finally {
+                    active.decrementAndGet();
+                }
+                MockClientHttpResponse response = new MockClientHttpResponse( body, status );
+                response.getHeaders().setContentType( MediaType.APPLICATION_JSON );
+                return response;
+            }
+        };
+    }
+}
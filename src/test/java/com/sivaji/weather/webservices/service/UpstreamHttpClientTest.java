@@ -0,0 +1,161 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Exercises the pooled upstream client against a local HTTP server that can be slow, trickle
+ * its response or drop the connection.
+ */
+public class UpstreamHttpClientTest {
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile boolean gzipped;
+    private UpstreamHttpClient upstreamHttpClient;
+    private RestTemplate restTemplate;
+
+    @Before
+    public void setUp() throws IOException {
+        final byte[] body = StreamUtils.copyToByteArray( getClass().getResourceAsStream( "/weather.json" ) );
+
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.setExecutor( Executors.newCachedThreadPool() );
+        server.createContext( "/weather", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add( exchange.getRemoteAddress().getPort() );
+                exchange.getResponseHeaders().add( "Content-Type", "application/json" );
+                if (String.valueOf( exchange.getRequestHeaders().getFirst( "Accept-Encoding" ) ).contains( "gzip" )) {
+                    gzipped = true;
+                    exchange.getResponseHeaders().add( "Content-Encoding", "gzip" );
+                    exchange.sendResponseHeaders( 200, 0 );
+                    try (OutputStream out = new GZIPOutputStream( exchange.getResponseBody() )) {
+                        out.write( body );
+                    }
+                } else {
+                    exchange.sendResponseHeaders( 200, body.length );
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write( body );
+                    }
+                }
+            }
+        } );
+        server.createContext( "/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                sleep( 2000 );
+                exchange.sendResponseHeaders( 200, -1 );
+                exchange.close();
+            }
+        } );
+        server.createContext( "/trickle", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders( 200, 0 );
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int i = 0; i < 20; i++) {
+                        out.write( ' ' );
+                        out.flush();
+                        sleep( 100 );
+                    }
+                }
+            }
+        } );
+        server.createContext( "/drop", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // Close the connection without answering
+                exchange.close();
+            }
+        } );
+        server.start();
+
+        WeatherServiceProperties.Upstream upstreamProperties = new WeatherServiceProperties().getUpstream();
+        upstreamProperties.setReadTimeoutMs( 500 );
+        upstreamProperties.setTotalTimeoutMs( 1000 );
+        upstreamHttpClient = new UpstreamHttpClient( upstreamProperties );
+        restTemplate = new RestTemplate( upstreamHttpClient.getRequestFactory() );
+    }
+
+    @After
+    public void tearDown() {
+        upstreamHttpClient.close();
+        server.stop( 0 );
+    }
+
+    @Test
+    public void whenCallsAreSequential_thenOneCompressedKeepAliveConnectionIsReused() {
+        for (int i = 0; i < 20; i++) {
+            Weather weather = restTemplate.getForObject( url( "/weather" ), Weather.class );
+            assertThat( weather.getName() ).isEqualTo( "Mountain View" );
+        }
+
+        assertThat( gzipped ).isTrue();
+        assertThat( clientPorts ).hasSize( 1 );
+        assertThat( upstreamHttpClient.getLeasedConnections() ).isEqualTo( 0 );
+        assertThat( upstreamHttpClient.getAvailableConnections() ).isEqualTo( 1 );
+        assertThat( upstreamHttpClient.getScheduledAborts() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenResponseIsSlowerThanTheReadTimeout_thenCallFailsFast() {
+        assertFailsWithin( "/slow", 1500 );
+    }
+
+    @Test
+    public void whenResponseTricklesPastTheTotalTimeout_thenCallIsAborted() {
+        assertFailsWithin( "/trickle", 1800 );
+    }
+
+    @Test
+    public void whenConnectionIsDropped_thenCallFailsAndPoolKeepsWorking() {
+        assertFailsWithin( "/drop", 1000 );
+
+        assertThat( restTemplate.getForObject( url( "/weather" ), Weather.class ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( upstreamHttpClient.getLeasedConnections() ).isEqualTo( 0 );
+        assertThat( upstreamHttpClient.getScheduledAborts() ).isEqualTo( 0 );
+    }
+
+    private void assertFailsWithin(String path, long maxMillis) {
+        long start = System.currentTimeMillis();
+        try {
+            restTemplate.getForObject( url( path ), String.class );
+            fail( "Expected the call to " + path + " to fail" );
+        } catch (ResourceAccessException e) {
+            assertThat( System.currentTimeMillis() - start ).isLessThan( maxMillis );
+        }
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep( millis );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Simulates a small servlet container pool facing a slow upstream and compares how many
+ * concurrent misses the blocking and the asynchronous paths sustain.
+ */
+public class WeatherServiceAsyncLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( WeatherServiceAsyncLoadTest.class );
+
+    private static final int CONTAINER_THREADS = 8;
+    private static final int UPSTREAM_THREADS = 64;
+    private static final int REQUESTS = 256;
+    private static final long UPSTREAM_LATENCY_MILLIS = 100;
+
+    private WeatherService weatherService;
+    private ExecutorService containerPool;
+
+    @Before
+    public void setUp() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getUpstream().setThreads( UPSTREAM_THREADS );
+
+        StubClientHttpRequestFactory upstream = new StubClientHttpRequestFactory();
+        upstream.setLatencyMillis( UPSTREAM_LATENCY_MILLIS );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        containerPool = Executors.newFixedThreadPool( CONTAINER_THREADS );
+        weatherService.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        containerPool.shutdownNow();
+        weatherService.shutdown();
+        CacheManager.getInstance().getCache( CacheManager.CACHE_NAME ).removeAll();
+    }
+
+    @Test
+    public void whenUpstreamIsSlow_thenAsyncPathSustainsMoreConcurrentMisses() throws Exception {
+        long blockingMillis = runBlocking( 0 );
+        weatherService.clearCache();
+        long asyncMillis = runAsync( REQUESTS );
+
+        double blockingConcurrency = concurrency( blockingMillis );
+        double asyncConcurrency = concurrency( asyncMillis );
+        logger.info( "{} misses, {} container threads, {} ms upstream: blocking {} ms (~{} in flight), async {} ms (~{} in flight)",
+                REQUESTS, CONTAINER_THREADS, UPSTREAM_LATENCY_MILLIS, blockingMillis,
+                Math.round( blockingConcurrency ), asyncMillis, Math.round( asyncConcurrency ) );
+
+        assertThat( blockingConcurrency ).isLessThanOrEqualTo( CONTAINER_THREADS + 0.5 );
+        assertThat( asyncConcurrency ).isGreaterThan( 2 * CONTAINER_THREADS );
+    }
+
+    @Test
+    public void whenEntryIsCached_thenAsyncResultCompletesInline() {
+        weatherService.getWindByZipCode( "94043" );
+
+        CompletableFuture<Weather> result = weatherService.getWindByZipCodeAsync( "94043" );
+
+        assertThat( result.isDone() ).isTrue();
+        assertThat( result.join().getName() ).isEqualTo( "Mountain View" );
+    }
+
+    private long runBlocking(int offset) throws Exception {
+        long start = System.nanoTime();
+        List<Future<Weather>> results = new ArrayList<Future<Weather>>();
+        for (int i = 0; i < REQUESTS; i++) {
+            final String zipCode = zipCode( offset + i );
+            results.add( containerPool.submit( () -> weatherService.getWindByZipCode( zipCode ) ) );
+        }
+        for (Future<Weather> result : results) {
+            assertThat( result.get( 60, TimeUnit.SECONDS ).getName() ).isEqualTo( "Mountain View" );
+        }
+        return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+    }
+
+    private long runAsync(int offset) throws Exception {
+        long start = System.nanoTime();
+        List<CompletableFuture<Weather>> results = new ArrayList<CompletableFuture<Weather>>();
+        for (int i = 0; i < REQUESTS; i++) {
+            final String zipCode = zipCode( offset + i );
+            // The container thread only starts the request, like a controller returning a CompletableFuture
+            results.add( CompletableFuture.supplyAsync( () -> weatherService.getWindByZipCodeAsync( zipCode ), containerPool )
+                    .thenCompose( future -> future ) );
+        }
+        for (CompletableFuture<Weather> result : results) {
+            assertThat( result.get( 60, TimeUnit.SECONDS ).getName() ).isEqualTo( "Mountain View" );
+        }
+        return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+    }
+
+    /**
+     * Average number of requests in flight, from Little's law.
+     */
+    private static double concurrency(long elapsedMillis) {
+        return REQUESTS * UPSTREAM_LATENCY_MILLIS / (double) elapsedMillis;
+    }
+
+    private static String zipCode(int i) {
+        return String.format( "%05d", i );
+    }
+}
@@ -0,0 +1,87 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.exception.InvalidRequestException;
+import com.sivaji.weather.webservices.model.BatchWindResult;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeatherServiceBatchTest {
+
+    private static final int MAX_CONCURRENCY = 4;
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+
+    @Before
+    public void setUp() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getBatch().setMaxSize( 50 );
+        serviceProperties.getBatch().setMaxConcurrency( MAX_CONCURRENCY );
+
+        upstream = new StubClientHttpRequestFactory();
+        upstream.setLatencyMillis( 20 );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        weatherService.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+    }
+
+    @Test
+    public void whenZipCodesRepeat_thenTheyAreTrimmedAndDeduplicated() {
+        List<String> normalized = weatherService.normalizeZipCodes( Arrays.asList( " 08831", "08831 ", "", null, "94043" ) );
+
+        assertThat( normalized ).containsExactly( "08831", "94043" );
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void whenBatchIsTooLarge_thenItIsRejected() {
+        List<String> zipCodes = new ArrayList<String>();
+        for (int i = 0; i < 51; i++) {
+            zipCodes.add( String.format( "%05d", i ) );
+        }
+        weatherService.normalizeZipCodes( zipCodes );
+    }
+
+    @Test
+    public void whenBatchIsLookedUp_thenEveryZipIsAnsweredWithinConcurrencyLimit() throws Exception {
+        weatherService.getWindByZipCode( "00000" );
+        List<String> zipCodes = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            zipCodes.add( String.format( "%05d", i ) );
+        }
+        zipCodes.add( "ABC" );
+
+        final List<BatchWindResult> results = Collections.synchronizedList( new ArrayList<BatchWindResult>() );
+        weatherService.getWindByZipCodes( zipCodes, results::add ).get( 10, TimeUnit.SECONDS );
+
+        assertThat( results ).hasSize( 41 );
+        // The cached zip code is answered before any upstream call completes
+        assertThat( results.get( 0 ).getZipCode() ).isEqualTo( "00000" );
+        assertThat( upstream.getCalls() ).isEqualTo( 40 );
+        assertThat( upstream.getMaxConcurrentCalls() ).isLessThanOrEqualTo( MAX_CONCURRENCY );
+
+        for (BatchWindResult result : results) {
+            if ("ABC".equals( result.getZipCode() )) {
+                assertThat( result.getError() ).isEqualTo( "Invalid Zip Code" );
+            } else {
+                assertThat( result.getWeather().getName() ).isEqualTo( "Mountain View" );
+            }
+        }
+    }
+}
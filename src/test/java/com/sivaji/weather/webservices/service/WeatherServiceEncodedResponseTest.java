@@ -0,0 +1,79 @@
+package com.sivaji.weather.webservices.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sivaji.weather.webservices.model.EncodedWeather;
+import com.sivaji.weather.webservices.utils.CacheEntry;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeatherServiceEncodedResponseTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+    }
+
+    @Test
+    public void whenEncodedResponsesAreEnabled_thenHitsShareTheEncodingOfTheEntry() throws Exception {
+        weatherService = newWeatherService( true );
+
+        CacheEntry<EncodedWeather> first = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join();
+        CacheEntry<EncodedWeather> second = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join();
+
+        assertThat( second.getValue() ).isSameAs( first.getValue() );
+        assertThat( first.getValue().getJson() )
+                .isEqualTo( objectMapper.writeValueAsBytes( weatherService.getWindByZipCode( ZIP_CODE ) ) );
+        CacheEntry<?> entry = weatherService.getCachedEntry( ZIP_CODE );
+        assertThat( first.getInsertTime() ).isEqualTo( entry.getInsertTime() );
+        assertThat( first.getTtlMillis() ).isEqualTo( entry.getTtlMillis() );
+        assertThat( first.getValue().getEtag() ).isEqualTo( EncodedWeather.etagOf( entry.getInsertTime() ) );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenTheEntryIsReplaced_thenTheWindIsEncodedAgain() throws Exception {
+        weatherService = newWeatherService( true );
+        EncodedWeather first = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join().getValue();
+
+        Thread.sleep( 5 );
+        weatherService.getCache().remove( ZIP_CODE );
+        EncodedWeather second = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join().getValue();
+
+        assertThat( second ).isNotSameAs( first );
+        assertThat( second.getEtag() ).isNotEqualTo( first.getEtag() );
+        assertThat( upstream.getCalls() ).isEqualTo( 2 );
+    }
+
+    @Test
+    public void whenEncodedResponsesAreDisabled_thenEveryRequestIsEncoded() {
+        weatherService = newWeatherService( false );
+
+        EncodedWeather first = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join().getValue();
+        EncodedWeather second = weatherService.getEncodedWindByZipCodeAsync( ZIP_CODE ).join().getValue();
+
+        assertThat( weatherService.isEncodingResponses() ).isFalse();
+        assertThat( second ).isNotSameAs( first );
+        assertThat( second.getJson() ).isEqualTo( first.getJson() );
+    }
+
+    private WeatherService newWeatherService(boolean encodedResponses) {
+        upstream = new StubClientHttpRequestFactory();
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCache().setEncodedResponses( encodedResponses );
+        WeatherService service = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        service.clearCache();
+        return service;
+    }
+}
@@ -0,0 +1,156 @@
+package com.sivaji.weather.webservices.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares upstream calls with and without geo cells on a synthetic US-like layout: zip codes
+ * clustered around towns, requested with a Zipf distribution so a few zip codes are hot.
+ */
+public class WeatherServiceGeoCellTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( WeatherServiceGeoCellTest.class );
+
+    private static final int TOWNS = 50;
+    private static final int ZIP_CODES_PER_TOWN = 40;
+    private static final double TOWN_RADIUS_DEGREES = 0.05;
+    private static final int REQUESTS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random( 42 );
+    private final List<String> zipCodes = new ArrayList<String>();
+    private File centroids;
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+
+    @Before
+    public void setUp() throws IOException {
+        centroids = folder.newFile( "centroids.csv" );
+        try (PrintWriter out = new PrintWriter( centroids, "UTF-8" )) {
+            out.println( "zip,lat,lon" );
+            for (int town = 0; town < TOWNS; town++) {
+                double latitude = 30 + random.nextDouble() * 15;
+                double longitude = -120 + random.nextDouble() * 45;
+                for (int i = 0; i < ZIP_CODES_PER_TOWN; i++) {
+                    String zipCode = String.format( "%05d", 10000 + town * 100 + i );
+                    zipCodes.add( zipCode );
+                    out.println( String.format( Locale.ROOT, "%s,%.4f,%.4f", zipCode,
+                            latitude + (random.nextDouble() * 2 - 1) * TOWN_RADIUS_DEGREES,
+                            longitude + (random.nextDouble() * 2 - 1) * TOWN_RADIUS_DEGREES ) );
+                }
+            }
+        }
+        // Popularity does not follow the numbering
+        Collections.shuffle( zipCodes, random );
+        upstream = new StubClientHttpRequestFactory();
+        CacheManager.getInstance().getCache( CacheManager.CACHE_NAME ).removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        if (weatherService != null) {
+            weatherService.shutdown();
+        }
+        CacheManager.getInstance().getCache( CacheManager.CACHE_NAME ).removeAll();
+    }
+
+    @Test
+    public void whenZipCodesShareACell_thenOneUpstreamCallServesThemAll() {
+        weatherService = newWeatherService( true );
+        List<String> sorted = new ArrayList<String>( zipCodes );
+        Collections.sort( sorted );
+
+        weatherService.getWindByZipCode( sorted.get( 0 ) );
+        assertThat( upstream.getLastUri().getQuery() ).contains( "lat=" ).contains( "lon=" );
+
+        // Zip codes of one town fall into at most four cells
+        for (String zipCode : sorted.subList( 0, ZIP_CODES_PER_TOWN )) {
+            weatherService.getWindByZipCode( zipCode );
+        }
+        assertThat( upstream.getCalls() ).isLessThanOrEqualTo( 4 );
+    }
+
+    @Test
+    public void whenZipCodeIsNotIndexed_thenItIsFetchedByZipCode() {
+        weatherService = newWeatherService( true );
+
+        weatherService.getWindByZipCode( "94043" );
+
+        assertThat( upstream.getLastUri().getQuery() ).contains( "zip=94043" );
+    }
+
+    @Test
+    public void whenRequestsFollowAZipfDistribution_thenGeoCellsReduceUpstreamCalls() {
+        List<String> requests = zipfRequests();
+
+        weatherService = newWeatherService( false );
+        int zipCodeCalls = replay( requests );
+        weatherService.shutdown();
+        CacheManager.getInstance().getCache( CacheManager.CACHE_NAME ).removeAll();
+
+        weatherService = newWeatherService( true );
+        int cellCalls = replay( requests ) - zipCodeCalls;
+
+        logger.info( "{} requests over {} zip codes: {} upstream calls per zip code, {} per {} degree cell ({}x fewer)",
+                REQUESTS, zipCodes.size(), zipCodeCalls, cellCalls, 0.1,
+                String.format( Locale.ROOT, "%.1f", zipCodeCalls / (double) cellCalls ) );
+        assertThat( cellCalls * 3 ).isLessThan( zipCodeCalls );
+    }
+
+    private int replay(List<String> requests) {
+        for (String zipCode : requests) {
+            weatherService.getWindByZipCode( zipCode );
+        }
+        return upstream.getCalls();
+    }
+
+    /**
+     * Zip codes drawn with probability proportional to 1 / rank.
+     */
+    private List<String> zipfRequests() {
+        double[] cumulative = new double[zipCodes.size()];
+        double sum = 0;
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+
+        List<String> requests = new ArrayList<String>( REQUESTS );
+        for (int i = 0; i < REQUESTS; i++) {
+            double draw = random.nextDouble() * sum;
+            int rank = Arrays.binarySearch( cumulative, draw );
+            requests.add( zipCodes.get( rank < 0 ? -rank - 1 : rank ) );
+        }
+        return requests;
+    }
+
+    private WeatherService newWeatherService(boolean geo) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getGeo().setEnabled( geo );
+        serviceProperties.getGeo().setCentroidsFile( centroids.getPath() );
+        return new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+    }
+}
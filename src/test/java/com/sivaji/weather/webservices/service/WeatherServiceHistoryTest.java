@@ -0,0 +1,120 @@
+package com.sivaji.weather.webservices.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+
+import com.sivaji.weather.webservices.exception.InvalidRequestException;
+import com.sivaji.weather.webservices.model.WindObservation;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WeatherServiceHistoryTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final StubClientHttpRequestFactory upstream = new StubClientHttpRequestFactory();
+    private WeatherService weatherService;
+
+    @After
+    public void tearDown() {
+        if (weatherService != null) {
+            weatherService.clearCache();
+            weatherService.shutdown();
+        }
+    }
+
+    @Test
+    public void whenWindIsFetched_thenEachObservationIsKeptOnceInTheHistory() {
+        weatherService = newWeatherService( true );
+        long observed = TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis() ) - 20 * 60;
+
+        upstream.setObservationTime( observed );
+        weatherService.getWindByZipCode( ZIP_CODE );
+        weatherService.clearCache();
+        // Refetching the same observation adds nothing
+        weatherService.getWindByZipCode( ZIP_CODE );
+        weatherService.clearCache();
+        upstream.setObservationTime( observed + 10 * 60 );
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        List<WindObservation> history = weatherService.getWindHistory( ZIP_CODE,
+                Instant.ofEpochSecond( observed - 60 ), Instant.now() );
+        assertThat( history ).extracting( WindObservation::getTime )
+                .containsExactly( Instant.ofEpochSecond( observed ), Instant.ofEpochSecond( observed + 10 * 60 ) );
+        assertThat( weatherService.getWindHistory( ZIP_CODE, Instant.ofEpochSecond( observed + 60 ), Instant.now() ) )
+                .hasSize( 1 );
+    }
+
+    @Test
+    public void whenRangeIsReversed_thenItIsRejected() {
+        weatherService = newWeatherService( true );
+        Instant now = Instant.now();
+
+        assertThatThrownBy( () -> weatherService.getWindHistory( ZIP_CODE, now, now.minusSeconds( 1 ) ) )
+                .isInstanceOf( InvalidRequestException.class );
+    }
+
+    @Test
+    public void whenHistoryIsDisabled_thenQueriesAreRejected() {
+        weatherService = newWeatherService( false );
+        Instant now = Instant.now();
+
+        assertThatThrownBy( () -> weatherService.getWindHistory( ZIP_CODE, now.minusSeconds( 60 ), now ) )
+                .isInstanceOf( InvalidRequestException.class );
+    }
+
+    @Test
+    public void whenSegmentSizeIsNotMappable_thenHistoryIsNotKept() {
+        WeatherServiceProperties serviceProperties = newServiceProperties( true );
+        serviceProperties.getHistory().setSegmentSizeMb( 2048 );
+        weatherService = newWeatherService( serviceProperties );
+
+        assertThat( weatherService.getWindHistoryStore() ).isNull();
+    }
+
+    @Test
+    public void whenSegmentSizeIsOutOfRange_thenThePropertiesAreInvalid() {
+        WeatherServiceProperties serviceProperties = newServiceProperties( true );
+
+        for (int segmentSizeMb : new int[] { 0, 2048 }) {
+            serviceProperties.getHistory().setSegmentSizeMb( segmentSizeMb );
+            assertThat( Validation.buildDefaultValidatorFactory().getValidator().validate( serviceProperties ) )
+                    .extracting( ConstraintViolation::getPropertyPath ).extracting( Object::toString )
+                    .containsExactly( "history.segmentSizeMb" );
+        }
+        serviceProperties.getHistory().setSegmentSizeMb( 2047 );
+        assertThat( Validation.buildDefaultValidatorFactory().getValidator().validate( serviceProperties ) ).isEmpty();
+    }
+
+    private WeatherService newWeatherService(boolean history) {
+        return newWeatherService( newServiceProperties( history ) );
+    }
+
+    private WeatherServiceProperties newServiceProperties(boolean history) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getHistory().setEnabled( history );
+        serviceProperties.getHistory().setPath( folder.getRoot().getPath() );
+        return serviceProperties;
+    }
+
+    private WeatherService newWeatherService(WeatherServiceProperties serviceProperties) {
+        WeatherService service = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        service.clearCache();
+        return service;
+    }
+}
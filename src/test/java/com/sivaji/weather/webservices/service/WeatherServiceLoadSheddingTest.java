@@ -0,0 +1,182 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sivaji.weather.webservices.exception.UpstreamUnavailableException;
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Injects latency spikes and failures into the stub upstream and checks that calls over the
+ * limit are shed quickly instead of piling up blocked threads.
+ */
+public class WeatherServiceLoadSheddingTest {
+
+    private static final String ZIP_CODE = "94043";
+    private static final int LIMIT = 4;
+    private static final int REQUESTS = 16;
+    private static final long SPIKE_MILLIS = 500;
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+    private Cache<Weather> cache;
+    private ExecutorService containerPool;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        containerPool = Executors.newFixedThreadPool( REQUESTS );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        containerPool.shutdownNow();
+        if (weatherService != null) {
+            weatherService.shutdown();
+        }
+        cache.removeAll();
+        cache.setStaleGraceMinutes( 0 );
+    }
+
+    @Test
+    public void whenUpstreamLatencySpikes_thenCallsOverTheLimitAreRejectedFast() throws Exception {
+        WeatherServiceProperties serviceProperties = properties();
+        serviceProperties.getLimiter().setEnabled( true );
+        serviceProperties.getLimiter().setInitialLimit( LIMIT );
+        serviceProperties.getLimiter().setMaxLimit( LIMIT );
+        weatherService = newWeatherService( serviceProperties );
+        upstream.setLatencyMillis( SPIKE_MILLIS );
+
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (int i = 0; i < REQUESTS; i++) {
+            final String zipCode = String.format( "%05d", i );
+            results.add( containerPool.submit( () -> rejectionMillis( zipCode ) ) );
+        }
+
+        int rejected = 0;
+        for (Future<Long> result : results) {
+            long millis = result.get( 10, TimeUnit.SECONDS );
+            if (millis >= 0) {
+                assertThat( millis ).isLessThan( SPIKE_MILLIS / 2 );
+                rejected++;
+            }
+        }
+
+        assertThat( rejected ).isGreaterThanOrEqualTo( REQUESTS - LIMIT );
+        assertThat( upstream.getMaxConcurrentCalls() ).isLessThanOrEqualTo( LIMIT );
+        assertThat( weatherService.getUpstreamLimiter().getInFlight() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenUpstreamLatencySpikes_thenTheLimitShrinks() {
+        WeatherServiceProperties serviceProperties = properties();
+        serviceProperties.getLimiter().setEnabled( true );
+        weatherService = newWeatherService( serviceProperties );
+        int initialLimit = weatherService.getUpstreamLimiter().getLimit();
+
+        upstream.setLatencyMillis( 20 );
+        for (int i = 0; i < 5; i++) {
+            weatherService.getWindByZipCode( String.format( "%05d", i ) );
+        }
+        upstream.setLatencyMillis( 200 );
+        for (int i = 5; i < 8; i++) {
+            weatherService.getWindByZipCode( String.format( "%05d", i ) );
+        }
+
+        assertThat( weatherService.getUpstreamLimiter().getLimit() ).isLessThan( initialLimit );
+    }
+
+    @Test
+    public void whenUpstreamKeepsFailing_thenTheCircuitOpensAndCallsFailFast() {
+        WeatherServiceProperties serviceProperties = properties();
+        serviceProperties.getCircuitBreaker().setEnabled( true );
+        serviceProperties.getCircuitBreaker().setFailureThreshold( 3 );
+        weatherService = newWeatherService( serviceProperties );
+        upstream.setStatus( HttpStatus.SERVICE_UNAVAILABLE );
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                weatherService.getWindByZipCode( ZIP_CODE );
+                fail( "Expected the upstream failure to propagate" );
+            } catch (HttpServerErrorException expected) {
+            }
+        }
+
+        try {
+            weatherService.getWindByZipCode( ZIP_CODE );
+            fail( "Expected the open circuit to reject the call" );
+        } catch (UpstreamUnavailableException expected) {
+        }
+        assertThat( upstream.getCalls() ).isEqualTo( 3 );
+    }
+
+    @Test
+    public void whenLimitIsReached_thenStaleEntryIsServed() throws Exception {
+        WeatherServiceProperties serviceProperties = properties();
+        serviceProperties.getLimiter().setEnabled( true );
+        serviceProperties.getLimiter().setInitialLimit( 1 );
+        serviceProperties.getLimiter().setMinLimit( 1 );
+        serviceProperties.getLimiter().setMaxLimit( 1 );
+        serviceProperties.getRefreshAhead().setEnabled( true );
+        serviceProperties.getRefreshAhead().setStaleGraceMinutes( 30 );
+        weatherService = newWeatherService( serviceProperties );
+        upstream.setLatencyMillis( SPIKE_MILLIS );
+
+        // Take the only slot with a slow miss
+        Future<Weather> slow = containerPool.submit( () -> weatherService.getWindByZipCode( "08831" ) );
+        while (weatherService.getUpstreamLimiter().getInFlight() == 0) {
+            Thread.sleep( 5 );
+        }
+
+        Weather stale = new Weather();
+        stale.setName( "Stale" );
+        cache.add( ZIP_CODE, stale, -1 );
+        long start = System.nanoTime();
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Stale" );
+        assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) ).isLessThan( SPIKE_MILLIS / 2 );
+        assertThat( weatherService.getMetrics().getStale() ).isEqualTo( 1 );
+
+        slow.get( 10, TimeUnit.SECONDS );
+    }
+
+    /**
+     * How long the lookup took to be rejected, -1 when it was answered.
+     */
+    private long rejectionMillis(String zipCode) {
+        long start = System.nanoTime();
+        try {
+            weatherService.getWindByZipCode( zipCode );
+            return -1;
+        } catch (UpstreamUnavailableException e) {
+            return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+        }
+    }
+
+    private static WeatherServiceProperties properties() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        return serviceProperties;
+    }
+
+    private WeatherService newWeatherService(WeatherServiceProperties serviceProperties) {
+        return new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+    }
+}
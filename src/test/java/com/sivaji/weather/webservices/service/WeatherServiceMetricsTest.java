@@ -0,0 +1,85 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.Map;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WeatherServiceMetricsTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.shutdown();
+        cache.removeAll();
+    }
+
+    @Test
+    public void whenZipCodeIsLookedUpTwice_thenOneMissAndOneHitAreRecorded() {
+        weatherService.getWindByZipCode( ZIP_CODE );
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        WeatherServiceMetrics metrics = weatherService.getMetrics();
+        assertThat( metrics.getMisses() ).isEqualTo( 1 );
+        assertThat( metrics.getHits() ).isEqualTo( 1 );
+        assertThat( metrics.getHitRatio() ).isEqualTo( 0.5 );
+        assertThat( metrics.getRequestLatency().getCount() ).isEqualTo( 2 );
+        assertThat( metrics.getUpstreamLatency().getCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenUpstreamFails_thenErrorsAreRecorded() {
+        upstream.setStatus( HttpStatus.SERVICE_UNAVAILABLE );
+        try {
+            weatherService.getWindByZipCode( ZIP_CODE );
+            fail( "Expected the upstream failure to propagate" );
+        } catch (RuntimeException expected) {
+        }
+
+        WeatherServiceMetrics metrics = weatherService.getMetrics();
+        assertThat( metrics.getErrors() ).isEqualTo( 1 );
+        assertThat( metrics.getUpstreamErrors() ).isEqualTo( 1 );
+        assertThat( metrics.getUpstreamLatency().getCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void whenEndpointIsInvoked_thenCacheAndRequestMetricsAreReported() {
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        Map<String, Object> result = new WeatherMetricsEndpoint( weatherService ).invoke();
+
+        assertThat( (Map<String, Object>) result.get( "cache" ) ).containsEntry( "size", 1 );
+        Map<String, Object> requests = (Map<String, Object>) result.get( "requests" );
+        assertThat( requests ).containsEntry( "misses", 1L );
+        assertThat( (Map<String, Object>) requests.get( "latency" ) ).containsKeys( "p50", "p99", "p999", "max" );
+        Map<String, Object> upstream = (Map<String, Object>) result.get( "upstream" );
+        assertThat( upstream ).containsEntry( "calls", 1L );
+        assertThat( (Map<String, Object>) upstream.get( "coalescing" ) ).containsEntry( "loads", 1L );
+    }
+}
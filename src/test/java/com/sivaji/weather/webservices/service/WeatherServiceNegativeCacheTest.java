@@ -0,0 +1,84 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.concurrent.CompletionException;
+
+import com.sivaji.weather.webservices.exception.ZipCodeNotFoundException;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WeatherServiceNegativeCacheTest {
+
+    private static final String UNKNOWN_ZIP_CODE = "00000";
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        upstream.setStatus( HttpStatus.NOT_FOUND );
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        weatherService.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+    }
+
+    @Test
+    public void whenUpstreamDoesNotKnowTheZipCode_thenRepeatRequestsAreAnsweredLocally() {
+        for (int i = 0; i < 3; i++) {
+            try {
+                weatherService.getWindByZipCode( UNKNOWN_ZIP_CODE );
+                fail( "Expected the unknown zip code to be reported" );
+            } catch (ZipCodeNotFoundException expected) {
+                assertThat( expected.getMessage() ).isEqualTo( "Zip Code 00000 not found" );
+            }
+        }
+
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+        assertThat( weatherService.getMetrics().getNotFound() ).isEqualTo( 2 );
+        assertThat( weatherService.getNegativeCache().isKeyInCache( UNKNOWN_ZIP_CODE ) ).isTrue();
+    }
+
+    @Test
+    public void whenUnknownZipCodeIsRequestedAsynchronously_thenOnlyTheFirstRequestCallsUpstream() {
+        try {
+            weatherService.getWindByZipCodeAsync( UNKNOWN_ZIP_CODE ).join();
+            fail( "Expected the unknown zip code to be reported" );
+        } catch (CompletionException expected) {
+            assertThat( expected.getCause() ).isInstanceOf( ZipCodeNotFoundException.class );
+        }
+
+        try {
+            weatherService.getWindByZipCodeAsync( UNKNOWN_ZIP_CODE );
+            fail( "Expected the unknown zip code to be reported" );
+        } catch (ZipCodeNotFoundException expected) {
+        }
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenCacheIsCleared_thenUnknownZipCodesAreForgotten() {
+        try {
+            weatherService.getWindByZipCode( UNKNOWN_ZIP_CODE );
+        } catch (ZipCodeNotFoundException expected) {
+        }
+        weatherService.clearCache();
+        upstream.setStatus( HttpStatus.OK );
+
+        assertThat( weatherService.getWindByZipCode( UNKNOWN_ZIP_CODE ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( upstream.getCalls() ).isEqualTo( 2 );
+    }
+}
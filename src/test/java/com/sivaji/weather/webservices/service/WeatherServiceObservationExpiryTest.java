@@ -0,0 +1,79 @@
+package com.sivaji.weather.webservices.service;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.CacheEntry;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class WeatherServiceObservationExpiryTest {
+
+    private static final String ZIP_CODE = "94043";
+    private static final long PERIOD = TimeUnit.MINUTES.toMillis( 15 );
+
+    private final StubClientHttpRequestFactory upstream = new StubClientHttpRequestFactory();
+    private WeatherService weatherService;
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+    }
+
+    @Test
+    public void whenObservationAligned_thenWindIsKeptUntilTheNextPeriodsObservationIsDue() {
+        weatherService = newWeatherService( true );
+        long now = System.currentTimeMillis();
+        // At the start of a 15 minute period, at least 2 minutes ago
+        long observed = (now - TimeUnit.MINUTES.toMillis( 2 )) / PERIOD * PERIOD;
+        upstream.setObservationTime( TimeUnit.MILLISECONDS.toSeconds( observed ) );
+
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        // The next observation, 10 minutes later, is in the same period: kept until the one after
+        // is published, 20 + 5 minutes after this one
+        CacheEntry<Weather> entry = weatherService.getCachedEntry( ZIP_CODE );
+        assertThat( entry.getTtlMillis() ).isCloseTo( observed + TimeUnit.MINUTES.toMillis( 25 ) - now, within( 2000L ) );
+    }
+
+    @Test
+    public void whenObservationIsOverdue_thenRefetchesBackOff() {
+        weatherService = newWeatherService( true );
+        long now = System.currentTimeMillis();
+        // Due 25 minutes after, overdue by 5 to 20 minutes
+        long observed = now / PERIOD * PERIOD - 2 * PERIOD;
+        upstream.setObservationTime( TimeUnit.MILLISECONDS.toSeconds( observed ) );
+
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        // The 60 second first retry, plus as long again as it has been overdue
+        long overdue = now - observed - TimeUnit.MINUTES.toMillis( 25 );
+        assertThat( weatherService.getCachedEntry( ZIP_CODE ).getTtlMillis() )
+                .isCloseTo( TimeUnit.SECONDS.toMillis( 60 ) + overdue, within( 2000L ) );
+    }
+
+    @Test
+    public void whenNotObservationAligned_thenTheFixedTtlApplies() {
+        weatherService = newWeatherService( false );
+        upstream.setObservationTime( TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis() ) - 8 * 60 );
+
+        weatherService.getWindByZipCode( ZIP_CODE );
+
+        assertThat( weatherService.getCachedEntry( ZIP_CODE ).getTtlMillis() ).isEqualTo( TimeUnit.MINUTES.toMillis( 15 ) );
+    }
+
+    private WeatherService newWeatherService(boolean observationAligned) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCache().getExpiry().setObservationAligned( observationAligned );
+        WeatherService service = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        service.clearCache();
+        return service;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.exception.UpstreamUnavailableException;
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.CircuitBreaker;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WeatherServiceQuotaTest {
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getQuota().setEnabled( true );
+        serviceProperties.getQuota().setCallsPerMinute( 1 );
+        serviceProperties.getQuota().setBurst( 2 );
+        serviceProperties.getQuota().setMaxWaitMs( 100 );
+        serviceProperties.getQuota().setBackgroundReserve( 0.5 );
+        serviceProperties.getRefreshAhead().setEnabled( true );
+        serviceProperties.getRefreshAhead().setStaleGraceMinutes( 30 );
+        serviceProperties.getCircuitBreaker().setEnabled( true );
+        serviceProperties.getCircuitBreaker().setFailureThreshold( 1 );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.shutdown();
+        cache.removeAll();
+        cache.setStaleGraceMinutes( 0 );
+    }
+
+    @Test
+    public void whenQuotaIsSpent_thenMissesFailWithoutCallingUpstream() {
+        weatherService.getWindByZipCode( "00001" );
+        weatherService.getWindByZipCode( "00002" );
+
+        try {
+            weatherService.getWindByZipCode( "00003" );
+            fail( "Expected the exhausted quota to reject the call" );
+        } catch (UpstreamUnavailableException expected) {
+        }
+        assertThat( upstream.getCalls() ).isEqualTo( 2 );
+        assertThat( weatherService.getQuotaScheduler().getRemaining() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenQuotaIsDownToTheReserve_thenPrefetchIsSkippedButUsersAreServed() {
+        weatherService.prefetch( "00001" );
+        try {
+            weatherService.prefetch( "00002" );
+            fail( "Expected the reserve to hold back the prefetch" );
+        } catch (UpstreamUnavailableException expected) {
+        }
+
+        assertThat( weatherService.getWindByZipCode( "00002" ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( upstream.getCalls() ).isEqualTo( 2 );
+    }
+
+    @Test
+    public void whenCircuitIsOpen_thenRejectedCallsLeaveTheQuota() {
+        upstream.setStatus( HttpStatus.SERVICE_UNAVAILABLE );
+        try {
+            weatherService.getWindByZipCode( "00001" );
+            fail( "Expected the upstream failure" );
+        } catch (RuntimeException expected) {
+        }
+        assertThat( weatherService.getCircuitBreaker().getState() ).isEqualTo( CircuitBreaker.State.OPEN );
+        int remaining = weatherService.getQuotaScheduler().getRemaining();
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                weatherService.getWindByZipCode( "00002" );
+                fail( "Expected the open circuit to reject the call" );
+            } catch (UpstreamUnavailableException expected) {
+            }
+        }
+
+        assertThat( weatherService.getQuotaScheduler().getRemaining() ).isEqualTo( remaining ).isEqualTo( 1 );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenQuotaIsSpent_thenStaleEntryIsServed() {
+        weatherService.getWindByZipCode( "00001" );
+        weatherService.getWindByZipCode( "00002" );
+
+        Weather stale = new Weather();
+        stale.setName( "Stale" );
+        cache.add( "94043", stale, -1 );
+
+        assertThat( weatherService.getWindByZipCode( "94043" ).getName() ).isEqualTo( "Stale" );
+        assertThat( upstream.getCalls() ).isEqualTo( 2 );
+    }
+}
@@ -0,0 +1,107 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WeatherServiceRefreshAheadTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        weatherService = newWeatherService( 5 );
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.shutdown();
+        cache.removeAll();
+        cache.setStaleGraceMinutes( 0 );
+    }
+
+    @Test
+    public void whenEntryIsFresh_thenNoUpstreamCallIsMade() {
+        cache.add( ZIP_CODE, weather( "Cached" ), 15 );
+
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Cached" );
+        assertThat( upstream.getCalls() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenEntryIsPastSoftTtl_thenItIsServedAndRefreshedInBackground() throws Exception {
+        weatherService.shutdown();
+        weatherService = newWeatherService( 0 );
+        cache.add( ZIP_CODE, weather( "Cached" ), 15 );
+        upstream.setLatencyMillis( 200 );
+
+        long start = System.currentTimeMillis();
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Cached" );
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Cached" );
+        assertThat( System.currentTimeMillis() - start ).isLessThan( 200 );
+
+        waitFor( "Mountain View" );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenEntryIsPastHardTtlAndUpstreamFails_thenStaleEntryIsServed() {
+        cache.add( ZIP_CODE, weather( "Stale" ), -1 );
+        upstream.setStatus( HttpStatus.SERVICE_UNAVAILABLE );
+
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Stale" );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenEntryIsPastHardTtl_thenItIsRefetchedSynchronously() {
+        cache.add( ZIP_CODE, weather( "Stale" ), -1 );
+
+        assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+    }
+
+    private WeatherService newWeatherService(int softTtlMinutes) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getRefreshAhead().setEnabled( true );
+        serviceProperties.getRefreshAhead().setSoftTtlMinutes( softTtlMinutes );
+        serviceProperties.getRefreshAhead().setStaleGraceMinutes( 30 );
+        return new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+    }
+
+    private void waitFor(String name) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Weather cached = cache.get( ZIP_CODE );
+            if (cached != null && name.equals( cached.getName() )) {
+                return;
+            }
+            Thread.sleep( 20 );
+        }
+        fail( "Expected the cache to hold " + name + " within 2 seconds" );
+    }
+
+    private static Weather weather(String name) {
+        Weather weather = new Weather();
+        weather.setName( name );
+        weather.setWindSpeed( 5.1 );
+        weather.setWindDirection( 330 );
+        return weather;
+    }
+}
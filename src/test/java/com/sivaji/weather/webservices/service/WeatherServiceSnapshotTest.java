@@ -0,0 +1,63 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.Cache;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeatherServiceSnapshotTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubClientHttpRequestFactory upstream;
+    private Cache<Weather> cache;
+
+    @Before
+    public void setUp() {
+        upstream = new StubClientHttpRequestFactory();
+        cache = CacheManager.getInstance().getCache( CacheManager.CACHE_NAME );
+        cache.removeAll();
+    }
+
+    @After
+    public void tearDown() {
+        cache.removeAll();
+    }
+
+    @Test
+    public void whenServiceRestarts_thenCacheIsWarmFromTheSnapshot() {
+        WeatherService weatherService = newWeatherService();
+        weatherService.getWindByZipCode( ZIP_CODE );
+        weatherService.shutdown();
+
+        // A new instance starts with an empty cache
+        cache.removeAll();
+        weatherService = newWeatherService();
+        try {
+            assertThat( cache.isKeyInCache( ZIP_CODE ) ).isTrue();
+            assertThat( weatherService.getWindByZipCode( ZIP_CODE ).getName() ).isEqualTo( "Mountain View" );
+            assertThat( upstream.getCalls() ).isEqualTo( 1 );
+        } finally {
+            weatherService.shutdown();
+        }
+    }
+
+    private WeatherService newWeatherService() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCache().getSnapshot().setEnabled( true );
+        serviceProperties.getCache().getSnapshot().setPath( folder.getRoot().toPath().resolve( "cache.snapshot" ).toString() );
+        return new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+    }
+}
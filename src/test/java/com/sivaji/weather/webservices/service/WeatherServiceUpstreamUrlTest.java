@@ -0,0 +1,53 @@
+package com.sivaji.weather.webservices.service;
+
+import java.net.URI;
+
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeatherServiceUpstreamUrlTest {
+
+    private final StubClientHttpRequestFactory upstream = new StubClientHttpRequestFactory();
+    private WeatherService weatherService;
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+    }
+
+    @Test
+    public void whenNoUrlIsConfigured_thenOpenWeatherMapIsCalled() {
+        weatherService = newWeatherService( null );
+
+        weatherService.getWindByZipCode( "94043" );
+
+        assertThat( upstream.getLastUri() ).isEqualTo(
+                URI.create( "http://api.openweathermap.org/data/2.5/weather?zip=94043,us&APPID=test" ) );
+    }
+
+    @Test
+    public void whenUrlIsConfigured_thenItReplacesTheOpenWeatherMapBaseUrl() {
+        weatherService = newWeatherService( "http://localhost:8089/data/2.5/" );
+
+        weatherService.getWindByZipCode( "94043" );
+
+        assertThat( upstream.getLastUri() ).isEqualTo(
+                URI.create( "http://localhost:8089/data/2.5/weather?zip=94043,us&APPID=test" ) );
+    }
+
+    private WeatherService newWeatherService(String url) {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        if (url != null) {
+            serviceProperties.getApi().setUrl( url );
+        }
+        WeatherService service = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+        service.clearCache();
+        return service;
+    }
+}
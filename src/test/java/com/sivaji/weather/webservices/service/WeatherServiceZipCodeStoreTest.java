@@ -0,0 +1,69 @@
+package com.sivaji.weather.webservices.service;
+
+import com.sivaji.weather.webservices.model.Weather;
+import com.sivaji.weather.webservices.utils.CacheManager;
+import com.sivaji.weather.webservices.utils.WeatherServiceProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Runs the service on the zip code store. The wind cache is dropped around each test, the other
+ * tests run on the map store.
+ */
+public class WeatherServiceZipCodeStoreTest {
+
+    private static final String ZIP_CODE = "94043";
+
+    private StubClientHttpRequestFactory upstream;
+    private WeatherService weatherService;
+
+    @Before
+    public void setUp() {
+        CacheManager.getInstance().removeCache( CacheManager.CACHE_NAME );
+        upstream = new StubClientHttpRequestFactory();
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCache().setStore( WeatherServiceProperties.Cache.StoreType.ZIP_CODE );
+        serviceProperties.getCache().setMaximumSize( 100 );
+        weatherService = new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+    }
+
+    @After
+    public void tearDown() {
+        weatherService.clearCache();
+        weatherService.shutdown();
+        CacheManager.getInstance().removeCache( CacheManager.CACHE_NAME );
+    }
+
+    @Test
+    public void whenStoreIsZipCode_thenWindIsServedFromThePackedEntries() {
+        Weather fetched = weatherService.getWindByZipCode( ZIP_CODE );
+        Weather cached = weatherService.getWindByZipCode( ZIP_CODE );
+
+        assertThat( upstream.getCalls() ).isEqualTo( 1 );
+        assertThat( cached ).isNotSameAs( fetched );
+        assertThat( cached.getName() ).isEqualTo( "Mountain View" );
+        assertThat( cached.getWindSpeed() ).isEqualTo( fetched.getWindSpeed() );
+        assertThat( cached.getWindDirection() ).isEqualTo( fetched.getWindDirection() );
+        assertThat( weatherService.getCache().getMaximumWeight() ).isEqualTo( 100 );
+    }
+
+    @Test
+    public void whenCacheExistsWithAnotherStore_thenTheServiceDoesNotStart() {
+        WeatherServiceProperties serviceProperties = new WeatherServiceProperties();
+        serviceProperties.getApi().setKey( "test" );
+        serviceProperties.getCache().setMaximumSize( 100 );
+
+        try {
+            new WeatherService( new RestTemplateBuilder().requestFactory( upstream ), serviceProperties );
+            fail( "Expected the map store to be refused" );
+        } catch (IllegalStateException expected) {
+            assertThat( expected.getMessage() ).contains( "ZipCodeStore" );
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CacheSnapshotStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( CacheSnapshotStoreTest.class );
+
+    private static final int ENTRIES = 100000;
+
+    private static final CacheSnapshotStore.Codec<String> CODEC = new CacheSnapshotStore.Codec<String>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            CacheSnapshotStore.writeString( out, value );
+        }
+
+        @Override
+        public String read(ByteBuffer in) {
+            return CacheSnapshotStore.readString( in );
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenSnapshotIsLoaded_thenLiveEntriesKeepTheirRemainingTtl() throws Exception {
+        Path path = folder.getRoot().toPath().resolve( "cache.snapshot" );
+        Cache<String> cache = new Cache<String>( "test" );
+        cache.add( "08831", "New Brunswick" );
+        cache.add( "94043", "Mountain View", -1 );
+        CacheEntry<String> written = cache.getEntry( "08831" );
+
+        assertThat( new CacheSnapshotStore<String>( cache, path, CODEC ).write() ).isEqualTo( 1 );
+
+        Cache<String> restarted = new Cache<String>( "test" );
+        assertThat( new CacheSnapshotStore<String>( restarted, path, CODEC ).load() ).isEqualTo( 1 );
+
+        CacheEntry<String> restored = restarted.getEntry( "08831" );
+        assertThat( restored.getValue() ).isEqualTo( "New Brunswick" );
+        assertThat( restored.getExpireTime() ).isEqualTo( written.getExpireTime() );
+        assertThat( restarted.isKeyInCache( "94043" ) ).isFalse();
+    }
+
+    @Test
+    public void whenSnapshotIsTruncated_thenCompleteRecordsAreRestored() throws Exception {
+        Path path = folder.getRoot().toPath().resolve( "cache.snapshot" );
+        Cache<String> cache = new Cache<String>( "test" );
+        for (int i = 0; i < 10; i++) {
+            cache.add( String.format( "%05d", i ), "City " + i );
+        }
+        new CacheSnapshotStore<String>( cache, path, CODEC ).write();
+
+        try (FileChannel channel = FileChannel.open( path, StandardOpenOption.WRITE )) {
+            channel.truncate( channel.size() - 3 );
+        }
+
+        Cache<String> restarted = new Cache<String>( "test" );
+        assertThat( new CacheSnapshotStore<String>( restarted, path, CODEC ).load() ).isEqualTo( 9 );
+    }
+
+    @Test
+    public void whenSnapshotIsMissing_thenNothingIsRestored() throws Exception {
+        Cache<String> cache = new Cache<String>( "test" );
+
+        assertThat( new CacheSnapshotStore<String>( cache, folder.getRoot().toPath().resolve( "missing" ), CODEC ).load() )
+                .isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenHundredThousandEntriesAreSnapshotted_thenWriteAndLoadTimesAreReported() throws Exception {
+        Path path = folder.getRoot().toPath().resolve( "cache.snapshot" );
+        Cache<String> cache = new Cache<String>( "test" );
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.add( String.format( "%05d", i ), "City " + i );
+        }
+
+        long start = System.nanoTime();
+        int written = new CacheSnapshotStore<String>( cache, path, CODEC ).write();
+        long writeNanos = System.nanoTime() - start;
+
+        Cache<String> restarted = new Cache<String>( "test" );
+        start = System.nanoTime();
+        int restored = new CacheSnapshotStore<String>( restarted, path, CODEC ).load();
+        long loadNanos = System.nanoTime() - start;
+
+        logger.info( "Snapshot of {} entries, {} KB: write {} ms, load {} ms", written,
+                path.toFile().length() / 1024, TimeUnit.NANOSECONDS.toMillis( writeNanos ),
+                TimeUnit.NANOSECONDS.toMillis( loadNanos ) );
+
+        assertThat( written ).isEqualTo( ENTRIES );
+        assertThat( restored ).isEqualTo( ENTRIES );
+        assertThat( restarted.get( "42424" ) ).isEqualTo( "City 42424" );
+    }
+}
@@ -0,0 +1,245 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class CacheTest {
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 1000;
+    private static final int OPERATIONS = 200000;
+
+    @Test
+    public void whenValueIsAdded_thenItIsReturnedUntilRemoved() {
+        Cache<String> cache = new Cache<String>( "test" );
+        cache.add( "08831", "New Brunswick" );
+
+        assertThat( cache.isKeyInCache( "08831" ) ).isTrue();
+        assertThat( cache.get( "08831" ) ).isEqualTo( "New Brunswick" );
+
+        cache.remove( "08831" );
+        assertThat( cache.get( "08831" ) ).isNull();
+    }
+
+    @Test
+    public void whenEntryIsExpired_thenItIsNotReturned() {
+        Cache<String> cache = new Cache<String>( "test" );
+        cache.add( "08831", "New Brunswick", -1 );
+
+        assertThat( cache.isKeyInCache( "08831" ) ).isFalse();
+        assertThat( cache.removeExpired() ).isEqualTo( 0 );
+        assertThat( cache.size() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenBoundedCacheIsFilledPastItsMaximum_thenSizeStaysWithinBound() {
+        Cache<Integer> cache = new Cache<Integer>( "test", 100, new Weigher<Integer>() {
+            @Override
+            public int weigh(String key, Integer value) {
+                return 1;
+            }
+        } );
+
+        for (int i = 0; i < 10000; i++) {
+            cache.add( String.valueOf( i ), i );
+        }
+
+        assertThat( cache.size() ).isLessThanOrEqualTo( 100 );
+        assertThat( cache.getEvictionCount() ).isGreaterThanOrEqualTo( 9900 );
+    }
+
+    @Test
+    public void whenOverlappingKeysAreAddedExpiredAndEvictedConcurrently_thenSizeStaysWithinBound() throws Exception {
+        final Cache<Integer> cache = new Cache<Integer>( "test", 100, new Weigher<Integer>() {
+            @Override
+            public int weigh(String key, Integer value) {
+                return 1;
+            }
+        } );
+
+        runConcurrently( new Operation() {
+            @Override
+            public void run(int thread, int i) {
+                String key = String.valueOf( i % 300 );
+                switch (i % 8) {
+                    case 0:
+                        // Already past its grace window, the next read removes it
+                        cache.add( key, i, -1 );
+                        break;
+                    case 1:
+                        cache.get( key );
+                        break;
+                    case 2:
+                        cache.remove( key, false );
+                        break;
+                    case 3:
+                        if (i % 1000 == 3) {
+                            cache.removeExpired();
+                        }
+                        break;
+                    default:
+                        cache.add( key, i );
+                }
+            }
+        } );
+
+        assertThat( cache.size() ).isLessThanOrEqualTo( 100 );
+
+        // Entries the policy lost track of would never be evicted
+        for (int i = 0; i < 1000; i++) {
+            cache.add( "fill-" + i, i );
+        }
+        assertThat( cache.size() ).isLessThanOrEqualTo( 100 );
+    }
+
+    @Test
+    public void whenScanFloodsBoundedCache_thenFrequentlyUsedKeysStayResident() {
+        Cache<Integer> cache = new Cache<Integer>( "test", 100, new Weigher<Integer>() {
+            @Override
+            public int weigh(String key, Integer value) {
+                return 1;
+            }
+        } );
+
+        for (int i = 0; i < 50; i++) {
+            cache.add( "hot-" + i, i );
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get( "hot-" + i );
+            }
+        }
+
+        // One-off keys, like a bot walking the ZIP space, while regular traffic keeps going
+        for (int i = 0; i < 10000; i++) {
+            cache.add( "scan-" + i, i );
+            cache.get( "hot-" + i % 50 );
+        }
+
+        int resident = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.isKeyInCache( "hot-" + i )) {
+                resident++;
+            }
+        }
+        assertThat( resident ).isEqualTo( 50 );
+    }
+
+    @Test
+    public void whenCacheExistsWithAnotherBound_thenGettingItBoundedFails() {
+        CacheManager cacheManager = CacheManager.getInstance();
+        try {
+            cacheManager.getCache( "bound-test" );
+            try {
+                cacheManager.getCache( "bound-test", 100 );
+                fail( "Expected the unbounded cache to be refused" );
+            } catch (IllegalStateException expected) {
+            }
+            cacheManager.removeCache( "bound-test" );
+
+            assertThat( cacheManager.getCache( "bound-test", 100 ).getMaximumWeight() ).isEqualTo( 100 );
+            assertThat( cacheManager.getCache( "bound-test", 100 ).isBounded() ).isTrue();
+            try {
+                cacheManager.getCache( "bound-test", 200 );
+                fail( "Expected the other bound to be refused" );
+            } catch (IllegalStateException expected) {
+            }
+        } finally {
+            cacheManager.removeCache( "bound-test" );
+        }
+    }
+
+    @Test
+    public void whenReadersRaceWriters_thenEveryEntryIsConsistent() throws Exception {
+        final Cache<Integer> cache = new Cache<Integer>( "test" );
+        final AtomicInteger inconsistent = new AtomicInteger();
+
+        runConcurrently( new Operation() {
+            @Override
+            public void run(int thread, int i) {
+                String key = String.valueOf( i % KEYS );
+                if (thread % 2 == 0) {
+                    // The TTL is derived from the value so readers can validate the pair
+                    cache.add( key, i, 1 + i % 7 );
+                } else {
+                    CacheEntry<Integer> entry = cache.getEntry( key );
+                    if (entry != null && entry.getTtlMillis() != (1 + entry.getValue() % 7) * 60L * 1000L) {
+                        inconsistent.incrementAndGet();
+                    }
+                }
+            }
+        } );
+
+        assertThat( inconsistent.get() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenMixedLoadIsApplied_thenReadersOnlySeeValuesWrittenForTheirKey() throws Exception {
+        final Cache<Integer> cache = new Cache<Integer>( "test" );
+        final AtomicInteger misread = new AtomicInteger();
+
+        runConcurrently( new Operation() {
+            @Override
+            public void run(int thread, int i) {
+                String key = String.valueOf( i % KEYS );
+                // 90% reads, 10% writes
+                if (i % 10 == 0) {
+                    cache.add( key, i );
+                } else {
+                    Integer value = cache.get( key );
+                    if (value != null && value % KEYS != i % KEYS) {
+                        misread.incrementAndGet();
+                    }
+                }
+            }
+        } );
+
+        assertThat( misread.get() ).isEqualTo( 0 );
+        assertThat( cache.size() ).isEqualTo( KEYS / 10 );
+        for (int k = 0; k < KEYS; k += 10) {
+            assertThat( cache.get( String.valueOf( k ) ) % KEYS ).isEqualTo( k );
+        }
+    }
+
+    private void runConcurrently(final Operation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( THREADS );
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            executor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            operation.run( thread, i );
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            } );
+        }
+
+        start.countDown();
+        assertThat( done.await( 60, TimeUnit.SECONDS ) ).isTrue();
+
+        executor.shutdown();
+    }
+
+    private interface Operation {
+        void run(int thread, int i);
+    }
+}
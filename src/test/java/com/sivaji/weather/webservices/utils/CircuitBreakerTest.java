@@ -0,0 +1,41 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void whenFailuresReachTheThreshold_thenCallsAreRejected() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker( 3, 60000 );
+        for (int i = 0; i < 3; i++) {
+            assertThat( circuitBreaker.allowRequest() ).isTrue();
+            circuitBreaker.recordFailure();
+        }
+
+        assertThat( circuitBreaker.getState() ).isEqualTo( CircuitBreaker.State.OPEN );
+        assertThat( circuitBreaker.allowRequest() ).isFalse();
+        assertThat( circuitBreaker.getRejectedCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenOpenPeriodElapsed_thenOneTrialCallDecides() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker( 1, 20 );
+        circuitBreaker.recordFailure();
+        Thread.sleep( 30 );
+
+        assertThat( circuitBreaker.allowRequest() ).isTrue();
+        assertThat( circuitBreaker.getState() ).isEqualTo( CircuitBreaker.State.HALF_OPEN );
+        assertThat( circuitBreaker.allowRequest() ).isFalse();
+
+        circuitBreaker.recordFailure();
+        assertThat( circuitBreaker.getState() ).isEqualTo( CircuitBreaker.State.OPEN );
+        Thread.sleep( 30 );
+
+        assertThat( circuitBreaker.allowRequest() ).isTrue();
+        circuitBreaker.recordSuccess();
+        assertThat( circuitBreaker.getState() ).isEqualTo( CircuitBreaker.State.CLOSED );
+        assertThat( circuitBreaker.allowRequest() ).isTrue();
+    }
+}
@@ -0,0 +1,67 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long BASELINE_NANOS = TimeUnit.MILLISECONDS.toNanos( 20 );
+
+    @Test
+    public void whenLimitIsReached_thenCallsAreRejectedUntilOneCompletes() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 2, 1, 2, 0.9, 2.0 );
+
+        assertThat( limiter.tryAcquire() ).isTrue();
+        assertThat( limiter.tryAcquire() ).isTrue();
+        assertThat( limiter.tryAcquire() ).isFalse();
+        assertThat( limiter.getRejectedCount() ).isEqualTo( 1 );
+
+        limiter.onSuccess( BASELINE_NANOS );
+        assertThat( limiter.tryAcquire() ).isTrue();
+    }
+
+    @Test
+    public void whenRoundTripTimeSpikes_thenLimitShrinksAndRecovers() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 10, 2, 20, 0.5, 2.0 );
+        complete( limiter, 10, BASELINE_NANOS );
+        int baselineLimit = limiter.getLimit();
+        assertThat( baselineLimit ).isGreaterThan( 10 );
+
+        complete( limiter, 4, 10 * BASELINE_NANOS );
+        assertThat( limiter.getLimit() ).isLessThan( baselineLimit / 4 );
+
+        complete( limiter, 20, BASELINE_NANOS );
+        assertThat( limiter.getLimit() ).isGreaterThan( baselineLimit / 4 );
+    }
+
+    @Test
+    public void whenCallsAreDropped_thenLimitStopsAtTheMinimum() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter( 10, 2, 20, 0.5, 2.0 );
+        for (int i = 0; i < 10; i++) {
+            assertThat( limiter.tryAcquire() ).isTrue();
+            limiter.onDropped();
+        }
+
+        assertThat( limiter.getLimit() ).isEqualTo( 2 );
+        assertThat( limiter.getInFlight() ).isEqualTo( 0 );
+    }
+
+    /**
+     * Complete calls with the limit fully used, so a healthy round trip time lets it grow.
+     */
+    private static void complete(ConcurrencyLimiter limiter, int calls, long rttNanos) {
+        for (int i = 0; i < calls; i++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            limiter.onSuccess( rttNanos );
+            for (int j = 1; j < acquired; j++) {
+                limiter.onIgnored();
+            }
+        }
+    }
+}
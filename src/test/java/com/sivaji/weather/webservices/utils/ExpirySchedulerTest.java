@@ -0,0 +1,102 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpirySchedulerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( ExpirySchedulerTest.class );
+
+    private static final int ENTRIES = 1000000;
+    private static final int EXPIRED = ENTRIES / 100;
+
+    @Test
+    public void whenEntryExpires_thenItIsRemovedWithoutBeingRead() {
+        ExpiryScheduler scheduler = new ExpiryScheduler( 10, 64, false );
+        Cache<String> cache = new Cache<String>( "test", scheduler );
+        cache.add( "08831", "New Brunswick", -1 );
+        cache.add( "94043", "Mountain View" );
+
+        assertThat( nextTick( scheduler ) ).isEqualTo( 1 );
+        assertThat( cache.getKeys() ).containsExactly( "94043" );
+        assertThat( scheduler.getExpiredCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenEntryIsReplacedBeforeItsDeadline_thenTheNewEntryIsKept() {
+        ExpiryScheduler scheduler = new ExpiryScheduler( 10, 64, false );
+        Cache<String> cache = new Cache<String>( "test", scheduler );
+        cache.add( "08831", "New Brunswick", -1 );
+        cache.add( "08831", "New Brunswick" );
+
+        assertThat( nextTick( scheduler ) ).isEqualTo( 0 );
+        assertThat( cache.get( "08831" ) ).isEqualTo( "New Brunswick" );
+    }
+
+    @Test
+    public void whenEntryIsWithinStaleGrace_thenItIsKeptUntilTheGraceEnds() {
+        ExpiryScheduler scheduler = new ExpiryScheduler( 10, 64, false );
+        Cache<String> cache = new Cache<String>( "test", scheduler );
+        cache.add( "08831", "New Brunswick", -1 );
+        // The grace window grows after the entry was scheduled
+        cache.setStaleGraceMinutes( 30 );
+
+        assertThat( nextTick( scheduler ) ).isEqualTo( 0 );
+        assertThat( cache.getStaleEntry( "08831" ) ).isNotNull();
+        assertThat( scheduler.getPendingCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenOnePercentOfAMillionEntriesExpire_thenWheelCostIsComparedWithFullScan() {
+        ExpiryScheduler scheduler = new ExpiryScheduler( 1000, 4096, false );
+        Cache<Integer> wheelCache = new Cache<Integer>( "wheel", scheduler );
+        long scheduleNanos = fill( wheelCache );
+
+        // The worker moves deadlines onto the wheel every tick, do it once here to time the firing alone
+        long start = System.nanoTime();
+        int wheelRemoved = scheduler.advance( scheduler.elapsedNanos() );
+        long transferNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        wheelRemoved += nextTick( scheduler );
+        long wheelNanos = System.nanoTime() - start;
+        assertThat( wheelRemoved ).isEqualTo( EXPIRED );
+        assertThat( wheelCache.size() ).isEqualTo( ENTRIES - EXPIRED );
+        wheelCache = null;
+
+        Cache<Integer> scanCache = new Cache<Integer>( "scan" );
+        fill( scanCache );
+
+        start = System.nanoTime();
+        int scanRemoved = scanCache.removeExpired();
+        long scanNanos = System.nanoTime() - start;
+        assertThat( scanRemoved ).isEqualTo( EXPIRED );
+
+        logger.info( "{} entries, {} expired: adding {} ms, placing deadlines on the wheel {} ms, "
+                        + "timing wheel expiry {} ms, full scan {} ms",
+                ENTRIES, EXPIRED, TimeUnit.NANOSECONDS.toMillis( scheduleNanos ), TimeUnit.NANOSECONDS.toMillis( transferNanos ),
+                TimeUnit.NANOSECONDS.toMillis( wheelNanos ), TimeUnit.NANOSECONDS.toMillis( scanNanos ) );
+    }
+
+    /**
+     * Process the wheel up to the end of the current tick, deadlines are rounded up to a tick.
+     */
+    private static int nextTick(ExpiryScheduler scheduler) {
+        return scheduler.advance( scheduler.elapsedNanos() + scheduler.getTickNanos() );
+    }
+
+    /**
+     * Add the entries, one in a hundred already expired, and return the time it took.
+     */
+    private static long fill(Cache<Integer> cache) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.add( String.valueOf( i ), i, i % 100 == 0 ? -1 : Cache.DEFAULT_MINUTES );
+        }
+        return System.nanoTime() - start;
+    }
+}
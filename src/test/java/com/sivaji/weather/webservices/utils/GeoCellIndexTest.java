@@ -0,0 +1,54 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class GeoCellIndexTest {
+
+    private static final String CENTROIDS = "zip,lat,lon\n"
+            + "# Mountain View\n"
+            + "94043,37.4192,-122.0574\n"
+            + "94041,37.3894,-122.0783\n"
+            + "08831,40.3195,-74.4306\n"
+            + "\n"
+            + "94040,37.3801,-122.0882\n";
+
+    @Test
+    public void whenZipCodesAreClose_thenTheyShareACell() throws IOException {
+        GeoCellIndex index = load( 0.1 );
+
+        assertThat( index.size() ).isEqualTo( 4 );
+        assertThat( index.cellKey( "94041" ) ).isEqualTo( "cell:373:-1221" );
+        assertThat( index.cellKey( "94040" ) ).isEqualTo( index.cellKey( "94041" ) );
+        assertThat( index.cellKey( "94043" ) ).isNotEqualTo( index.cellKey( "94041" ) );
+        assertThat( index.cellKey( "94043-1351" ) ).isEqualTo( index.cellKey( "94043" ) );
+    }
+
+    @Test
+    public void whenZipCodeIsNotIndexed_thenItHasNoCell() throws IOException {
+        GeoCellIndex index = load( 0.1 );
+
+        assertThat( index.cellKey( "10001" ) ).isNull();
+        assertThat( GeoCellIndex.isCellKey( "94043" ) ).isFalse();
+    }
+
+    @Test
+    public void whenCellKeyIsGiven_thenItsCenterIsReturned() throws IOException {
+        GeoCellIndex index = load( 0.1 );
+        String cellKey = index.cellKey( "08831" );
+
+        assertThat( GeoCellIndex.isCellKey( cellKey ) ).isTrue();
+        assertThat( index.latitudeOf( cellKey ) ).isCloseTo( 40.35, within( 1e-9 ) );
+        assertThat( index.longitudeOf( cellKey ) ).isCloseTo( -74.45, within( 1e-9 ) );
+    }
+
+    private static GeoCellIndex load(double cellSizeDegrees) throws IOException {
+        return GeoCellIndex.load( new BufferedReader( new StringReader( CENTROIDS ) ), cellSizeDegrees );
+    }
+}
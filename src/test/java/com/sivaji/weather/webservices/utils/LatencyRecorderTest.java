@@ -0,0 +1,46 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void whenNothingIsRecorded_thenPercentilesAreZero() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        assertThat( recorder.getCount() ).isEqualTo( 0 );
+        assertThat( recorder.getPercentileMillis( 99 ) ).isEqualTo( 0 );
+        assertThat( recorder.getMeanMillis() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenLatenciesAreRecorded_thenPercentilesAreWithinTheBucketPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int millis = 1; millis <= 1000; millis++) {
+            recorder.record( TimeUnit.MILLISECONDS.toNanos( millis ) );
+        }
+
+        assertThat( recorder.getCount() ).isEqualTo( 1000 );
+        assertThat( recorder.getPercentileMillis( 50 ) ).isCloseTo( 500, within( 500 * 0.02 ) );
+        assertThat( recorder.getPercentileMillis( 99 ) ).isCloseTo( 990, within( 990 * 0.02 ) );
+        assertThat( recorder.getPercentileMillis( 100 ) ).isEqualTo( 1000 );
+        assertThat( recorder.getMeanMillis() ).isCloseTo( 500.5, within( 0.01 ) );
+        assertThat( recorder.getMaxMillis() ).isEqualTo( 1000 );
+    }
+
+    @Test
+    public void whenValueIsBucketed_thenItIsAtMostTheHighestValueOfItsBucket() {
+        for (long micros : new long[] { 0, 1, 127, 128, 129, 1000, 65535, 65536, 3600000000L }) {
+            int index = LatencyRecorder.indexOf( micros );
+            assertThat( LatencyRecorder.highestValueAt( index ) ).isGreaterThanOrEqualTo( micros );
+            if (index > 0) {
+                assertThat( LatencyRecorder.highestValueAt( index - 1 ) ).isLessThan( micros );
+            }
+        }
+    }
+}
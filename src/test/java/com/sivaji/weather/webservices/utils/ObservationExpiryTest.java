@@ -0,0 +1,126 @@
+package com.sivaji.weather.webservices.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongBinaryOperator;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObservationExpiryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( ObservationExpiryTest.class );
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 );
+    private static final long SECOND = TimeUnit.SECONDS.toMillis( 1 );
+
+    private final ObservationExpiry expiry = new ObservationExpiry( 10 * MINUTE, 15 * MINUTE, 5 * MINUTE, 60 * SECOND,
+            25 * MINUTE );
+
+    @Test
+    public void whenNextObservationIsDue_thenDataIsKeptUntilThen() {
+        assertThat( expiry.ttlMillis( 1000 * MINUTE, 1002 * MINUTE ) ).isEqualTo( 13 * MINUTE );
+        assertThat( expiry.ttlMillis( 1010 * MINUTE, 1012 * MINUTE ) ).isEqualTo( 13 * MINUTE );
+        assertThat( expiry.ttlMillis( 1000 * MINUTE, 1014 * MINUTE + 30 * SECOND ) ).isEqualTo( 60 * SECOND );
+        assertThat( expiry.ttlMillisFromEpochSeconds( 60000, 60000 * SECOND + 3 * MINUTE ) ).isEqualTo( 12 * MINUTE );
+    }
+
+    @Test
+    public void whenObservationIsInTheSamePeriodAsTheNext_thenTheNextIsSkipped() {
+        // 1030 is in the same 15 minute period as 1020, so 1040 is the next one fetched
+        assertThat( expiry.nextObservation( 1020 * MINUTE ) ).isEqualTo( 1040 * MINUTE );
+        assertThat( expiry.ttlMillis( 1020 * MINUTE, 1022 * MINUTE ) ).isEqualTo( 23 * MINUTE );
+        // Observations off the period grid follow their own update interval
+        assertThat( expiry.nextObservation( 1007 * MINUTE ) ).isEqualTo( 1027 * MINUTE );
+        assertThat( expiry.nextObservation( 1013 * MINUTE ) ).isEqualTo( 1023 * MINUTE );
+    }
+
+    @Test
+    public void whenNextObservationIsOverdue_thenRefetchesBackOffFromTheFirstRetry() {
+        long due = 1015 * MINUTE;
+
+        long now = due;
+        long ttl = expiry.ttlMillis( 1000 * MINUTE, now );
+        assertThat( ttl ).isEqualTo( 60 * SECOND );
+
+        now += ttl;
+        ttl = expiry.ttlMillis( 1000 * MINUTE, now );
+        assertThat( ttl ).isEqualTo( 2 * MINUTE );
+
+        now += ttl;
+        ttl = expiry.ttlMillis( 1000 * MINUTE, now );
+        assertThat( ttl ).isEqualTo( 4 * MINUTE );
+
+        now += ttl;
+        assertThat( expiry.ttlMillis( 1000 * MINUTE, now ) ).isEqualTo( 8 * MINUTE );
+        assertThat( expiry.ttlMillis( 1000 * MINUTE, due + 60 * MINUTE ) ).isEqualTo( 25 * MINUTE );
+    }
+
+    @Test
+    public void whenObservationIsAheadOfTheClock_thenTheMaximumApplies() {
+        assertThat( expiry.ttlMillis( 1000 * MINUTE, 980 * MINUTE ) ).isEqualTo( 25 * MINUTE );
+    }
+
+    /**
+     * A hot zip code requested every 10 seconds for a day, from a provider observing every 10
+     * minutes and publishing 1 to 5 minutes later. Staleness is how far the observation served
+     * lags behind the latest published one.
+     */
+    @Test
+    public void whenExpiryFollowsObservations_thenDataIsFresherForNoMoreCallsThanTheFixedTtl() {
+        Simulation fixed15 = simulate( (observation, now) -> 15 * MINUTE );
+        Simulation aligned = simulate( expiry::ttlMillis );
+
+        logger.info( "Fixed 15 minute TTL: {}", fixed15 );
+        logger.info( "Observation aligned: {}", aligned );
+        assertThat( aligned.calls ).isLessThanOrEqualTo( fixed15.calls );
+        assertThat( aligned.meanStalenessSeconds() ).isLessThan( fixed15.meanStalenessSeconds() * 0.8 );
+    }
+
+    private static Simulation simulate(LongBinaryOperator ttl) {
+        Random random = new Random( 7 );
+        long interval = 10 * MINUTE;
+        long day = TimeUnit.DAYS.toMillis( 1 );
+        long[] published = new long[(int) (day / interval) + 2];
+        for (int k = 0; k < published.length; k++) {
+            published[k] = k * interval + MINUTE + (long) (random.nextDouble() * 4 * MINUTE);
+        }
+
+        Simulation simulation = new Simulation();
+        long servedObservation = -1;
+        long expireTime = 0;
+        for (long now = interval; now < day; now += 10 * SECOND) {
+            int latest = (int) (now / interval);
+            while (published[latest] > now) {
+                latest--;
+            }
+            if (now >= expireTime) {
+                simulation.calls++;
+                servedObservation = latest * interval;
+                expireTime = now + ttl.applyAsLong( servedObservation, now );
+            }
+            simulation.requests++;
+            simulation.stalenessMillis += latest * interval - servedObservation;
+        }
+        return simulation;
+    }
+
+    private static class Simulation {
+
+        int calls;
+        int requests;
+        long stalenessMillis;
+
+        double meanStalenessSeconds() {
+            return stalenessMillis / 1000d / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format( "%d upstream calls, mean staleness %.0f s", calls, meanStalenessSeconds() );
+        }
+    }
+}
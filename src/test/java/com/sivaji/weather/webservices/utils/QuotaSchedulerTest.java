@@ -0,0 +1,38 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QuotaSchedulerTest {
+
+    @Test
+    public void whenBucketIsEmpty_thenUserCallsQueueUntilTheirDeadline() throws InterruptedException {
+        // One token every 100 ms
+        QuotaScheduler scheduler = new QuotaScheduler( 600, 1, 0 );
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.USER, 0 ) ).isTrue();
+
+        long start = System.nanoTime();
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.USER, 500 ) ).isTrue();
+        assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) ).isGreaterThanOrEqualTo( 80 );
+
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.USER, 20 ) ).isFalse();
+        assertThat( scheduler.getRejectedCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenBucketIsDownToTheReserve_thenOnlyUserCallsAreAllowed() throws InterruptedException {
+        QuotaScheduler scheduler = new QuotaScheduler( 1, 4, 0.5 );
+
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.BACKGROUND, 0 ) ).isTrue();
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.BACKGROUND, 0 ) ).isTrue();
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.BACKGROUND, 1000 ) ).isFalse();
+        assertThat( scheduler.getRemaining() ).isEqualTo( 2 );
+
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.USER, 0 ) ).isTrue();
+        assertThat( scheduler.acquire( QuotaScheduler.Priority.USER, 0 ) ).isTrue();
+        assertThat( scheduler.getRemaining() ).isEqualTo( 0 );
+    }
+}
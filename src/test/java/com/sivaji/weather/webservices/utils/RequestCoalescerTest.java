@@ -0,0 +1,218 @@
+package com.sivaji.weather.webservices.utils;
+
+import com.sivaji.weather.webservices.exception.WeatherServiceException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 20;
+
+    @Test
+    public void whenConcurrentMissesForSameKey_thenLoaderRunsOnce() throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 5000, true );
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callConcurrently( coalescer, slowLoader( loads, null ) );
+
+        for (Future<String> result : results) {
+            assertThat( result.get() ).isEqualTo( "New Brunswick" );
+        }
+        assertThat( loads.get() ).isEqualTo( 1 );
+        assertThat( coalescer.getLoadCount() ).isEqualTo( 1 );
+        assertThat( coalescer.getCoalescedCount() ).isEqualTo( CALLERS - 1 );
+        assertThat( coalescer.getInFlightCount() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenFailuresAreShared_thenEveryWaiterReceivesTheError() throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 5000, true );
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callConcurrently( coalescer,
+                slowLoader( loads, new WeatherServiceException( "No Response" ) ) );
+
+        for (Future<String> result : results) {
+            try {
+                result.get();
+                fail( "Expected the upstream failure" );
+            } catch (ExecutionException e) {
+                assertThat( e.getCause() ).isInstanceOf( WeatherServiceException.class );
+            }
+        }
+        assertThat( loads.get() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenLoaderThrowsAnError_thenTheCallIsCompletedAndTheNextCallerLoadsAgain() throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 5000, true );
+
+        try {
+            coalescer.execute( "08831", () -> {
+                throw new StackOverflowError();
+            } );
+            fail( "Expected the loader's error" );
+        } catch (StackOverflowError e) {
+            // Rethrown to the leader
+        }
+
+        assertThat( coalescer.getInFlightCount() ).isEqualTo( 0 );
+        assertThat( coalescer.execute( "08831", () -> "New Brunswick" ) ).isEqualTo( "New Brunswick" );
+        assertThat( coalescer.executeAsync( "08831", () -> "Edison", Runnable::run ).get( 1, TimeUnit.SECONDS ) )
+                .isEqualTo( "Edison" );
+    }
+
+    @Test
+    public void whenFailuresAreNotShared_thenWaitersRetryOnce() throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 5000, false );
+        final AtomicInteger loads = new AtomicInteger();
+
+        List<Future<String>> results = callConcurrently( coalescer, new Supplier<String>() {
+            @Override
+            public String get() {
+                sleep( 200 );
+                if (loads.incrementAndGet() == 1) {
+                    throw new WeatherServiceException( "No Response" );
+                }
+                return "New Brunswick";
+            }
+        } );
+
+        int succeeded = 0;
+        for (Future<String> result : results) {
+            try {
+                result.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertThat( e.getCause() ).isInstanceOf( WeatherServiceException.class );
+            }
+        }
+        assertThat( succeeded ).isEqualTo( CALLERS - 1 );
+        assertThat( loads.get() ).isEqualTo( 2 );
+    }
+
+    @Test(expected = WeatherServiceException.class)
+    public void whenInFlightCallIsTooSlow_thenWaiterTimesOut() throws Throwable {
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 50, true );
+        final CountDownLatch started = new CountDownLatch( 1 );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit( new Runnable() {
+            @Override
+            public void run() {
+                coalescer.execute( "08831", new Supplier<String>() {
+                    @Override
+                    public String get() {
+                        started.countDown();
+                        sleep( 1000 );
+                        return "New Brunswick";
+                    }
+                } );
+            }
+        } );
+
+        try {
+            started.await( 5, TimeUnit.SECONDS );
+            coalescer.execute( "08831", slowLoader( new AtomicInteger(), null ) );
+        } finally {
+            assertThat( coalescer.getTimeoutCount() ).isEqualTo( 1 );
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenInFlightCallIsTooSlow_thenAsyncWaiterTimesOut() throws Exception {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<String>( 50, true );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> leader = coalescer.executeAsync( "08831", () -> {
+                await( release );
+                return "New Brunswick";
+            }, executor );
+            CompletableFuture<String> waiter = coalescer.executeAsync( "08831", () -> "Edison", executor );
+
+            try {
+                waiter.get( 5, TimeUnit.SECONDS );
+                fail( "Expected the waiter to time out" );
+            } catch (ExecutionException e) {
+                assertThat( e.getCause() ).isInstanceOf( WeatherServiceException.class );
+            }
+            assertThat( coalescer.getTimeoutCount() ).isEqualTo( 1 );
+            assertThat( leader.isDone() ).isFalse();
+
+            release.countDown();
+            assertThat( leader.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "New Brunswick" );
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Future<String>> callConcurrently(final RequestCoalescer<String> coalescer,
+                                                  final Supplier<String> loader) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool( CALLERS );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        List<Future<String>> results = new ArrayList<Future<String>>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            results.add( executor.submit( new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    start.await();
+                    return coalescer.execute( "08831", loader );
+                }
+            } ) );
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertThat( executor.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+        return results;
+    }
+
+    private static Supplier<String> slowLoader(final AtomicInteger loads, final RuntimeException failure) {
+        return new Supplier<String>() {
+            @Override
+            public String get() {
+                loads.incrementAndGet();
+                sleep( 200 );
+                if (failure != null) {
+                    throw failure;
+                }
+                return "New Brunswick";
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep( millis );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await( 5, TimeUnit.SECONDS );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
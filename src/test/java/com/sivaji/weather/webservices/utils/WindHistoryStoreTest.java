@@ -0,0 +1,207 @@
+package com.sivaji.weather.webservices.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WindHistoryStoreTest {
+
+    private static final long SEGMENT_MILLIS = TimeUnit.HOURS.toMillis( 1 );
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis( 3 );
+    private static final long START = TimeUnit.DAYS.toMillis( 20000 );
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 );
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void whenRangeIsQueried_thenOnlyTheKeysObservationsWithinItAreVisitedNewestFirst() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        for (int i = 0; i < 6; i++) {
+            store.append( "08831", START + i * 10 * MINUTE, i, 10 * i, START + i * 10 * MINUTE );
+            store.append( "94043", START + i * 10 * MINUTE, 100 + i, 0, START + i * 10 * MINUTE );
+        }
+
+        assertThat( times( store, "08831", START + 10 * MINUTE, START + 30 * MINUTE ) )
+                .containsExactly( START + 30 * MINUTE, START + 20 * MINUTE, START + 10 * MINUTE );
+        assertThat( speeds( store, "94043", START, START + 60 * MINUTE ) )
+                .containsExactly( 105d, 104d, 103d, 102d, 101d, 100d );
+        assertThat( times( store, "10001", START, START + 60 * MINUTE ) ).isEmpty();
+    }
+
+    @Test
+    public void whenObservationIsNotNewer_thenItIsNotAppended() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+
+        assertThat( store.append( "08831", START, 5.1, 330, START ) ).isTrue();
+        assertThat( store.append( "08831", START, 5.1, 330, START + MINUTE ) ).isFalse();
+        assertThat( store.append( "08831", START - MINUTE, 4.0, 300, START + MINUTE ) ).isFalse();
+
+        assertThat( times( store, "08831", 0, Long.MAX_VALUE ) ).containsExactly( START );
+        assertThat( store.getAppendedCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenWindowEnds_thenANewSegmentIsStartedAndQueriesSpanThem() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        for (int i = 0; i < 12; i++) {
+            long time = START + i * 15 * MINUTE;
+            store.append( "08831", time, i, 0, time );
+        }
+
+        assertThat( store.getSegmentCount() ).isEqualTo( 3 );
+        assertThat( times( store, "08831", START + 45 * MINUTE, START + 135 * MINUTE ) ).containsExactly(
+                START + 135 * MINUTE, START + 120 * MINUTE, START + 105 * MINUTE, START + 90 * MINUTE,
+                START + 75 * MINUTE, START + 60 * MINUTE, START + 45 * MINUTE );
+    }
+
+    @Test
+    public void whenSegmentIsFull_thenANewOneIsStartedEarly() throws Exception {
+        // Room for the header and three records with a 5 byte key
+        WindHistoryStore store = newStore( 16 + 3 * 35 );
+        for (int i = 0; i < 7; i++) {
+            store.append( "08831", START + i, i, 0, START );
+        }
+
+        assertThat( store.getSegmentCount() ).isEqualTo( 3 );
+        assertThat( times( store, "08831", START, START + 6 ) ).hasSize( 7 );
+    }
+
+    @Test
+    public void whenSegmentIsPastRetention_thenItIsDeletedOnRollover() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 0, START );
+        store.append( "08831", START + SEGMENT_MILLIS, 2, 0, START + SEGMENT_MILLIS );
+        assertThat( segmentFiles() ).isEqualTo( 2 );
+
+        long later = START + SEGMENT_MILLIS + RETENTION_MILLIS;
+        store.append( "08831", later, 3, 0, later );
+
+        assertThat( segmentFiles() ).isEqualTo( 2 );
+        assertThat( speeds( store, "08831", 0, Long.MAX_VALUE ) ).containsExactly( 3d, 2d );
+    }
+
+    @Test
+    public void whenStoreIsReopenedPastRetention_thenExpiredSegmentsAreDeleted() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 0, START );
+        store.append( "08831", START + SEGMENT_MILLIS, 2, 0, START + SEGMENT_MILLIS );
+        store.close();
+
+        long later = START + 2 * SEGMENT_MILLIS + RETENTION_MILLIS;
+        WindHistoryStore reopened = new WindHistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, 1 << 20,
+                RETENTION_MILLIS, later - 1 );
+
+        assertThat( segmentFiles() ).isEqualTo( 1 );
+        assertThat( reopened.getSegmentCount() ).isEqualTo( 1 );
+        assertThat( speeds( reopened, "08831", 0, Long.MAX_VALUE ) ).containsExactly( 2d );
+    }
+
+    @Test
+    public void whenNothingIsAppended_thenExpiredSegmentsAreStillRemoved() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 0, START );
+        store.append( "08831", START + SEGMENT_MILLIS, 2, 0, START + SEGMENT_MILLIS );
+
+        store.removeExpired( START + SEGMENT_MILLIS + RETENTION_MILLIS - 1 );
+        assertThat( store.getSegmentCount() ).isEqualTo( 2 );
+
+        store.removeExpired( START + SEGMENT_MILLIS + RETENTION_MILLIS );
+        assertThat( segmentFiles() ).isEqualTo( 1 );
+        assertThat( speeds( store, "08831", 0, Long.MAX_VALUE ) ).containsExactly( 2d );
+
+        store.removeExpired( START + 2 * SEGMENT_MILLIS + RETENTION_MILLIS );
+        assertThat( store.getSegmentCount() ).isEqualTo( 0 );
+        assertThat( store.append( "08831", START, 3, 0, START + 2 * SEGMENT_MILLIS + RETENTION_MILLIS ) ).isTrue();
+        assertThat( store.getSegmentCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void whenStoreIsReopened_thenExistingSegmentsAreIndexedAndAppendedTo() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 10, START );
+        store.append( "94043", START, 2, 20, START );
+        store.append( "08831", START + 10 * MINUTE, 3, 30, START + 10 * MINUTE );
+        store.close();
+
+        WindHistoryStore reopened = newStore( 1 << 20 );
+        assertThat( reopened.getSegmentCount() ).isEqualTo( 1 );
+        assertThat( speeds( reopened, "08831", 0, Long.MAX_VALUE ) ).containsExactly( 3d, 1d );
+        assertThat( reopened.append( "08831", START + 10 * MINUTE, 3, 30, START + 20 * MINUTE ) ).isFalse();
+
+        reopened.append( "08831", START + 20 * MINUTE, 4, 40, START + 20 * MINUTE );
+        assertThat( reopened.getSegmentCount() ).isEqualTo( 1 );
+        assertThat( speeds( reopened, "08831", 0, Long.MAX_VALUE ) ).containsExactly( 4d, 3d, 1d );
+    }
+
+    @Test
+    public void whenRecordIsCutShort_thenTheSegmentEndsBeforeIt() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 10, START );
+        store.append( "08831", START + MINUTE, 2, 20, START );
+        store.close();
+
+        // A crash while the second record was written, before its key length
+        Path segment;
+        try (Stream<Path> files = Files.list( folder.getRoot().toPath() )) {
+            segment = files.findFirst().get();
+        }
+        try (FileChannel channel = FileChannel.open( segment, StandardOpenOption.READ, StandardOpenOption.WRITE )) {
+            channel.map( FileChannel.MapMode.READ_WRITE, 0, channel.size() ).putShort( 16 + 35, (short) 0 );
+        }
+
+        assertThat( speeds( newStore( 1 << 20 ), "08831", 0, Long.MAX_VALUE ) ).containsExactly( 1d );
+    }
+
+    @Test
+    public void whenStoreIsClosed_thenItIsNotUsableAnymore() throws Exception {
+        WindHistoryStore store = newStore( 1 << 20 );
+        store.append( "08831", START, 1, 10, START );
+        store.close();
+        store.close();
+
+        assertThat( store.isClosed() ).isTrue();
+        assertThat( store.getSegmentCount() ).isEqualTo( 0 );
+        assertThatThrownBy( () -> store.append( "08831", START + MINUTE, 2, 20, START + MINUTE ) )
+                .isInstanceOf( IllegalStateException.class );
+        assertThatThrownBy( () -> times( store, "08831", 0, Long.MAX_VALUE ) )
+                .isInstanceOf( IllegalStateException.class );
+
+        // The observations were written before the segments were unmapped
+        assertThat( speeds( newStore( 1 << 20 ), "08831", 0, Long.MAX_VALUE ) ).containsExactly( 1d );
+    }
+
+    private WindHistoryStore newStore(int segmentSize) throws Exception {
+        return new WindHistoryStore( folder.getRoot().toPath(), SEGMENT_MILLIS, segmentSize, RETENTION_MILLIS, START );
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list( folder.getRoot().toPath() )) {
+            return files.count();
+        }
+    }
+
+    private static List<Long> times(WindHistoryStore store, String key, long from, long to) {
+        List<Long> times = new ArrayList<Long>();
+        store.range( key, from, to, (time, windSpeed, windDirection) -> times.add( time ) );
+        return times;
+    }
+
+    private static List<Double> speeds(WindHistoryStore store, String key, long from, long to) {
+        List<Double> speeds = new ArrayList<Double>();
+        store.range( key, from, to, (time, windSpeed, windDirection) -> speeds.add( windSpeed ) );
+        return speeds;
+    }
+}
@@ -0,0 +1,153 @@
+package com.sivaji.weather.webservices.utils;
+
+import com.sivaji.weather.webservices.model.Weather;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZipCodeStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger( ZipCodeStoreTest.class );
+
+    /* Roughly the number of US zip codes, and of distinct city names among them */
+    private static final int ZIP_CODES = 42000;
+    private static final int CITIES = 29000;
+
+    private static final ZipCodeStore.Codec<Weather> CODEC = new ZipCodeStore.Codec<Weather>() {
+        @Override
+        public String getName(Weather value) {
+            return value.getName();
+        }
+
+        @Override
+        public double getWindSpeed(Weather value) {
+            return value.getWindSpeed();
+        }
+
+        @Override
+        public double getWindDirection(Weather value) {
+            return value.getWindDirection();
+        }
+
+        @Override
+        public Weather create(String name, double windSpeed, double windDirection) {
+            return weather( name, windSpeed, windDirection );
+        }
+    };
+
+    @Test
+    public void whenZipCodesAreEncoded_thenTheyDecodeToTheSameKey() {
+        assertThat( ZipCodeStore.encode( "00501" ) ).isEqualTo( 501 );
+        assertThat( ZipCodeStore.decode( ZipCodeStore.encode( "00501" ) ) ).isEqualTo( "00501" );
+        assertThat( ZipCodeStore.decode( ZipCodeStore.encode( "00000-0000" ) ) ).isEqualTo( "00000-0000" );
+        assertThat( ZipCodeStore.decode( ZipCodeStore.encode( "99999-9999" ) ) ).isEqualTo( "99999-9999" );
+        assertThat( ZipCodeStore.encode( "0000" ) ).isEqualTo( -1 );
+        assertThat( ZipCodeStore.encode( "0000x" ) ).isEqualTo( -1 );
+        assertThat( ZipCodeStore.encode( "08831 1234" ) ).isEqualTo( -1 );
+    }
+
+    @Test
+    public void whenEntriesAreWrittenAndRemoved_thenStoreBehavesLikeAMap() {
+        ZipCodeStore<Weather> store = new ZipCodeStore<Weather>( CODEC, 16 );
+        Map<String, Long> expected = new HashMap<String, Long>();
+        Random random = new Random( 42 );
+
+        // Small tables and random removals exercise probing, resizing and backward shifts
+        for (int i = 0; i < 200000; i++) {
+            String key = String.format( "%05d", random.nextInt( 3000 ) );
+            if (random.nextInt( 3 ) == 0) {
+                store.remove( key );
+                expected.remove( key );
+            } else {
+                store.put( key, new CacheEntry<Weather>( weather( "City", 1, 2 ), i, 60000 ) );
+                expected.put( key, (long) i );
+            }
+        }
+
+        assertThat( store.size() ).isEqualTo( expected.size() );
+        for (int i = 0; i < 3000; i++) {
+            String key = String.format( "%05d", i );
+            CacheEntry<Weather> entry = store.get( key );
+            if (expected.containsKey( key )) {
+                assertThat( entry.getInsertTime() ).isEqualTo( expected.get( key ) );
+            } else {
+                assertThat( entry ).isNull();
+            }
+        }
+    }
+
+    @Test
+    public void whenEntryWasReplaced_thenConditionalRemoveKeepsIt() {
+        ZipCodeStore<Weather> store = new ZipCodeStore<Weather>( CODEC );
+        store.put( "08831", new CacheEntry<Weather>( weather( "New Brunswick", 4.6, 250 ), 1000, 60000 ) );
+        CacheEntry<Weather> read = store.get( "08831" );
+        store.put( "08831", new CacheEntry<Weather>( weather( "New Brunswick", 5.1, 240 ), 2000, 60000 ) );
+
+        assertThat( store.remove( "08831", read ) ).isFalse();
+        assertThat( store.remove( "08831", store.get( "08831" ) ) ).isTrue();
+        assertThat( store.size() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void whenKeyIsNotAZipCode_thenItIsStillCached() {
+        Cache<Weather> cache = new Cache<Weather>( "test", new ZipCodeStore<Weather>( CODEC ), null );
+        cache.add( "94043-1351", weather( "Mountain View", 2.1, 0 ) );
+        cache.add( "not-a-zip", weather( "Elsewhere", 1, 0 ) );
+
+        assertThat( cache.get( "94043-1351" ).getName() ).isEqualTo( "Mountain View" );
+        assertThat( cache.get( "not-a-zip" ).getName() ).isEqualTo( "Elsewhere" );
+        assertThat( cache.getKeys() ).containsOnly( "94043-1351", "not-a-zip" );
+    }
+
+    @Test
+    public void whenFullZipCodeSpaceIsCached_thenFootprintIsComparedWithMapStore() {
+        long mapBytes = footprint( () -> new Cache<Weather>( "map" ) );
+        long zipCodeBytes = footprint( () -> new Cache<Weather>( "zip", new ZipCodeStore<Weather>( CODEC, ZIP_CODES ), null ) );
+
+        logger.info( "{} zip codes, {} cities: map store {} KB ({} bytes per entry), zip code store {} KB ({} bytes per entry)",
+                ZIP_CODES, CITIES, mapBytes / 1024, mapBytes / ZIP_CODES, zipCodeBytes / 1024, zipCodeBytes / ZIP_CODES );
+
+        assertThat( zipCodeBytes ).isLessThan( mapBytes );
+    }
+
+    /**
+     * Heap retained by the cache once every zip code is added, values as the upstream client creates them.
+     * The baseline is taken before the cache is created, so tables allocated up front are counted.
+     */
+    private static long footprint(Supplier<Cache<Weather>> cacheFactory) {
+        long before = usedHeap();
+        Cache<Weather> cache = cacheFactory.get();
+        for (int i = 0; i < ZIP_CODES; i++) {
+            // A new name instance per response, like a deserialized payload
+            cache.add( String.format( "%05d", i * 2 ), weather( new String( "City " + i % CITIES ), i % 20, i % 360 ) );
+        }
+        long after = usedHeap();
+        assertThat( cache.size() ).isEqualTo( ZIP_CODES );
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static Weather weather(String name, double windSpeed, double windDirection) {
+        Weather weather = new Weather();
+        weather.setName( name );
+        weather.setWindSpeed( windSpeed );
+        weather.setWindDirection( windDirection );
+        return weather;
+    }
+}